@@ -0,0 +1,522 @@
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * 精度与速度回归基准：在已知真实轮廓的合成图片上运行完整的 吸附 → 规划 → 掩码 流程
+ * 1. 合成图片：多边形、圆和带条纹与噪声纹理的多边形，每种形状在多个分辨率下各生成若干张，随机种子固定，结果可复现；
+ *    形状用抗锯齿绘制，真实掩码取像素中心落在形状内的像素；
+ * 2. 模拟标注：沿真实轮廓按弧长均匀取 ANCHORS 个点，加上点击抖动后用 EdgeDetector 吸附，
+ *    依次规划相邻锚点之间的路径并闭合，由 ChainCode 和 PathMask 生成掩码；
+ * 3. 指标：掩码与真实掩码的 IoU；路径像素到真实边界（内外两侧的边界像素）的距离，取平均值和最大值；
+ *    耗时分为准备（代价图和地标或超像素预处理）和查询（吸附、规划和生成掩码，重复 QUERY_REPEAT 次取最短）；
+ * 4. 配置为 代价表示 x 规划器：代价为多特征边代价平面、节点代价和 16 位量化节点代价，
+ *    规划器为 Dijkstra、ALT 地标 A*（精确）和超像素走廊（近似）；
+ * 5. 回归判定，任一项不满足时进程以状态码 1 退出：
+ *    - 绝对下限：每个配置及其各形状的平均 IoU、平均和最大边界误差都必须满足 MIN_MEAN_IOU、MAX_MEAN_ERROR、MAX_MAX_ERROR；
+ *    - 精度基准：合成图片和算法都是确定的，精度与机器无关，基准随仓库提交（accuracy-baseline.txt，--quick 为
+ *      accuracy-baseline-quick.txt），缺少基准文件同样视为失败；
+ *    - 耗时基准：耗时与机器有关，只与本机记录的基准（accuracy-timing.txt / accuracy-timing-quick.txt，不提交）比较各配置的总计，
+ *      没有本机基准时跳过；
+ *    --update 把本次结果写为新的精度和耗时基准，--update-timing 只写耗时基准
+ *
+ * 用法：java AccuracyBenchmark [--baseline 文件] [--timing 文件] [--update | --update-timing] [--quick]
+ */
+public class AccuracyBenchmark {
+    private static final int[] RESOLUTIONS = {128, 256, 512, 1024}; // 合成图片的边长
+    private static final int[] QUICK_RESOLUTIONS = {128, 256}; // --quick 时只用小图
+    private static final int SEEDS = 2; // 每种形状、每个分辨率的图片数
+    private static final int ANCHORS = 8; // 每个轮廓的点击数
+    private static final int CLICK_JITTER = 2; // 点击偏离真实轮廓的最大像素数
+    private static final int SNAP_RADIUS = 7; // 吸附搜索半径，与 PathManager 一致
+    private static final int SUPERPIXEL_CELL = 10; // 超像素种子间距，与 PlannerBenchmark 一致
+    private static final int QUERY_REPEAT = 3; // 查询重复次数，取最短耗时
+    private static final String ACCURACY_BASELINE = "accuracy-baseline"; // 精度基准，随仓库提交
+    private static final String TIMING_BASELINE = "accuracy-timing"; // 本机耗时基准，不提交
+
+    // 绝对下限
+    private static final double MIN_MEAN_IOU = 0.97; // 平均 IoU 的下限
+    private static final double MAX_MEAN_ERROR = 0.1; // 平均边界误差的上限（像素）
+    private static final double MAX_MAX_ERROR = 10.0; // 最大边界误差的上限（像素）
+
+    // 回归容差
+    private static final double IOU_TOLERANCE = 0.002; // 平均 IoU 允许的下降
+    private static final double MIN_IOU_TOLERANCE = 0.01; // 最差 IoU 允许的下降
+    private static final double ERROR_TOLERANCE = 0.1; // 平均边界误差允许的增加（像素）
+    private static final double MAX_ERROR_TOLERANCE = 1.0; // 最大边界误差允许的增加（像素）
+    private static final double TIME_TOLERANCE = 1.5; // 耗时允许增加到基准的倍数
+    private static final double TIME_SLACK_MS = 20; // 耗时的绝对余量，避免小耗时的抖动被判为回归
+
+    enum Kind { POLYGON, CIRCLE, TEXTURE }
+
+    enum Cost { PLANES, NODE, QUANTIZED }
+
+    enum Planner { DIJKSTRA, ALT, SUPERPIXEL }
+
+    /**
+     * 一张合成图片及其真实轮廓
+     */
+    private static class Case {
+        final Kind kind;
+        final BufferedImage image;
+        final BitMask truth; // 像素中心在形状内的像素
+        final int[] boundaryDistances; // 到真实边界的平方距离，按行存储
+        final List<Point> clicks; // 模拟的点击位置
+
+        Case(Kind kind, BufferedImage image, BitMask truth, int[] boundaryDistances, List<Point> clicks) {
+            this.kind = kind;
+            this.image = image;
+            this.truth = truth;
+            this.boundaryDistances = boundaryDistances;
+            this.clicks = clicks;
+        }
+    }
+
+    /**
+     * 一组结果的汇总
+     */
+    private static class Stats {
+        int count;
+        double iouSum;
+        double iouMin = 1;
+        double errorSum; // 各图片平均边界误差之和
+        double errorMax;
+        long setupNanos;
+        long queryNanos;
+
+        void add(double iou, double meanError, double maxError, long setup, long query) {
+            count++;
+            iouSum += iou;
+            iouMin = Math.min(iouMin, iou);
+            errorSum += meanError;
+            errorMax = Math.max(errorMax, maxError);
+            setupNanos += setup;
+            queryNanos += query;
+        }
+
+        double[] values() {
+            return new double[]{iouSum / count, iouMin, errorSum / count, errorMax, setupNanos / 1e6, queryNanos / 1e6};
+        }
+    }
+
+    private static final String[] COLUMNS = {"meanIoU", "minIoU", "meanError", "maxError", "setupMs", "queryMs"};
+    private static final int ACCURACY_COLUMNS = 4; // 前 4 列为精度，其余为耗时
+
+    public static void main(String[] args) throws IOException {
+        Path baseline = null, timing = null;
+        boolean update = false, updateTiming = false, quick = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--baseline": baseline = Paths.get(args[++i]); break;
+                case "--timing": timing = Paths.get(args[++i]); break;
+                case "--update": update = true; break;
+                case "--update-timing": updateTiming = true; break;
+                case "--quick": quick = true; break;
+                default:
+                    System.err.println("用法: java AccuracyBenchmark [--baseline 文件] [--timing 文件] [--update | --update-timing] [--quick]");
+                    System.exit(2);
+            }
+        }
+        int[] resolutions = quick ? QUICK_RESOLUTIONS : RESOLUTIONS;
+        String suffix = quick ? "-quick.txt" : ".txt";
+        if (baseline == null) baseline = Paths.get(ACCURACY_BASELINE + suffix);
+        if (timing == null) timing = Paths.get(TIMING_BASELINE + suffix);
+
+        // 预热：最小分辨率的每种配置各跑一遍，不计入结果
+        run(synthesize(Kind.TEXTURE, resolutions[0], -1), new TreeMap<>());
+
+        Map<String, Stats> results = new TreeMap<>();
+        for (int size : resolutions) {
+            for (Kind kind : Kind.values()) {
+                for (int seed = 0; seed < SEEDS; seed++) {
+                    run(synthesize(kind, size, seed), results);
+                }
+            }
+            System.out.printf("%d x %d 完成%n", size, size);
+        }
+
+        System.out.printf("%-32s %8s %8s %9s %9s %10s %10s%n", "配置", COLUMNS[0], COLUMNS[1], COLUMNS[2], COLUMNS[3],
+                COLUMNS[4], COLUMNS[5]);
+        for (Map.Entry<String, Stats> entry : results.entrySet()) {
+            double[] v = entry.getValue().values();
+            System.out.printf("%-32s %8.4f %8.4f %9.3f %9.3f %10.1f %10.1f%n", entry.getKey(), v[0], v[1], v[2], v[3], v[4], v[5]);
+        }
+
+        if (update || updateTiming) {
+            if (update) {
+                writeBaseline(baseline, results, 0, ACCURACY_COLUMNS);
+                System.out.println("精度基准已写入 " + baseline);
+            }
+            writeBaseline(timing, results, ACCURACY_COLUMNS, COLUMNS.length);
+            System.out.println("耗时基准已写入 " + timing);
+            return;
+        }
+        List<String> regressions = checkLimits(results);
+        if (Files.exists(baseline)) {
+            regressions.addAll(compareAccuracy(readBaseline(baseline, ACCURACY_COLUMNS), results));
+        } else {
+            regressions.add("缺少精度基准 " + baseline + "，可用 --update 生成");
+        }
+        if (Files.exists(timing)) {
+            regressions.addAll(compareTiming(readBaseline(timing, COLUMNS.length - ACCURACY_COLUMNS), results));
+        } else {
+            System.out.println("没有本机耗时基准 " + timing + "，本次不比较耗时，可用 --update-timing 记录");
+        }
+        if (regressions.isEmpty()) {
+            System.out.println("与基准相比没有回归");
+        } else {
+            System.out.println("回归 " + regressions.size() + " 项：");
+            regressions.forEach(line -> System.out.println("  " + line));
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 合成一张图片：随机颜色的背景上画一个形状，TEXTURE 再叠加斜条纹和高斯噪声
+     */
+    static Case synthesize(Kind kind, int size, int seed) {
+        Random random = new Random(seed * 1_000_003L + size * 31L + kind.ordinal());
+        double cx = size * (0.45 + 0.1 * random.nextDouble());
+        double cy = size * (0.45 + 0.1 * random.nextDouble());
+        double radius = size * (0.25 + 0.1 * random.nextDouble());
+        Shape shape = kind == Kind.CIRCLE
+                ? new Ellipse2D.Double(cx - radius, cy - radius, 2 * radius, 2 * radius)
+                : polygon(random, cx, cy, radius);
+
+        // 前景与背景的亮度差：纯色形状为 80 到 140，带纹理的形状为 50 到 90，与纹理幅度相当
+        int background = 30 + random.nextInt(60);
+        int foreground = background + (kind == Kind.TEXTURE ? 50 + random.nextInt(40) : 80 + random.nextInt(60));
+        if (random.nextBoolean()) {
+            int swap = background;
+            background = foreground;
+            foreground = swap;
+        }
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(tint(background, random));
+        g.fillRect(0, 0, size, size);
+        g.setColor(tint(foreground, random));
+        g.fill(shape);
+        g.dispose();
+        if (kind == Kind.TEXTURE) addTexture(image, random);
+
+        BitMask truth = new BitMask(size, size);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (shape.contains(x + 0.5, y + 0.5)) truth.set(x, y);
+            }
+        }
+        // 真实边界取内外两侧的像素，路径沿其中任意一侧都算误差为 0
+        BitMask boundary = new BitMask(size, size);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                boolean inside = truth.get(x, y);
+                if (x + 1 < size && truth.get(x + 1, y) != inside) {
+                    boundary.set(x, y);
+                    boundary.set(x + 1, y);
+                }
+                if (y + 1 < size && truth.get(x, y + 1) != inside) {
+                    boundary.set(x, y);
+                    boundary.set(x, y + 1);
+                }
+            }
+        }
+        return new Case(kind, image, truth, DistanceTransform.squaredDistances(boundary, true, true),
+                clicks(shape, size, random));
+    }
+
+    /**
+     * 以 (cx, cy) 为中心的随机星形多边形（顶点按角度排序，不会自交）
+     */
+    private static Shape polygon(Random random, double cx, double cy, double radius) {
+        int n = 5 + random.nextInt(5);
+        Path2D.Double polygon = new Path2D.Double();
+        for (int i = 0; i < n; i++) {
+            double angle = 2 * Math.PI * (i + 0.3 * random.nextDouble()) / n;
+            double r = radius * (0.6 + 0.4 * random.nextDouble());
+            double x = cx + r * Math.cos(angle), y = cy + r * Math.sin(angle);
+            if (i == 0) polygon.moveTo(x, y);
+            else polygon.lineTo(x, y);
+        }
+        polygon.closePath();
+        return polygon;
+    }
+
+    /**
+     * 给灰度加一点随机色相，三个通道的平均值仍接近 gray
+     */
+    private static Color tint(int gray, Random random) {
+        int r = clamp(gray + random.nextInt(31) - 15), g = clamp(gray + random.nextInt(31) - 15);
+        return new Color(r, g, clamp(3 * gray - r - g));
+    }
+
+    /**
+     * 叠加斜条纹（幅度 24）和高斯噪声（标准差 16），条纹会产生与轮廓无关的弱边缘
+     */
+    private static void addTexture(BufferedImage image, Random random) {
+        double angle = random.nextDouble() * Math.PI;
+        double period = 6 + random.nextDouble() * 10;
+        double ux = Math.cos(angle) / period, uy = Math.sin(angle) / period;
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                double offset = 24 * Math.sin(2 * Math.PI * (x * ux + y * uy)) + 16 * random.nextGaussian();
+                int rgb = image.getRGB(x, y);
+                int r = clamp((int) Math.round(((rgb >> 16) & 0xff) + offset));
+                int g = clamp((int) Math.round(((rgb >> 8) & 0xff) + offset));
+                int b = clamp((int) Math.round((rgb & 0xff) + offset));
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    /**
+     * 沿形状轮廓按弧长均匀取 ANCHORS 个点，再加上至多 CLICK_JITTER 像素的随机偏移
+     */
+    private static List<Point> clicks(Shape shape, int size, Random random) {
+        List<double[]> vertices = new ArrayList<>();
+        double[] coords = new double[6];
+        for (PathIterator it = shape.getPathIterator(null, 0.25); !it.isDone(); it.next()) {
+            int type = it.currentSegment(coords);
+            if (type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_LINETO) {
+                vertices.add(new double[]{coords[0], coords[1]});
+            }
+        }
+        vertices.add(vertices.get(0));
+        double[] arc = new double[vertices.size()];
+        for (int i = 1; i < arc.length; i++) {
+            arc[i] = arc[i - 1] + Math.hypot(vertices.get(i)[0] - vertices.get(i - 1)[0],
+                    vertices.get(i)[1] - vertices.get(i - 1)[1]);
+        }
+        List<Point> clicks = new ArrayList<>();
+        int segment = 1;
+        for (int k = 0; k < ANCHORS; k++) {
+            double target = arc[arc.length - 1] * k / ANCHORS;
+            while (arc[segment] < target) segment++;
+            double t = (target - arc[segment - 1]) / Math.max(1e-12, arc[segment] - arc[segment - 1]);
+            double[] a = vertices.get(segment - 1), b = vertices.get(segment);
+            int x = (int) Math.floor(a[0] + t * (b[0] - a[0])) + random.nextInt(2 * CLICK_JITTER + 1) - CLICK_JITTER;
+            int y = (int) Math.floor(a[1] + t * (b[1] - a[1])) + random.nextInt(2 * CLICK_JITTER + 1) - CLICK_JITTER;
+            clicks.add(new Point(Math.max(0, Math.min(size - 1, x)), Math.max(0, Math.min(size - 1, y))));
+        }
+        return clicks;
+    }
+
+    /**
+     * 在一张图片上运行所有配置，结果计入 results（键为配置名，以及 配置名/形状）
+     */
+    private static void run(Case c, Map<String, Stats> results) {
+        for (Cost cost : Cost.values()) {
+            long start = System.nanoTime();
+            GridGraph graph = buildGraph(cost, c.image);
+            long costNanos = System.nanoTime() - start;
+            for (Planner planner : Planner.values()) {
+                String name = cost.name().toLowerCase(Locale.ROOT) + "+" + planner.name().toLowerCase(Locale.ROOT);
+                start = System.nanoTime();
+                LandmarkIndex landmarks = planner == Planner.ALT
+                        ? LandmarkIndex.build(graph, LandmarkIndex.DEFAULT_LANDMARKS) : null;
+                SuperpixelGraph superpixels = planner == Planner.SUPERPIXEL
+                        ? SuperpixelGraph.build(graph, SUPERPIXEL_CELL) : null;
+                long setupNanos = costNanos + System.nanoTime() - start;
+
+                List<PlannedPath> contour = null;
+                BitMask mask = null;
+                long queryNanos = Long.MAX_VALUE;
+                for (int r = 0; r < QUERY_REPEAT; r++) {
+                    start = System.nanoTime();
+                    contour = trace(graph, c.clicks, planner, landmarks, superpixels);
+                    List<ChainCode> chains = new ArrayList<>();
+                    for (PlannedPath path : contour) {
+                        if (!path.isEmpty()) chains.add(ChainCode.fromPath(graph, path.getNodes()));
+                    }
+                    mask = PathMask.fromPaths(chains, graph.getWidth(), graph.getHeight());
+                    queryNanos = Math.min(queryNanos, System.nanoTime() - start);
+                }
+
+                double iou = iou(mask, c.truth);
+                double[] error = boundaryError(graph, contour, c.boundaryDistances);
+                results.computeIfAbsent(name, k -> new Stats()).add(iou, error[0], error[1], setupNanos, queryNanos);
+                results.computeIfAbsent(name + "/" + c.kind.name().toLowerCase(Locale.ROOT), k -> new Stats())
+                        .add(iou, error[0], error[1], setupNanos, queryNanos);
+            }
+        }
+    }
+
+    private static GridGraph buildGraph(Cost cost, BufferedImage image) {
+        switch (cost) {
+            case PLANES:
+                return new GridGraph(new CostFeatureEngine().compute(image));
+            case NODE:
+                return new GridGraph(new CostGraphGenerator(image).getCostImage());
+            case QUANTIZED: {
+                double[][] costImage = new CostGraphGenerator(image).getCostImage();
+                QuantizedCostMap map = new QuantizedCostMap(image.getWidth(), image.getHeight());
+                map.copyRegion(costImage, 0, 0, image.getWidth(), image.getHeight());
+                return new GridGraph(map);
+            }
+            default:
+                throw new IllegalArgumentException("未知的代价表示: " + cost);
+        }
+    }
+
+    /**
+     * 吸附各点击位置，依次规划相邻锚点之间的路径，最后一个锚点连回第一个
+     */
+    private static List<PlannedPath> trace(GridGraph graph, List<Point> clicks, Planner planner,
+                                           LandmarkIndex landmarks, SuperpixelGraph superpixels) {
+        EdgeDetector edgeDetector = new EdgeDetector();
+        List<Point> anchors = new ArrayList<>();
+        for (Point click : clicks) {
+            Point snapped = edgeDetector.findBestEdgeFromCost(click, SNAP_RADIUS, graph.getCostMap());
+            anchors.add(snapped != null ? snapped : click);
+        }
+        List<PlannedPath> contour = new ArrayList<>();
+        for (int i = 0; i < anchors.size(); i++) {
+            Point from = anchors.get(i), to = anchors.get((i + 1) % anchors.size());
+            int source = graph.index(from.x, from.y), target = graph.index(to.x, to.y);
+            switch (planner) {
+                case DIJKSTRA: contour.add(PathPlanner.plan(graph, source, target)); break;
+                case ALT: contour.add(PathPlanner.plan(graph, source, target, landmarks)); break;
+                default: contour.add(superpixels.route(source, target));
+            }
+        }
+        return contour;
+    }
+
+    /**
+     * 两个掩码的交并比，按 64 位字计数
+     */
+    static double iou(BitMask a, BitMask b) {
+        long intersection = 0, union = 0;
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int i = 0; i < a.getWordsPerRow(); i++) {
+                long wa = a.getWord(y, i), wb = b.getWord(y, i);
+                intersection += Long.bitCount(wa & wb);
+                union += Long.bitCount(wa | wb);
+            }
+        }
+        return union == 0 ? 1 : (double) intersection / union;
+    }
+
+    /**
+     * 路径像素到真实边界的距离 {平均值, 最大值}
+     */
+    private static double[] boundaryError(GridGraph graph, List<PlannedPath> contour, int[] boundaryDistances) {
+        double sum = 0, max = 0;
+        long count = 0;
+        for (PlannedPath path : contour) {
+            for (int v : path.getNodes()) {
+                double d = Math.sqrt(boundaryDistances[graph.y(v) * graph.getWidth() + graph.x(v)]);
+                sum += d;
+                max = Math.max(max, d);
+                count++;
+            }
+        }
+        return new double[]{count == 0 ? 0 : sum / count, max};
+    }
+
+    /**
+     * 检查绝对下限，每个配置和按形状分开的结果都检查
+     */
+    private static List<String> checkLimits(Map<String, Stats> results) {
+        List<String> violations = new ArrayList<>();
+        for (Map.Entry<String, Stats> entry : results.entrySet()) {
+            double[] v = entry.getValue().values();
+            limit(violations, entry.getKey(), 0, v[0], MIN_MEAN_IOU, v[0] < MIN_MEAN_IOU);
+            limit(violations, entry.getKey(), 2, v[2], MAX_MEAN_ERROR, v[2] > MAX_MEAN_ERROR);
+            limit(violations, entry.getKey(), 3, v[3], MAX_MAX_ERROR, v[3] > MAX_MAX_ERROR);
+        }
+        return violations;
+    }
+
+    private static void limit(List<String> violations, String name, int column, double value, double bound, boolean failed) {
+        if (failed) {
+            violations.add(String.format(Locale.ROOT, "%s %s: %.4f 超出下限 %.4f", name, COLUMNS[column], value, bound));
+        }
+    }
+
+    /**
+     * 与精度基准比较，返回超出容差的项；基准中没有的配置不比较
+     */
+    private static List<String> compareAccuracy(Map<String, double[]> baseline, Map<String, Stats> results) {
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Stats> entry : results.entrySet()) {
+            double[] base = baseline.get(entry.getKey());
+            if (base == null) continue;
+            double[] v = entry.getValue().values();
+            check(regressions, entry.getKey(), 0, v[0], base[0], v[0] < base[0] - IOU_TOLERANCE);
+            check(regressions, entry.getKey(), 1, v[1], base[1], v[1] < base[1] - MIN_IOU_TOLERANCE);
+            check(regressions, entry.getKey(), 2, v[2], base[2], v[2] > base[2] + ERROR_TOLERANCE);
+            check(regressions, entry.getKey(), 3, v[3], base[3], v[3] > base[3] + MAX_ERROR_TOLERANCE);
+        }
+        return regressions;
+    }
+
+    /**
+     * 与本机耗时基准比较：每种形状的耗时太短、抖动太大，只比较各配置的总计
+     */
+    private static List<String> compareTiming(Map<String, double[]> baseline, Map<String, Stats> results) {
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Stats> entry : results.entrySet()) {
+            double[] base = baseline.get(entry.getKey());
+            if (base == null || entry.getKey().contains("/")) continue;
+            double[] v = entry.getValue().values();
+            for (int i = ACCURACY_COLUMNS; i < COLUMNS.length; i++) {
+                double b = base[i - ACCURACY_COLUMNS];
+                check(regressions, entry.getKey(), i, v[i], b, v[i] > Math.max(b * TIME_TOLERANCE, b + TIME_SLACK_MS));
+            }
+        }
+        return regressions;
+    }
+
+    private static void check(List<String> regressions, String name, int column, double value, double base, boolean failed) {
+        if (failed) {
+            regressions.add(String.format(Locale.ROOT, "%s %s: %.4f -> %.4f", name, COLUMNS[column], base, value));
+        }
+    }
+
+    /**
+     * 基准文件：# 开头为注释，每行为 配置名 和 COLUMNS 中 [from, to) 对应的各列
+     */
+    private static void writeBaseline(Path file, Map<String, Stats> results, int from, int to) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# 配置 " + String.join(" ", Arrays.copyOfRange(COLUMNS, from, to)));
+        for (Map.Entry<String, Stats> entry : results.entrySet()) {
+            StringBuilder line = new StringBuilder(entry.getKey());
+            double[] values = entry.getValue().values();
+            for (int i = from; i < to; i++) line.append(' ').append(String.format(Locale.ROOT, "%.6f", values[i]));
+            lines.add(line.toString());
+        }
+        Files.write(file, lines);
+    }
+
+    private static Map<String, double[]> readBaseline(Path file, int columns) throws IOException {
+        Map<String, double[]> baseline = new TreeMap<>();
+        for (String line : Files.readAllLines(file)) {
+            if (line.isBlank() || line.startsWith("#")) continue;
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length != columns + 1) throw new IOException("基准文件格式错误: " + line);
+            double[] values = new double[columns];
+            for (int i = 0; i < values.length; i++) values[i] = Double.parseDouble(parts[i + 1]);
+            baseline.put(parts[0], values);
+        }
+        return baseline;
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * 可续搜的单源 Dijkstra：以锚点为根逐步扩展最短路径树，每次查询只把搜索推进到目标出堆为止，
+ * 同一锚点的后续查询从上次留下的堆继续，因此沿边缘移动鼠标时每个像素对每个锚点最多出堆一次
+ * 标签规则与 PathPlanner.plan 相同，出堆节点的标签和前驱就是最终结果，返回的路径与 plan 完全一致；
+ * 堆为空时搜索完成，得到的就是完整的最短路径树
+ * 状态数组按全图大小分配，不是线程安全的
+ */
+class AnchorSearch {
+    private final GridGraph graph;
+    private final ShortestPathTree tree;
+    private boolean[] settled; // 已出堆的节点，搜索完成后为 null
+    private SearchHeap heap; // 搜索完成后为 null
+    private int settledCount = 0;
+    private static final int DEADLINE_CHECK_INTERVAL = 256; // 每出堆这么多个节点检查一次时间
+
+    /**
+     * 从 root 开始新的搜索，尚未扩展任何节点
+     */
+    AnchorSearch(GridGraph graph, int root) {
+        this.graph = graph;
+        this.tree = new ShortestPathTree(root, graph.size());
+        this.settled = new boolean[graph.size()];
+        this.heap = new SearchHeap(1024);
+        heap.push(0.0, 0, root);
+    }
+
+    private AnchorSearch(GridGraph graph, ShortestPathTree tree) {
+        this.graph = graph;
+        this.tree = tree;
+        this.settledCount = graph.size();
+    }
+
+    /**
+     * 把已经建好的完整最短路径树包装为已完成的搜索
+     */
+    static AnchorSearch complete(GridGraph graph, ShortestPathTree tree) {
+        return new AnchorSearch(graph, tree);
+    }
+
+    int getRoot() {
+        return tree.getRoot();
+    }
+
+    boolean isComplete() {
+        return heap == null;
+    }
+
+    boolean isSettled(int node) {
+        return heap == null || settled[node];
+    }
+
+    /**
+     * 根到 target 的最短路径，必要时继续扩展搜索；PlannedPath 中的出堆数只统计本次新扩展的节点
+     */
+    PlannedPath pathTo(int target) {
+        return pathTo(target, Long.MAX_VALUE);
+    }
+
+    /**
+     * 同上，到 deadlineNanos（System.nanoTime 时刻，Long.MAX_VALUE 表示不限时）仍未扩展到 target 时返回 null，
+     * 已扩展的部分保留给下次查询
+     */
+    PlannedPath pathTo(int target, long deadlineNanos) {
+        long start = System.nanoTime();
+        int before = settledCount;
+        if (!advance(target, deadlineNanos)) return null;
+        return new PlannedPath(tree.pathTo(target), tree.distanceTo(target), settledCount - before, System.nanoTime() - start);
+    }
+
+    /**
+     * 近似路径：从 target 沿直线走向根，遇到的第一个已出堆节点之前用直线，之后沿树回到根
+     * 已出堆的区域包含根，直线总能走到，返回的节点从根到 target 依次相邻
+     */
+    int[] partialPathTo(int target) {
+        int[] tail = graph.straightLine(target, getRoot());
+        int join = 0;
+        while (join < tail.length - 1 && !isSettled(tail[join])) join++;
+        int[] head = tree.pathTo(tail[join]);
+        int[] path = new int[head.length + join];
+        System.arraycopy(head, 0, path, 0, head.length);
+        for (int i = 0; i < join; i++) path[head.length + i] = tail[join - 1 - i];
+        return path;
+    }
+
+    /**
+     * 继续 Dijkstra，直到 target 出堆、堆为空或超过 deadlineNanos，返回 target 是否已出堆
+     */
+    private boolean advance(int target, long deadlineNanos) {
+        if (isSettled(target)) return true;
+        int sinceCheck = 0;
+        while (!heap.isEmpty()) {
+            if (++sinceCheck == DEADLINE_CHECK_INTERVAL) {
+                sinceCheck = 0;
+                if (deadlineNanos != Long.MAX_VALUE && System.nanoTime() - deadlineNanos > 0) return false;
+            }
+            int u = heap.peekNode();
+            double du = heap.peekKey();
+            int hu = heap.peekHops();
+            heap.pop();
+            // 跳过过期条目
+            if (settled[u] || du != tree.dist[u] || hu != tree.hops[u]) continue;
+            settled[u] = true;
+            settledCount++;
+
+            for (int dir = 0; dir < 8; dir++) {
+                int v = graph.neighbor(u, dir);
+                if (v < 0 || settled[v]) continue;
+                double d = du + graph.moveCost(u, dir);
+                int h = hu + 1;
+                if (tree.isBetter(v, d, h, u)) {
+                    boolean labelImproved = d != tree.dist[v] || h != tree.hops[v];
+                    tree.dist[v] = d;
+                    tree.hops[v] = h;
+                    tree.pred[v] = u;
+                    if (labelImproved) heap.push(d, h, v);
+                }
+            }
+            if (u == target) return true;
+        }
+        // 堆已空：整棵树都已确定，释放搜索状态
+        settled = null;
+        heap = null;
+        return true;
+    }
+
+    /**
+     * 代价局部变化后修复已完成的树，参见 PathPlanner.repairShortestPathTree
+     */
+    int repair(int[] changed, boolean increased) {
+        if (!isComplete()) throw new IllegalStateException("只能修复已完成的搜索");
+        return PathPlanner.repairShortestPathTree(graph, tree, changed, increased);
+    }
+
+    /**
+     * 估算占用的内存（字节）：树的三个数组，以及未完成时的出堆标记和堆
+     */
+    long bytes() {
+        long size = graph.size();
+        long bytes = size * (Double.BYTES + Integer.BYTES + Integer.BYTES);
+        if (heap != null) {
+            bytes += size + (long) heap.capacity() * (Double.BYTES + Integer.BYTES + Integer.BYTES);
+        }
+        return bytes;
+    }
+}
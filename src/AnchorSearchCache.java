@@ -0,0 +1,104 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按锚点像素缓存的搜索状态（AnchorSearch），按访问顺序淘汰，总内存不超过预算
+ * 1. 当前锚点的搜索由编辑器持有，离开锚点时放回缓存，回到该锚点（撤销或重新点中）时取出，已扩展的区域直接复用；
+ * 2. 画笔改动的节点记入日志，条目取出时按日志修复：已完成的树就地修复，未完成的搜索无法修复，直接丢弃；
+ * 3. 命中、未命中、淘汰次数和当前占用记入 EngineMetrics（anchorCache.*）。
+ * 只在编辑器线程上使用
+ */
+class AnchorSearchCache {
+    private final long budgetBytes;
+    private final EngineMetrics metrics;
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final IntList editLog = new IntList(); // 画笔改动过的节点，按时间顺序
+    private long bytes = 0;
+
+    private static class Entry {
+        final AnchorSearch search;
+        final long bytes;
+        final int editMark; // 放入缓存时编辑日志的长度
+
+        Entry(AnchorSearch search, long bytes, int editMark) {
+            this.search = search;
+            this.bytes = bytes;
+            this.editMark = editMark;
+        }
+    }
+
+    AnchorSearchCache(long budgetBytes, EngineMetrics metrics) {
+        this.budgetBytes = budgetBytes;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 取出以 root 为根的搜索（从缓存中移除），没有可用条目时返回 null
+     */
+    AnchorSearch take(int root) {
+        Entry entry = entries.remove(root);
+        if (entry != null) {
+            bytes -= entry.bytes;
+            if (entry.editMark < editLog.size()) {
+                if (!entry.search.isComplete()) {
+                    entry = null;
+                } else {
+                    int[] edits = new int[editLog.size() - entry.editMark];
+                    for (int i = 0; i < edits.length; i++) edits[i] = editLog.get(entry.editMark + i);
+                    entry.search.repair(edits, true);
+                }
+            }
+        }
+        metrics.increment(entry != null ? "anchorCache.hits" : "anchorCache.misses");
+        updateGauge();
+        return entry == null ? null : entry.search;
+    }
+
+    /**
+     * 放入搜索，超出预算时淘汰最久未使用的条目；单个搜索就超出预算时不缓存
+     */
+    void put(AnchorSearch search) {
+        Entry old = entries.remove(search.getRoot());
+        if (old != null) bytes -= old.bytes;
+        long size = search.bytes();
+        if (size <= budgetBytes) {
+            entries.put(search.getRoot(), new Entry(search, size, editLog.size()));
+            bytes += size;
+            Iterator<Map.Entry<Integer, Entry>> eldest = entries.entrySet().iterator();
+            while (bytes > budgetBytes && eldest.hasNext()) {
+                bytes -= eldest.next().getValue().bytes;
+                eldest.remove();
+                metrics.increment("anchorCache.evictions");
+            }
+        }
+        updateGauge();
+    }
+
+    /**
+     * 记录画笔改动过的节点；日志超过 maxLog 时修复已不划算，清空缓存
+     */
+    void recordEdits(int[] changed, int maxLog) {
+        if (entries.isEmpty()) return;
+        for (int v : changed) editLog.add(v);
+        if (editLog.size() > maxLog) clear();
+    }
+
+    /**
+     * 清空缓存（图结构变化时）
+     */
+    void clear() {
+        entries.clear();
+        editLog.clear();
+        bytes = 0;
+        updateGauge();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void updateGauge() {
+        metrics.add("anchorCache.bytes", bytes - metrics.getCounter("anchorCache.bytes"));
+    }
+}
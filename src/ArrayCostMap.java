@@ -0,0 +1,52 @@
+/**
+ * 堆上的代价图：按节点编号存放在一维 double 数组中
+ * 支持局部写入，供视频序列等需要增量更新代价的场景使用
+ */
+public class ArrayCostMap implements CostMap {
+    private final int width;
+    private final int height;
+    private final double[] data;
+
+    public ArrayCostMap(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.data = new double[width * height];
+    }
+
+    /**
+     * 复制 double[][] 代价矩阵
+     */
+    public static ArrayCostMap copyOf(double[][] costImage) {
+        ArrayCostMap map = new ArrayCostMap(costImage.length, costImage[0].length);
+        map.copyRegion(costImage, 0, 0, map.width, map.height);
+        return map;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public double get(int index) {
+        return data[index];
+    }
+
+    public void set(int index, double value) {
+        data[index] = value;
+    }
+
+    /**
+     * 用代价矩阵中的值覆盖区域 [x0, x1) x [y0, y1)
+     */
+    public void copyRegion(double[][] costImage, int x0, int y0, int x1, int y1) {
+        for (int x = x0; x < x1; x++) {
+            System.arraycopy(costImage[x], y0, data, x * height + y0, y1 - y0);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * 位压缩的二值掩码：按行存储，每行占 wordsPerRow 个 long，像素 (x, y) 是第 y 行第 x / 64 个字的第 x % 64 位
+ * 与 boolean[width][height] 相比内存为 1/8，且没有每列一个数组对象的开销；
+ * 行内的查找、区间填充和掩码之间的与、或、差都按整字进行
+ * 每行最后一个字中超出宽度的位始终为 0，导出时可以直接按字写出
+ */
+public class BitMask {
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final long[] words;
+
+    public BitMask(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.words = new long[Math.multiplyExact(wordsPerRow, height)];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWordsPerRow() {
+        return wordsPerRow;
+    }
+
+    /**
+     * 第 y 行的第 i 个字
+     */
+    public long getWord(int y, int i) {
+        return words[y * wordsPerRow + i];
+    }
+
+    public boolean get(int x, int y) {
+        return (words[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    public void set(int x, int y) {
+        words[y * wordsPerRow + (x >>> 6)] |= 1L << x;
+    }
+
+    /**
+     * 把第 y 行的 [x0, x1) 全部置 1
+     */
+    public void setRange(int y, int x0, int x1) {
+        if (x0 >= x1) return;
+        int row = y * wordsPerRow;
+        int first = x0 >>> 6, last = (x1 - 1) >>> 6;
+        long firstMask = -1L << x0, lastMask = -1L >>> -x1;
+        if (first == last) {
+            words[row + first] |= firstMask & lastMask;
+            return;
+        }
+        words[row + first] |= firstMask;
+        for (int i = first + 1; i < last; i++) words[row + i] = -1L;
+        words[row + last] |= lastMask;
+    }
+
+    /**
+     * 第 y 行从 x 开始的第一个为 1 的像素，没有时返回 width
+     */
+    public int nextSetBit(int x, int y) {
+        if (x >= width) return width;
+        int row = y * wordsPerRow;
+        int i = x >>> 6;
+        long word = words[row + i] & (-1L << x);
+        while (word == 0) {
+            if (++i == wordsPerRow) return width;
+            word = words[row + i];
+        }
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * 第 y 行从 x 开始的第一个为 0 的像素，没有时返回 width
+     */
+    public int nextClearBit(int x, int y) {
+        if (x >= width) return width;
+        int row = y * wordsPerRow;
+        int i = x >>> 6;
+        long word = ~words[row + i] & (-1L << x);
+        while (word == 0) {
+            if (++i == wordsPerRow) return width;
+            word = ~words[row + i];
+        }
+        return Math.min(width, (i << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * 第 y 行在 x 及其左侧的最后一个为 1 的像素，没有时返回 -1
+     */
+    public int previousSetBit(int x, int y) {
+        if (x < 0) return -1;
+        int row = y * wordsPerRow;
+        int i = x >>> 6;
+        long word = words[row + i] & (-1L >>> (63 - (x & 63)));
+        while (word == 0) {
+            if (--i < 0) return -1;
+            word = words[row + i];
+        }
+        return (i << 6) + 63 - Long.numberOfLeadingZeros(word);
+    }
+
+    /**
+     * 按位或：本掩码 |= other
+     */
+    public void or(BitMask other) {
+        checkSize(other);
+        for (int i = 0; i < words.length; i++) words[i] |= other.words[i];
+    }
+
+    /**
+     * 按位与：本掩码 &= other
+     */
+    public void and(BitMask other) {
+        checkSize(other);
+        for (int i = 0; i < words.length; i++) words[i] &= other.words[i];
+    }
+
+    /**
+     * 差集：本掩码 &= ~other
+     */
+    public void andNot(BitMask other) {
+        checkSize(other);
+        for (int i = 0; i < words.length; i++) words[i] &= ~other.words[i];
+    }
+
+    /**
+     * 为 1 的像素数
+     */
+    public long cardinality() {
+        long count = 0;
+        for (long word : words) count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * 占用的内存（字节，不含对象头）
+     */
+    public long bytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    private void checkSize(BitMask other) {
+        if (other.width != width || other.height != height) {
+            throw new IllegalArgumentException("掩码尺寸不一致: " + width + "x" + height + " 与 " + other.width + "x" + other.height);
+        }
+    }
+}
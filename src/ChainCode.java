@@ -0,0 +1,175 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 链码：用起点加每步 3 位的 Freeman 链码紧凑地保存一段已确认路径
+ * 每个 long 存 21 步，每个路径点平均只占约 3 位，不再持有图节点对象
+ * Freeman 方向：0=右, 1=右上, 2=上, 3=左上, 4=左, 5=左下, 6=下, 7=右下（图像坐标 y 向下）
+ */
+public class ChainCode {
+    private static final int BITS_PER_STEP = 3;
+    private static final int STEPS_PER_WORD = 64 / BITS_PER_STEP;
+    private static final int[] DX = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] DY = {0, -1, -1, -1, 0, 1, 1, 1};
+
+    private final int startX;
+    private final int startY;
+    private final int endX;
+    private final int endY;
+    private final int steps; // 步数，路径点数为 steps + 1
+    private final long[] codes; // 打包后的链码
+
+    /**
+     * 坐标访问器，用于遍历链码上的每个点
+     */
+    public interface PointVisitor {
+        void visit(int x, int y);
+    }
+
+    private ChainCode(int startX, int startY, int endX, int endY, int steps, long[] codes) {
+        this.startX = startX;
+        this.startY = startY;
+        this.endX = endX;
+        this.endY = endY;
+        this.steps = steps;
+        this.codes = codes;
+    }
+
+    /**
+     * 由8连通的路径构造链码
+     */
+    public static ChainCode fromPath(List<PixelNode> path) {
+        if (path == null || path.isEmpty()) {
+            throw new IllegalArgumentException("路径为空");
+        }
+        int steps = path.size() - 1;
+        long[] codes = new long[(steps + STEPS_PER_WORD - 1) / STEPS_PER_WORD];
+        for (int i = 1; i <= steps; i++) {
+            PixelNode prev = path.get(i - 1);
+            PixelNode curr = path.get(i);
+            int code = codeOf(curr.x - prev.x, curr.y - prev.y);
+            int step = i - 1;
+            codes[step / STEPS_PER_WORD] |= (long) code << (step % STEPS_PER_WORD * BITS_PER_STEP);
+        }
+        PixelNode first = path.get(0);
+        PixelNode last = path.get(steps);
+        return new ChainCode(first.x, first.y, last.x, last.y, steps, codes);
+    }
+
+    /**
+     * 由网格图上的节点编号序列生成链码
+     */
+    public static ChainCode fromPath(GridGraph graph, int[] path) {
+        if (path == null || path.length == 0) {
+            throw new IllegalArgumentException("路径为空");
+        }
+        int steps = path.length - 1;
+        long[] codes = new long[(steps + STEPS_PER_WORD - 1) / STEPS_PER_WORD];
+        for (int i = 1; i <= steps; i++) {
+            int code = codeOf(graph.x(path[i]) - graph.x(path[i - 1]), graph.y(path[i]) - graph.y(path[i - 1]));
+            int step = i - 1;
+            codes[step / STEPS_PER_WORD] |= (long) code << (step % STEPS_PER_WORD * BITS_PER_STEP);
+        }
+        return new ChainCode(graph.x(path[0]), graph.y(path[0]), graph.x(path[steps]), graph.y(path[steps]), steps, codes);
+    }
+
+    /**
+     * 由 toBytes 的结果还原链码
+     */
+    public static ChainCode fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int startX = buffer.getInt();
+        int startY = buffer.getInt();
+        int steps = buffer.getInt();
+        long[] codes = new long[(steps + STEPS_PER_WORD - 1) / STEPS_PER_WORD];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = buffer.getLong();
+        }
+        // 重新走一遍得到终点
+        int x = startX, y = startY;
+        for (int step = 0; step < steps; step++) {
+            int code = (int) (codes[step / STEPS_PER_WORD] >>> (step % STEPS_PER_WORD * BITS_PER_STEP)) & 7;
+            x += DX[code];
+            y += DY[code];
+        }
+        return new ChainCode(startX, startY, x, y, steps, codes);
+    }
+
+    /**
+     * 序列化为字节数组：起点、步数和打包后的链码
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(12 + codes.length * 8);
+        buffer.putInt(startX).putInt(startY).putInt(steps);
+        for (long word : codes) {
+            buffer.putLong(word);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 按顺序遍历路径上的每个点（含起点和终点）
+     */
+    public void forEachPoint(PointVisitor visitor) {
+        int x = startX, y = startY;
+        visitor.visit(x, y);
+        int step = 0;
+        for (long word : codes) {
+            int end = Math.min(steps - step, STEPS_PER_WORD);
+            for (int i = 0; i < end; i++, word >>>= BITS_PER_STEP) {
+                int code = (int) word & 7;
+                x += DX[code];
+                y += DY[code];
+                visitor.visit(x, y);
+            }
+            step += end;
+        }
+    }
+
+    /**
+     * 路径点数
+     */
+    public int getLength() {
+        return steps + 1;
+    }
+
+    public int getStartX() {
+        return startX;
+    }
+
+    public int getStartY() {
+        return startY;
+    }
+
+    public int getEndX() {
+        return endX;
+    }
+
+    public int getEndY() {
+        return endY;
+    }
+
+    /**
+     * 相邻两点的位移转换为 Freeman 方向
+     */
+    private static int codeOf(int dx, int dy) {
+        for (int code = 0; code < 8; code++) {
+            if (DX[code] == dx && DY[code] == dy) return code;
+        }
+        throw new IllegalArgumentException("路径不是8连通的: (" + dx + "," + dy + ")");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof ChainCode)) return false;
+        ChainCode other = (ChainCode) o;
+        return startX == other.startX && startY == other.startY && steps == other.steps
+                && Arrays.equals(codes, other.codes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * startX + startY) + steps) + Arrays.hashCode(codes);
+    }
+}
@@ -0,0 +1,849 @@
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 轮廓编辑器：一次标注会话的状态和交互逻辑（吸附 → 规划 → 稳定性 → 闭合），不依赖任何界面组件
+ * 界面由 PathManager 负责；轨迹回放（TraceReplayer）直接驱动本类，因此两者走的是同一条处理流程
+ * 锚点树、闭合树和超像素图在 background 上构建，构建完成后在下一次事件中取用，所有事件方法都应在同一个线程上调用
+ * 预览在当前锚点的可续搜搜索（AnchorSearch）上进行，每次只扩展到吸附点为止；离开的锚点连同其搜索状态放入按内存限额的 LRU 缓存，
+ * 撤销或回到之前的锚点时直接复用，命中率记入 EngineMetrics
+ * 使用代价画笔期间在后台把锚点的搜索补全为整棵最短路径树，画笔修改代价后就地修复已有的树，不重新建树；
+ * 不用画笔时不补全，避免每次锚点变化都在后台做一次全图搜索与前台争抢 CPU
+ * 鼠标移动可以指定每帧的时间预算：预算内算不出精确路径时先显示近似路径（已扩展区域内的部分路径加直线），随后继续细化：
+ * 有当前锚点的搜索时由 refreshPreview 在事件线程空闲时按同样的预算分片推进（搜索不是线程安全的，也避免重复计算），
+ * 否则在 background 上规划；需要细化时通过 setRefreshListener 通知界面在空闲时调用 refreshPreview
+ */
+public class ContourEditor {
+    private final PathStabilityTracker stabilityTracker;
+    private final EdgeDetector edgeDetector;
+    private final Executor background;
+    private final Consumer<String> status;
+
+    // 路径数据
+    private int imageWidth;
+    private int imageHeight;
+    private GridGraph costGraph; // 网格图，代价图计算完成前为 null
+    private final List<ChainCode> confirmedPaths = new ArrayList<>(); // 已确认路径，以链码形式保存
+    private Point lastConfirmedPoint = null;
+    private Point firstPoint = null;
+    private Point currentSnappedPoint = null;
+    private Point suggestedNextPoint = null;
+    private int[] previewPath = null; // 当前预览的临时路径（网格图节点编号）
+    private boolean previewApproximate = false; // 当前预览是否为时间预算内给出的近似路径
+    private int[] lastExactPreview = null; // 最近一次精确的预览路径，用于拼接近似路径
+    private int[] closurePreview = null; // 从吸附点回到起点的闭合预览路径
+    private ShortestPathTree closureTree = null; // 以起点为根的最短路径树，在后台构建
+    private CompletableFuture<ShortestPathTree> closureTreeBuilder = null;
+    private final IntList closureTreeEdits = new IntList(); // 闭合树构建期间画笔改动过的节点，取用时修复
+    private AnchorSearch anchorSearch = null; // 当前锚点（上一个确认点）的可续搜搜索，完成后就是整棵最短路径树
+    private CompletableFuture<ShortestPathTree> anchorTreeBuilder = null; // 在后台补全当前锚点的树
+    private int anchorTreeRoot = -1; // 正在构建的锚点树的根
+    private final IntList anchorTreeEdits = new IntList(); // 锚点树构建期间画笔改动过的节点，取用时修复
+    private boolean anchorTreeEnabled = false; // 是否在后台补全锚点树（画笔开启或已经使用画笔时）
+    private final AnchorSearchCache anchorCache;
+    private final EngineMetrics metrics;
+    private SuperpixelGraph superpixels = null; // 大图的超像素边界图，在后台构建，用于长距离查询
+    private CompletableFuture<SuperpixelGraph> superpixelBuilder = null;
+    private CompletableFuture<PlannedPath> refineBuilder = null; // 后台计算的精确预览，同一时刻只有一个
+    private int refineStart = -1, refineEnd = -1; // refineBuilder 的起点和终点
+    private long refineEditMark = 0; // refineBuilder 开始时的 costEdits，之后画笔改过代价则结果作废
+    private PlannedPath refinedPath = null; // 已完成的精确预览，等待换上
+    private int refinedStart = -1, refinedEnd = -1;
+    private int pendingStart = -1, pendingEnd = -1; // 后台忙时最新一次需要细化的查询，上一个完成后再开始
+    private long costEdits = 0; // 画笔修改代价的次数
+    private long refineSliceNanos = 0; // 空闲时每次推进锚点搜索的时长，取最近一次鼠标移动的预算
+    private Runnable refreshListener = () -> { };
+
+    // 路径状态
+    private boolean isClosable = false;
+    private static final int CLOSE_PATH_THRESHOLD = 15; // 闭合判定阈值
+    private static final int SNAP_RADIUS = 7; // 吸附搜索半径
+    private static final int CLOSURE_MIN_SEGMENTS = 1; // 已确认的路径段达到该数目后才构建闭合树，与闭合判定一致
+    private static final int SUPERPIXEL_MIN_PIXELS = 4_000_000; // 像素数达到该值的图片才构建超像素图
+    private static final int SUPERPIXEL_CELL = 10; // 超像素种子间距
+    private static final double LONG_RANGE_DISTANCE = 300; // 两点距离超过该值时先在超像素图上粗规划
+    private static final int RESUMABLE_MAX_PIXELS = SUPERPIXEL_MIN_PIXELS; // 更大的图片不做可续搜，预览按两点规划
+    private static final int ANCHOR_CACHE_MEMORY_FRACTION = 8; // 锚点缓存最多占用最大堆内存的几分之一
+    public static final int BRUSH_RADIUS = 6; // 代价画笔半径（图像像素）
+    public static final double BLOCK_FACTOR = 4.0; // 屏蔽画笔每次把代价乘以该值
+    public static final double BOOST_FACTOR = 0.25; // 增强画笔每次把代价乘以该值
+
+    /**
+     * 点击的处理结果
+     */
+    public enum ClickResult {
+        IGNORED, // 点击无效
+        STARTED, // 设置了起点
+        CONFIRMED, // 确认了一段路径
+        CLOSED, // 路径已闭合
+        FAILED // 路径不可达或规划失败
+    }
+
+    /**
+     * 构造函数
+     * @param background 构建闭合树和超像素图的执行器
+     * @param status 接收状态提示
+     */
+    public ContourEditor(PathStabilityTracker stabilityTracker, EdgeDetector edgeDetector,
+                         Executor background, Consumer<String> status) {
+        this(stabilityTracker, edgeDetector, background, status, new EngineMetrics());
+    }
+
+    /**
+     * 构造函数，预览耗时和锚点缓存指标记入 metrics
+     */
+    public ContourEditor(PathStabilityTracker stabilityTracker, EdgeDetector edgeDetector,
+                         Executor background, Consumer<String> status, EngineMetrics metrics) {
+        this.stabilityTracker = stabilityTracker;
+        this.edgeDetector = edgeDetector;
+        this.background = background;
+        this.status = status;
+        this.metrics = metrics;
+        this.anchorCache = new AnchorSearchCache(Runtime.getRuntime().maxMemory() / ANCHOR_CACHE_MEMORY_FRACTION, metrics);
+    }
+
+    /**
+     * 开始标注新图片：图结构尚未就绪时 costGraph 为 null，此时只能设置起点
+     */
+    public void init(int imageWidth, int imageHeight, GridGraph costGraph) {
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.costGraph = costGraph;
+        discardAnchors();
+        rebuildSuperpixels();
+        resetAll();
+    }
+
+    /**
+     * 图结构在后台构建完成后接入，保留加载期间已经设置的起点
+     */
+    public void attachGraph(GridGraph costGraph) {
+        this.costGraph = costGraph;
+        discardClosureTree();
+        discardAnchors();
+        rebuildSuperpixels();
+        switchAnchor();
+        status.accept(lastConfirmedPoint != null
+                ? "图片已加载，起点已设置，移动鼠标预览路径" : "图片已加载，请点击设置起点");
+    }
+
+    /**
+     * 处理点击事件
+     */
+    public ClickResult handleClickAtPoint(Point targetPoint) {
+        String key = targetPoint == null ? "" : pointToKey(targetPoint);
+        collectBackgroundResults();
+
+        // 如果是第一个点：图结构尚未就绪时也允许设置
+        if (lastConfirmedPoint == null) {
+            if (!isInImage(targetPoint)) return ClickResult.IGNORED;
+            lastConfirmedPoint = firstPoint = targetPoint;
+            switchAnchor();
+            status.accept("起点已设置 (" + key + ")" + (costGraph == null ? "，代价图计算中..." : ""));
+            return ClickResult.STARTED;
+        }
+
+        if (!isValidPoint(targetPoint)) return ClickResult.IGNORED;
+
+        try {
+            int start = getNode(lastConfirmedPoint);
+            int[] path;
+            if (isClosable && closureTree != null) {
+                // 闭合段直接在闭合树上回溯，不再搜索
+                path = closureTree.pathFrom(start);
+            } else {
+                int end = isClosable ? getNode(firstPoint) : getNode(currentSnappedPoint);
+                path = anchorPath(start, end).getNodes();
+            }
+
+            if (path.length == 0) {
+                status.accept("路径不可达");
+                return ClickResult.FAILED;
+            }
+
+            confirmedPaths.add(ChainCode.fromPath(costGraph, path));
+            lastConfirmedPoint = currentSnappedPoint;
+            ensureClosureTree();
+            switchAnchor();
+
+            if (isClosable) {
+                status.accept("路径已闭合，正在抠图...");
+                return ClickResult.CLOSED;
+            }
+            previewPath = null;
+            status.accept("路径已确认至 (" + key + ")");
+            return ClickResult.CONFIRMED;
+        } catch (Exception ex) {
+            status.accept((isClosable ? "闭合路径失败: " : "路径确认失败: ") + ex.getMessage());
+            return ClickResult.FAILED;
+        }
+    }
+
+    /**
+     * 处理鼠标移动，返回预览是否更新（需要重绘），不限时
+     */
+    public boolean handleMouseMove(Point imagePoint) {
+        return handleMouseMove(imagePoint, 0);
+    }
+
+    /**
+     * 同上，预览在 budgetNanos 内给出（不大于 0 时不限时）：算不完时显示近似路径，精确路径在后台细化
+     * 近似路径不参与稳定性判断，也不会触发自动确认
+     */
+    public boolean handleMouseMove(Point imagePoint, long budgetNanos) {
+        if (costGraph == null || lastConfirmedPoint == null) return false;
+        long startNanos = System.nanoTime();
+        long deadline = budgetNanos > 0 ? startNanos + budgetNanos : Long.MAX_VALUE;
+        refineSliceNanos = budgetNanos;
+        collectBackgroundResults();
+
+        // 尝试找到边缘点
+        Point snapped = edgeDetector.findBestEdgeFromCost(imagePoint, SNAP_RADIUS, costGraph.getEditedCostMap());
+        PlannedPath tempPath = null;
+
+        if (snapped != null) {
+            currentSnappedPoint = snapped;
+
+            // 根据当前点和上一个确认点计算临时路径
+            int start = getNode(lastConfirmedPoint);
+            int end = getNode(currentSnappedPoint);
+            tempPath = deadline == Long.MAX_VALUE ? anchorPath(start, end) : budgetedPath(start, end, deadline);
+            if (tempPath == null) {
+                // 预算内没有算完：显示近似路径，精确路径由后台细化
+                previewPath = approximatePath(start, end);
+                previewApproximate = true;
+                closurePreview = closureTree != null ? closureTree.pathFrom(end) : null;
+                metrics.increment("preview.approximate");
+                status.accept("路径计算中... | 近似路径长度: " + previewPath.length);
+                updateClosable(imagePoint);
+                metrics.record("preview", System.nanoTime() - startNanos);
+                return true;
+            }
+
+            // 分析路径稳定性
+            boolean isStable = stabilityTracker.analyzePathStability(costGraph, tempPath);
+            // 如果路径稳定，生成推荐点
+            if (isStable) {
+                confirmedPaths.add(ChainCode.fromPath(costGraph, tempPath.getNodes()));
+                lastConfirmedPoint = currentSnappedPoint;
+                ensureClosureTree();
+                switchAnchor();
+            }
+            // 闭合预览：吸附点回到起点的路径，直接在闭合树上回溯
+            closurePreview = closureTree != null ? closureTree.pathFrom(end) : null;
+            showExactPreview(tempPath);
+
+            // 更新状态栏
+            updateStatusBarForPath(tempPath);
+        }
+
+        updateClosable(imagePoint);
+        metrics.record("preview", System.nanoTime() - startNanos);
+        return tempPath != null;
+    }
+
+    /**
+     * 计算是否可以闭合路径：网格图上任意两点都可达，只需检查是否足够接近起点
+     */
+    private void updateClosable(Point imagePoint) {
+        Point target = currentSnappedPoint != null ? currentSnappedPoint : imagePoint;
+        if (isValidPoint(target)) {
+            isClosable = firstPoint != null &&
+                    confirmedPaths.size() >= CLOSURE_MIN_SEGMENTS &&
+                    target.distance(firstPoint) <= CLOSE_PATH_THRESHOLD;
+        }
+    }
+
+    private void showExactPreview(PlannedPath path) {
+        previewPath = lastExactPreview = path.getNodes();
+        previewApproximate = false;
+        pendingStart = pendingEnd = -1;
+    }
+
+    /**
+     * 在 deadline 之前求锚点到 end 的精确路径，来不及时返回 null，并安排细化
+     * 当前锚点的搜索在前台限时推进，已扩展的部分留给空闲时和后续查询；没有可用的搜索时交给后台规划，前台最多等到 deadline
+     */
+    private PlannedPath budgetedPath(int start, int end, long deadline) {
+        if (refinedPath != null && refinedStart == start && refinedEnd == end) {
+            return refinedPath;
+        }
+        if (usesAnchorSearch(start, end)) {
+            PlannedPath path = anchorSearch.pathTo(end, deadline);
+            if (path == null) refreshListener.run();
+            return path;
+        }
+        CompletableFuture<PlannedPath> future = requestRefinement(start, end);
+        if (future == null) return null;
+        try {
+            PlannedPath path = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            collectBackgroundResults();
+            return path;
+        } catch (TimeoutException ex) {
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ex) {
+            return planPath(start, end);
+        }
+    }
+
+    /**
+     * 近似路径：当前锚点的搜索已扩展区域内的部分路径加直线；没有搜索时在上一次精确预览后接直线，再没有就用整段直线
+     */
+    private int[] approximatePath(int start, int end) {
+        if (anchorSearch != null && anchorSearch.getRoot() == start) {
+            return anchorSearch.partialPathTo(end);
+        }
+        if (lastExactPreview != null && lastExactPreview.length > 0 && lastExactPreview[0] == start) {
+            int[] tail = costGraph.straightLine(lastExactPreview[lastExactPreview.length - 1], end);
+            int[] path = Arrays.copyOf(lastExactPreview, lastExactPreview.length + tail.length - 1);
+            System.arraycopy(tail, 1, path, lastExactPreview.length, tail.length - 1);
+            return path;
+        }
+        return costGraph.straightLine(start, end);
+    }
+
+    /**
+     * 在后台计算 start 到 end 的精确路径；已有细化在进行时只记下这次查询，等它完成后再开始，返回 null
+     */
+    private CompletableFuture<PlannedPath> requestRefinement(int start, int end) {
+        if (refineBuilder != null) {
+            if (refineStart == start && refineEnd == end && refineEditMark == costEdits) return refineBuilder;
+            pendingStart = start;
+            pendingEnd = end;
+            return null;
+        }
+        GridGraph graph = costGraph;
+        SuperpixelGraph coarse = superpixels;
+        refineStart = start;
+        refineEnd = end;
+        refineEditMark = costEdits;
+        pendingStart = pendingEnd = -1;
+        refineBuilder = submit(graph, () -> planPath(graph, coarse, start, end));
+        Runnable listener = refreshListener;
+        refineBuilder.whenComplete((path, ex) -> listener.run());
+        return refineBuilder;
+    }
+
+    /**
+     * 设置需要细化预览时的回调：后台规划完成时在后台线程上调用，需要空闲推进锚点搜索时在事件线程上调用，
+     * 界面应把 refreshPreview 排到事件队列末尾执行，不能在回调中直接调用
+     */
+    public void setRefreshListener(Runnable listener) {
+        refreshListener = listener == null ? () -> { } : listener;
+    }
+
+    /**
+     * 细化近似预览：后台规划完成时换上结果；否则在当前锚点的搜索上再推进一个预算，仍未完成时更新近似路径并再次请求细化
+     * 返回预览是否更新（需要重绘）
+     */
+    public boolean refreshPreview() {
+        if (costGraph == null || lastConfirmedPoint == null || currentSnappedPoint == null) return false;
+        collectBackgroundResults();
+        if (!previewApproximate || previewPath == null) return false;
+        int start = getNode(lastConfirmedPoint);
+        int end = getNode(currentSnappedPoint);
+        PlannedPath path = null;
+        if (refinedPath != null && refinedStart == start && refinedEnd == end) {
+            path = refinedPath;
+        } else if (usesAnchorSearch(start, end)) {
+            path = anchorSearch.pathTo(end, refineSliceNanos > 0 ? System.nanoTime() + refineSliceNanos : Long.MAX_VALUE);
+            if (path == null) {
+                previewPath = anchorSearch.partialPathTo(end);
+                refreshListener.run();
+                return true;
+            }
+        }
+        if (path == null) return false;
+        showExactPreview(path);
+        metrics.increment("preview.refined");
+        updateStatusBarForPath(path);
+        return true;
+    }
+
+    /**
+     * 右键撤销上一次操作，返回是否处理了该事件
+     */
+    public boolean handleRightClick(Point imagePoint) {
+        if (!isValidPoint(imagePoint)) return false;
+        undoLastConfirmedPath();
+        return true;
+    }
+
+    /**
+     * 代价画笔：在 center 附近屏蔽（block 为 true，代价变大）或增强（代价变小）边缘，返回是否需要重绘
+     * 已有的锚点树和闭合树就地修复，只重新计算受影响的子树，随后立即按新代价刷新预览；
+     * 仍在构建中的树可能读到新旧混合的代价，记下改动的节点，取用时按代价变大的方式修复（作废经过这些节点的子树），结果同样精确。
+     * 超像素图不重建，走廊内的细化搜索仍使用新代价
+     */
+    public boolean applyBrush(Point center, boolean block) {
+        if (costGraph == null || !isValidPoint(center)) return false;
+        collectBackgroundResults();
+        setAnchorTreeEnabled(true);
+        int[] changed = costGraph.scaleCost(center.x, center.y, BRUSH_RADIUS, block ? BLOCK_FACTOR : BOOST_FACTOR);
+        if (changed.length == 0) return false;
+
+        int repaired = 0;
+        costEdits++;
+        refinedPath = null;
+        if (anchorSearch != null) {
+            if (anchorSearch.isComplete()) {
+                repaired += anchorSearch.repair(changed, block);
+            } else {
+                // 未完成的搜索无法修复，按新代价从头续搜
+                anchorSearch = new AnchorSearch(costGraph, anchorSearch.getRoot());
+            }
+        }
+        if (anchorTreeBuilder != null) {
+            for (int v : changed) anchorTreeEdits.add(v);
+        }
+        anchorCache.recordEdits(changed, costGraph.size() / 2);
+        if (closureTree != null) {
+            repaired += PathPlanner.repairShortestPathTree(costGraph, closureTree, changed, block);
+        } else if (closureTreeBuilder != null) {
+            for (int v : changed) closureTreeEdits.add(v);
+        }
+
+        // 按新代价刷新预览
+        if (lastConfirmedPoint != null && currentSnappedPoint != null) {
+            int start = getNode(lastConfirmedPoint);
+            int end = getNode(currentSnappedPoint);
+            PlannedPath tempPath = anchorPath(start, end);
+            showExactPreview(tempPath);
+            closurePreview = closureTree != null ? closureTree.pathFrom(end) : null;
+        }
+        status.accept((block ? "已屏蔽 " : "已增强 ") + changed.length + " 个像素的边缘，修复 " + repaired + " 个节点");
+        return true;
+    }
+
+    /**
+     * 锚点到 end 的路径：在当前锚点的搜索上继续扩展，结果与两点规划相同；
+     * 目标尚未扩展到且距离较远时，如果有超像素图，仍交给 planPath 粗规划，避免一次扩展过大的区域
+     */
+    private PlannedPath anchorPath(int start, int end) {
+        if (usesAnchorSearch(start, end)) {
+            return anchorSearch.pathTo(end);
+        }
+        return planPath(start, end);
+    }
+
+    private boolean usesAnchorSearch(int start, int end) {
+        return anchorSearch != null && anchorSearch.getRoot() == start && (anchorSearch.isSettled(end) || superpixels == null
+                || Math.hypot(costGraph.x(start) - costGraph.x(end), costGraph.y(start) - costGraph.y(end)) <= LONG_RANGE_DISTANCE);
+    }
+
+    /**
+     * 规划两点之间的路径：大图上的长距离查询先在超像素图上粗规划，再在走廊内细化
+     */
+    private PlannedPath planPath(int start, int end) {
+        return planPath(costGraph, superpixels, start, end);
+    }
+
+    /**
+     * 同上，只使用参数，可在后台线程上调用
+     */
+    private static PlannedPath planPath(GridGraph graph, SuperpixelGraph coarse, int start, int end) {
+        if (coarse != null && Math.hypot(graph.x(start) - graph.x(end), graph.y(start) - graph.y(end)) > LONG_RANGE_DISTANCE) {
+            return coarse.route(start, end);
+        }
+        return PathPlanner.plan(graph, start, end);
+    }
+
+    /**
+     * 取用已在后台构建完成的闭合树和超像素图
+     */
+    private void collectBackgroundResults() {
+        if (closureTreeBuilder != null && closureTreeBuilder.isDone()) {
+            closureTree = takeTree(closureTreeBuilder, closureTreeEdits);
+            closureTreeBuilder = null;
+        }
+        if (anchorTreeBuilder != null && anchorTreeBuilder.isDone()) {
+            ShortestPathTree tree = takeTree(anchorTreeBuilder, anchorTreeEdits);
+            anchorTreeBuilder = null;
+            anchorTreeRoot = -1;
+            if (tree != null && lastConfirmedPoint != null && tree.getRoot() == getNode(lastConfirmedPoint)) {
+                anchorSearch = AnchorSearch.complete(costGraph, tree);
+            }
+        }
+        if (superpixelBuilder != null && superpixelBuilder.isDone()) {
+            superpixels = takeResult(superpixelBuilder);
+            superpixelBuilder = null;
+        }
+        if (refineBuilder != null && refineBuilder.isDone()) {
+            PlannedPath path = takeResult(refineBuilder);
+            refineBuilder = null;
+            // 细化期间画笔改过代价时结果作废
+            if (path != null && !path.isEmpty() && refineEditMark == costEdits) {
+                refinedPath = path;
+                refinedStart = refineStart;
+                refinedEnd = refineEnd;
+            }
+            // 仍在显示近似预览时，继续细化最新的查询
+            if (pendingStart >= 0 && previewApproximate && lastConfirmedPoint != null
+                    && pendingStart == getNode(lastConfirmedPoint)) {
+                requestRefinement(pendingStart, pendingEnd);
+            }
+        }
+    }
+
+    /**
+     * 取用构建完成的树，并修复构建期间画笔改动过的节点
+     */
+    private ShortestPathTree takeTree(CompletableFuture<ShortestPathTree> builder, IntList edits) {
+        ShortestPathTree tree = takeResult(builder);
+        if (tree != null && !edits.isEmpty()) {
+            PathPlanner.repairShortestPathTree(costGraph, tree, edits.toArray(), true);
+        }
+        edits.clear();
+        return tree;
+    }
+
+    /**
+     * 取出后台任务的结果；任务被取消时静默返回 null，失败时通过状态栏报告并返回 null
+     */
+    private <T> T takeResult(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CancellationException ex) {
+            return null;
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            status.accept("后台计算失败: " + cause);
+            return null;
+        }
+    }
+
+    /**
+     * 在后台线程上运行使用 graph 的任务：任务运行期间持有图的引用，图被替换并释放后，其堆外代价图要等任务结束才关闭
+     * 运行前已被取消的任务不再计算；图已释放时返回已取消的任务
+     */
+    private <T> CompletableFuture<T> submit(GridGraph graph, Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (!graph.retain()) {
+            future.cancel(false);
+            return future;
+        }
+        try {
+            background.execute(() -> {
+                try {
+                    if (!future.isDone()) future.complete(task.get());
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                } finally {
+                    graph.release();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            graph.release();
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * 图结构变化时丢弃旧的超像素图；图片足够大时在后台构建新的超像素图
+     */
+    private void rebuildSuperpixels() {
+        if (superpixelBuilder != null) {
+            superpixelBuilder.cancel(true);
+            superpixelBuilder = null;
+        }
+        superpixels = null;
+        if (costGraph == null || costGraph.size() < SUPERPIXEL_MIN_PIXELS) return;
+        GridGraph graph = costGraph;
+        superpixelBuilder = submit(graph, () -> SuperpixelGraph.build(graph, SUPERPIXEL_CELL));
+    }
+
+    /**
+     * 已确认的路径段足够时，在后台构建以起点为根的最短路径树
+     * 之后闭合预览和闭合段都由该树回溯得到；树构建完成前闭合段仍按普通路径规划
+     */
+    private void ensureClosureTree() {
+        if (costGraph == null || firstPoint == null || confirmedPaths.size() < CLOSURE_MIN_SEGMENTS
+                || closureTree != null || closureTreeBuilder != null) {
+            return;
+        }
+        GridGraph graph = costGraph;
+        int root = getNode(firstPoint);
+        closureTreeEdits.clear();
+        closureTreeBuilder = submit(graph, () -> PathPlanner.computeShortestPathTree(graph, root));
+    }
+
+    /**
+     * 开启或关闭锚点树的后台补全，界面在画笔模式切换时调用
+     */
+    public void setAnchorTreeEnabled(boolean enabled) {
+        anchorTreeEnabled = enabled;
+        if (enabled) {
+            ensureAnchorTree();
+        } else {
+            cancelAnchorTree();
+        }
+    }
+
+    /**
+     * 锚点变化后切换到新锚点的搜索：原锚点的搜索放回缓存，新锚点优先从缓存中取出
+     */
+    private void switchAnchor() {
+        if (costGraph == null || lastConfirmedPoint == null) return;
+        int root = getNode(lastConfirmedPoint);
+        if (anchorSearch == null || anchorSearch.getRoot() != root) {
+            leaveAnchor();
+            anchorSearch = anchorCache.take(root);
+            if (anchorSearch == null && costGraph.size() < RESUMABLE_MAX_PIXELS) {
+                anchorSearch = new AnchorSearch(costGraph, root);
+            }
+        }
+        ensureAnchorTree();
+    }
+
+    /**
+     * 离开当前锚点：搜索放回缓存，停止补全
+     */
+    private void leaveAnchor() {
+        cancelAnchorTree();
+        if (anchorSearch != null) anchorCache.put(anchorSearch);
+        anchorSearch = null;
+    }
+
+    /**
+     * 画笔开启且当前锚点的树尚未完成时，在后台构建整棵树，构建完成前预览仍在可续搜的搜索上进行
+     */
+    private void ensureAnchorTree() {
+        if (!anchorTreeEnabled || costGraph == null || lastConfirmedPoint == null) return;
+        if (anchorSearch != null && anchorSearch.isComplete()) return;
+        int root = getNode(lastConfirmedPoint);
+        if (root == anchorTreeRoot) return;
+        cancelAnchorTree();
+        GridGraph graph = costGraph;
+        anchorTreeRoot = root;
+        anchorTreeEdits.clear();
+        anchorTreeBuilder = submit(graph, () -> PathPlanner.computeShortestPathTree(graph, root));
+    }
+
+    private void cancelAnchorTree() {
+        if (anchorTreeBuilder != null) {
+            anchorTreeBuilder.cancel(true);
+            anchorTreeBuilder = null;
+        }
+        anchorTreeRoot = -1;
+    }
+
+    /**
+     * 图结构变化时丢弃当前锚点的搜索、全部缓存和后台细化的结果
+     */
+    private void discardAnchors() {
+        cancelAnchorTree();
+        anchorSearch = null;
+        anchorCache.clear();
+        if (refineBuilder != null) {
+            refineBuilder.cancel(true);
+            refineBuilder = null;
+        }
+        refinedPath = null;
+        lastExactPreview = null;
+        pendingStart = pendingEnd = -1;
+    }
+
+    /**
+     * 丢弃闭合树（起点或图结构变化时），仍在构建的结果不再取用
+     */
+    private void discardClosureTree() {
+        if (closureTreeBuilder != null) {
+            closureTreeBuilder.cancel(true);
+            closureTreeBuilder = null;
+        }
+        closureTree = null;
+        closurePreview = null;
+    }
+
+    /**
+     * 叠加层：在图像坐标下绘制已确认路径、临时路径和吸附点，只绘制可见区域内的点
+     */
+    public void paintOverlay(Graphics2D g, double scale, Rectangle visible) {
+        // 首先绘制所有已确认的路径（红色）
+        g.setColor(Color.RED);
+        for (ChainCode path : confirmedPaths) {
+            path.forEachPoint((x, y) -> {
+                if (visible.contains(x, y)) g.fillRect(x, y, 1, 1);
+            });
+        }
+
+        // 然后绘制临时路径（蓝色，近似路径为浅蓝色）
+        if (previewPath != null && costGraph != null) {
+            g.setColor(previewApproximate ? new Color(120, 160, 255) : Color.BLUE);
+            for (int index : previewPath) {
+                int x = costGraph.x(index), y = costGraph.y(index);
+                if (visible.contains(x, y)) g.fillRect(x, y, 1, 1);
+            }
+        }
+
+        // 绘制闭合预览（绿色）
+        if (closurePreview != null && costGraph != null) {
+            g.setColor(new Color(0, 200, 0));
+            for (int index : closurePreview) {
+                int x = costGraph.x(index), y = costGraph.y(index);
+                if (visible.contains(x, y)) g.fillRect(x, y, 1, 1);
+            }
+        }
+
+        // 绘制当前吸附点，大小按屏幕像素计算，不随缩放变化
+        if (currentSnappedPoint != null) {
+            double cx = currentSnappedPoint.x + 0.5, cy = currentSnappedPoint.y + 0.5;
+            double outer = 6.5 / scale, inner = 4.5 / scale;
+            // 先绘制黄色外圈（更大更明显）
+            g.setColor(new Color(255, 255, 0, 180));
+            g.fill(new Ellipse2D.Double(cx - outer, cy - outer, 2 * outer, 2 * outer));
+            // 然后绘制黄色实心
+            g.setColor(Color.YELLOW);
+            g.fill(new Ellipse2D.Double(cx - inner, cy - inner, 2 * inner, 2 * inner));
+        }
+    }
+
+    /**
+     * 更新状态栏显示路径信息
+     */
+    private void updateStatusBarForPath(PlannedPath path) {
+        final int MIN_PATH_LENGTH = 50;
+        StringBuilder text = new StringBuilder();
+
+        if (path.size() >= MIN_PATH_LENGTH) {
+            if (stabilityTracker.isPathStable()) {
+                text.append("【路径稳定】");
+                if (suggestedNextPoint != null) {
+                    text.append(" ✓ 绿色点为建议点 - 按住Ctrl点击接受");
+                }
+            } else {
+                text.append("沿边缘移动可触发自动建议点");
+            }
+            text.append(" | 路径长度: ").append(path.size());
+        } else {
+            text.append("继续沿边缘移动...(需要至少").append(MIN_PATH_LENGTH).append("个点)");
+        }
+
+        status.accept(text.toString());
+    }
+
+    /**
+     * 重置所有路径和状态
+     */
+    public void resetAll() {
+        lastConfirmedPoint = null;
+        confirmedPaths.clear();
+        firstPoint = null;
+        isClosable = false;
+        currentSnappedPoint = null;
+        suggestedNextPoint = null;
+        previewPath = null;
+        discardClosureTree();
+        leaveAnchor();
+
+        stabilityTracker.resetStability();
+        status.accept(costGraph == null ? "代价图计算中，可以先点击设置起点" : "请点击图像设置起点");
+    }
+
+    /**
+     * 撤销最后一段已确认路径
+     */
+    public void undoLastConfirmedPath() {
+        if (!confirmedPaths.isEmpty()) {
+            // 移除最后一段路径
+            confirmedPaths.remove(confirmedPaths.size() - 1);
+
+            // 恢复上一个确认点
+            if (confirmedPaths.isEmpty()) {
+                lastConfirmedPoint = firstPoint = null;
+                discardClosureTree();
+                leaveAnchor();
+                status.accept("已撤销所有路径，请重新设置起点");
+            } else {
+                // 获取最新路径的终点作为 lastConfirmedPoint
+                ChainCode lastPath = confirmedPaths.get(confirmedPaths.size() - 1);
+                lastConfirmedPoint = new Point(lastPath.getEndX(), lastPath.getEndY());
+                switchAnchor();
+                status.accept("已撤销上一个路径");
+            }
+            previewPath = null;
+        } else {
+            status.accept("无可撤销路径");
+        }
+    }
+
+    /**
+     * 将点坐标转换为图中的键
+     */
+    private String pointToKey(Point p) {
+        return p.x + "," + p.y;
+    }
+
+    /**
+     * 获取指定点在网格图中的节点编号
+     */
+    private int getNode(Point p) {
+        return costGraph.index(p.x, p.y);
+    }
+
+    /**
+     * 判断点是否有效（在图中存在）
+     */
+    private boolean isValidPoint(Point p) {
+        return p != null && costGraph != null && costGraph.contains(p.x, p.y);
+    }
+
+    /**
+     * 判断点是否在当前图像范围内（不要求图结构已就绪）
+     */
+    private boolean isInImage(Point p) {
+        return p != null && p.x >= 0 && p.y >= 0 && p.x < imageWidth && p.y < imageHeight;
+    }
+
+    /**
+     * Getter方法
+     */
+    public List<ChainCode> getConfirmedPaths() {
+        return confirmedPaths;
+    }
+
+    public EngineMetrics getMetrics() {
+        return metrics;
+    }
+
+    public GridGraph getGraph() {
+        return costGraph;
+    }
+
+    public boolean hasStartPoint() {
+        return lastConfirmedPoint != null;
+    }
+
+    public boolean hasSnappedPoint() {
+        return currentSnappedPoint != null;
+    }
+
+    public Point getCurrentSnappedPoint() {
+        return currentSnappedPoint;
+    }
+
+    public boolean hasSuggestedPoint() {
+        return suggestedNextPoint != null;
+    }
+
+    public Point getSuggestedPoint() {
+        return suggestedNextPoint;
+    }
+}
@@ -0,0 +1,68 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 轮廓矢量导出：把简化后的轮廓逐点写出为 SVG 路径或 GeoJSON，不在内存中拼接整个文件
+ * 坐标为图像像素坐标（原点在左上角，y 轴向下），GeoJSON 同样使用像素坐标
+ */
+public class ContourExporter {
+
+    /**
+     * 写出 SVG：画布与图像同尺寸，轮廓为一条 path，除第一个点外使用相对坐标以减小文件
+     */
+    public static void writeSvg(Writer out, ContourSimplifier.Contour contour, int width, int height) throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width + "\" height=\"" + height
+                + "\" viewBox=\"0 0 " + width + " " + height + "\">\n");
+        out.write("<path fill=\"none\" stroke=\"red\" stroke-width=\"1\" d=\"");
+        for (int i = 0; i < contour.size(); i++) {
+            if (i == 0) {
+                out.write("M" + contour.getX(0) + " " + contour.getY(0));
+            } else {
+                int dx = contour.getX(i) - contour.getX(i - 1);
+                int dy = contour.getY(i) - contour.getY(i - 1);
+                out.write((i == 1 ? "l" : " ") + dx + " " + dy);
+            }
+        }
+        if (contour.isClosed()) out.write("z");
+        out.write("\"/>\n</svg>\n");
+    }
+
+    /**
+     * 写出 GeoJSON：闭合轮廓为 Polygon（首尾点相同），否则为 LineString
+     */
+    public static void writeGeoJson(Writer out, ContourSimplifier.Contour contour) throws IOException {
+        boolean polygon = contour.isClosed();
+        out.write("{\"type\":\"Feature\",\"properties\":{\"vertices\":" + contour.size() + "},\"geometry\":{\"type\":\"");
+        out.write(polygon ? "Polygon\",\"coordinates\":[[" : "LineString\",\"coordinates\":[");
+        for (int i = 0; i < contour.size(); i++) {
+            if (i > 0) out.write(',');
+            out.write("[" + contour.getX(i) + "," + contour.getY(i) + "]");
+        }
+        if (polygon && contour.size() > 0) {
+            out.write(",[" + contour.getX(0) + "," + contour.getY(0) + "]");
+        }
+        out.write(polygon ? "]]}}\n" : "]}}\n");
+    }
+
+    /**
+     * 按扩展名（.svg / .geojson / .json）写出到文件
+     */
+    public static void export(File file, ContourSimplifier.Contour contour, int width, int height) throws IOException {
+        String name = file.getName().toLowerCase();
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            if (name.endsWith(".svg")) {
+                writeSvg(out, contour, width, height);
+            } else if (name.endsWith(".geojson") || name.endsWith(".json")) {
+                writeGeoJson(out, contour);
+            } else {
+                throw new IOException("不支持的导出格式: " + file.getName());
+            }
+        }
+    }
+}
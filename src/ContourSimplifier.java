@@ -0,0 +1,151 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 轮廓简化：把逐像素的路径链码简化为折线或多边形，简化后的顶点连线与原始像素点的距离不超过给定的像素误差
+ * 采用 Douglas–Peucker 算法（显式栈，避免长轮廓递归过深）；闭合轮廓先在起点和离起点最远的点处断开，
+ * 两半分别简化，因此起点不会被当作普通顶点删除
+ */
+public class ContourSimplifier {
+
+    /**
+     * 简化结果：顶点坐标，闭合轮廓不重复首点
+     */
+    public static class Contour {
+        private final int[] xs;
+        private final int[] ys;
+        private final boolean closed;
+
+        Contour(int[] xs, int[] ys, boolean closed) {
+            this.xs = xs;
+            this.ys = ys;
+            this.closed = closed;
+        }
+
+        public int size() {
+            return xs.length;
+        }
+
+        public int getX(int i) {
+            return xs[i];
+        }
+
+        public int getY(int i) {
+            return ys[i];
+        }
+
+        /**
+         * 终点与起点重合时视为闭合轮廓
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+    }
+
+    /**
+     * 把依次相连的路径段拼接起来并简化
+     * @param paths 已确认的路径段，前一段的终点是后一段的起点
+     * @param tolerance 允许的最大像素误差
+     */
+    public static Contour simplify(List<ChainCode> paths, double tolerance) {
+        // 拼接所有点，去掉段与段之间重复的端点
+        IntList xs = new IntList(1024);
+        IntList ys = new IntList(1024);
+        for (ChainCode path : paths) {
+            path.forEachPoint((x, y) -> {
+                int last = xs.size() - 1;
+                if (last >= 0 && xs.get(last) == x && ys.get(last) == y) return;
+                xs.add(x);
+                ys.add(y);
+            });
+        }
+        int count = xs.size();
+        boolean closed = count > 2 && xs.get(0) == xs.get(count - 1) && ys.get(0) == ys.get(count - 1);
+        if (closed) count--; // 去掉与起点重合的终点
+
+        int[] px = new int[count + 1];
+        int[] py = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            px[i] = xs.get(i);
+            py[i] = ys.get(i);
+        }
+        if (count <= 3) {
+            return new Contour(Arrays.copyOf(px, count), Arrays.copyOf(py, count), closed);
+        }
+
+        boolean[] keep = new boolean[count + 1];
+        IntList stack = new IntList();
+        keep[0] = true;
+        if (closed) {
+            // 末尾补上起点，闭合轮廓在最远点处断开为两条折线
+            px[count] = px[0];
+            py[count] = py[0];
+            int far = 0;
+            long farDistance = -1;
+            for (int i = 1; i < count; i++) {
+                long dx = px[i] - px[0], dy = py[i] - py[0];
+                if (dx * dx + dy * dy > farDistance) {
+                    farDistance = dx * dx + dy * dy;
+                    far = i;
+                }
+            }
+            keep[far] = true;
+            stack.add(0);
+            stack.add(far);
+            stack.add(far);
+            stack.add(count);
+        } else {
+            keep[count - 1] = true;
+            stack.add(0);
+            stack.add(count - 1);
+        }
+
+        // Douglas–Peucker：保留离弦最远且超过误差的点，再分别处理两侧
+        double toleranceSquared = tolerance * tolerance;
+        while (!stack.isEmpty()) {
+            int b = stack.pop();
+            int a = stack.pop();
+            int farthest = -1;
+            double maxDistance = toleranceSquared;
+            for (int i = a + 1; i < b; i++) {
+                double d = segmentDistanceSquared(px[i], py[i], px[a], py[a], px[b], py[b]);
+                if (d > maxDistance) {
+                    maxDistance = d;
+                    farthest = i;
+                }
+            }
+            if (farthest < 0) continue;
+            keep[farthest] = true;
+            stack.add(a);
+            stack.add(farthest);
+            stack.add(farthest);
+            stack.add(b);
+        }
+
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) kept++;
+        }
+        int[] rx = new int[kept];
+        int[] ry = new int[kept];
+        for (int i = 0, j = 0; i < count; i++) {
+            if (!keep[i]) continue;
+            rx[j] = px[i];
+            ry[j] = py[i];
+            j++;
+        }
+        return new Contour(rx, ry, closed);
+    }
+
+    /**
+     * 点 (x, y) 到线段 (ax, ay)-(bx, by) 的距离平方
+     */
+    private static double segmentDistanceSquared(int x, int y, int ax, int ay, int bx, int by) {
+        double dx = bx - ax, dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((x - ax) * dx + (y - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double ex = x - (ax + t * dx), ey = y - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+}
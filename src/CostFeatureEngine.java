@@ -0,0 +1,401 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * 多特征代价引擎：按 Mortensen–Barrett 的方法组合三种代价项
+ * 1. fZ：拉普拉斯过零点，过零点处为 0，否则为 1；未平滑的拉普拉斯在纹理和噪声上到处过零，因此只保留梯度足够强的过零点；
+ * 2. fG：梯度幅值，与 CostGraphGenerator.getCostImage 的归一化方式相同，边缘处接近 0；
+ * 3. fD：梯度方向，沿边缘方向前进时代价小，横穿边缘时代价大。
+ * 计算分三个并行阶段：
+ * 阶段一按块一次读取像素（按图片的原生栅格布局，见 RasterTile），同时算出 Sobel 梯度、梯度方向和拉普拉斯，可以按离光标的距离排序以便渐进加载；
+ * 阶段二、三按列条带划分（与 index = x * height + y 的存储顺序一致），阶段二算节点项 fZ、fG；
+ * 阶段三算出每条边的最终代价并写入 LinkCostPlanes，规划器只需直接读取
+ */
+public class CostFeatureEngine {
+    // 默认权重：Mortensen–Barrett 论文为 0.43 / 0.43 / 0.14，但本引擎的 fZ 由 3x3 拉普拉斯得到，对噪声敏感，
+    // 按 AccuracyBenchmark 的纹理图片调整为以梯度项为主，使纹理上的精度不低于只用节点代价
+    public static final double DEFAULT_WEIGHT_ZERO_CROSSING = 0.05;
+    public static final double DEFAULT_WEIGHT_GRADIENT = 0.81;
+    public static final double DEFAULT_WEIGHT_DIRECTION = 0.14;
+    private static final int BANDS_PER_WORKER = 4; // 每个工作线程分到的列条带数
+    private static final int TILE_SIZE = 128; // 阶段一的分块边长
+    private static final float ZERO_CROSSING_MIN_SLOPE = 16; // 过零点两侧拉普拉斯差值的下限，过滤平坦区域的微小波动
+    // 过零点处归一化梯度幅值（1 - fG）的下限：噪声的拉普拉斯幅度与真实边缘相当，斜率阈值无法区分，梯度强度可以
+    private static final double ZERO_CROSSING_MIN_GRADIENT = 0.35;
+
+    private final double weightZeroCrossing;
+    private final double weightGradient;
+    private final double weightDirection;
+    private final boolean parallel; // 是否使用公共线程池并行计算
+
+    /**
+     * 使用默认权重
+     */
+    public CostFeatureEngine() {
+        this(true);
+    }
+
+    /**
+     * 使用默认权重，parallel 为 false 时在调用线程中串行计算（用于后台预取，不占用其它核心）
+     */
+    public CostFeatureEngine(boolean parallel) {
+        this(DEFAULT_WEIGHT_ZERO_CROSSING, DEFAULT_WEIGHT_GRADIENT, DEFAULT_WEIGHT_DIRECTION, parallel);
+    }
+
+    public CostFeatureEngine(double weightZeroCrossing, double weightGradient, double weightDirection) {
+        this(weightZeroCrossing, weightGradient, weightDirection, true);
+    }
+
+    public CostFeatureEngine(double weightZeroCrossing, double weightGradient, double weightDirection, boolean parallel) {
+        this.weightZeroCrossing = weightZeroCrossing;
+        this.weightGradient = weightGradient;
+        this.weightDirection = weightDirection;
+        this.parallel = parallel;
+    }
+
+    /**
+     * 计算图片的边代价平面
+     * 边代价 = 2 * (wZ * (fZ(p)+fZ(q))/2 + wG * (fG(p)+fG(q))/2 + wD * fD(p,q))，取值范围与原来的 [0, 2] 一致，
+     * 当 wG = 1 时退化为原来的 costGraph[p] + costGraph[q]
+     */
+    public LinkCostPlanes compute(BufferedImage img) {
+        return compute(img, null, null);
+    }
+
+    /**
+     * 渐进式计算边代价平面：阶段一按块进行，每次优先处理离 focus 当前位置最近的块，并通过 listener 报告进度
+     * focus 为 null 时按光栅顺序处理；listener 抛出的异常（例如取消加载）会终止计算
+     */
+    public LinkCostPlanes compute(BufferedImage img, Supplier<Point> focus, ProgressListener listener) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        int size = width * height;
+        int workers = parallel ? Runtime.getRuntime().availableProcessors() : 1;
+        int bands = Math.min(width, workers * BANDS_PER_WORKER);
+
+        Features features = new Features(size);
+        TileQueue tiles = new TileQueue(width, height, focus);
+        double[] tileMin = new double[tiles.count];
+        double[] tileMax = new double[tiles.count];
+
+        // 阶段一：梯度幅值、梯度方向和拉普拉斯，多个线程从块队列中取块
+        AtomicInteger done = new AtomicInteger();
+        range(workers).forEach(worker -> {
+            int tile;
+            while ((tile = tiles.next()) >= 0) {
+                int tx = tile / tiles.tilesY, ty = tile % tiles.tilesY;
+                int x0 = tx * TILE_SIZE, y0 = ty * TILE_SIZE;
+                double[] range = computeFeatures(img, features, x0, y0,
+                        Math.min(width, x0 + TILE_SIZE), Math.min(height, y0 + TILE_SIZE));
+                tileMin[tile] = range[0];
+                tileMax[tile] = range[1];
+                if (listener != null) {
+                    try {
+                        listener.progress(done.incrementAndGet(), tiles.count);
+                    } catch (RuntimeException ex) {
+                        tiles.abort();
+                        throw ex;
+                    }
+                }
+            }
+        });
+        double[] magnitude = features.magnitude;
+        float[] laplacian = features.laplacian;
+        float[] edgeX = features.edgeX;
+        float[] edgeY = features.edgeY;
+
+        double minValue = Double.POSITIVE_INFINITY;
+        double maxValue = Double.NEGATIVE_INFINITY;
+        for (int t = 0; t < tiles.count; t++) {
+            minValue = Math.min(minValue, tileMin[t]);
+            maxValue = Math.max(maxValue, tileMax[t]);
+        }
+        double min = minValue;
+        double range = maxValue - minValue + 1e-8;
+
+        // 阶段二：节点项 fG（写入代价矩阵）和 fZ
+        double[][] nodeCost = new double[width][height];
+        byte[] zeroCrossing = new byte[size];
+        range(bands).forEach(b -> {
+            for (int x = bandStart(b, bands, width); x < bandStart(b + 1, bands, width); x++) {
+                double[] column = nodeCost[x];
+                for (int y = 0; y < height; y++) {
+                    int index = x * height + y;
+                    column[y] = 1 - (magnitude[index] - min) / range;
+                    boolean strong = column[y] <= 1 - ZERO_CROSSING_MIN_GRADIENT;
+                    zeroCrossing[index] = (byte) (strong && isZeroCrossing(laplacian, width, height, x, y) ? 0 : 1);
+                }
+            }
+        });
+
+        // 阶段三：每条无向边只计算一次，写入 4 个正方向平面
+        float[][] planes = new float[4][size];
+        range(bands).forEach(b -> {
+            for (int x = bandStart(b, bands, width); x < bandStart(b + 1, bands, width); x++) {
+                for (int y = 0; y < height; y++) {
+                    int p = x * height + y;
+                    for (int dir = 4; dir < 8; dir++) {
+                        int nx = x + GridGraph.DX[dir];
+                        int ny = y + GridGraph.DY[dir];
+                        if (nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+                        int q = nx * height + ny;
+                        double cost = weightZeroCrossing * (zeroCrossing[p] + zeroCrossing[q])
+                                + weightGradient * (nodeCost[x][y] + nodeCost[nx][ny])
+                                + 2 * weightDirection * directionCost(edgeX, edgeY, p, q, GridGraph.DX[dir], GridGraph.DY[dir]);
+                        planes[dir - 4][p] = (float) cost;
+                    }
+                }
+            }
+        });
+
+        return new LinkCostPlanes(width, height, planes, nodeCost);
+    }
+
+    private IntStream range(int count) {
+        IntStream stream = IntStream.range(0, count);
+        return parallel ? stream.parallel() : stream;
+    }
+
+    /**
+     * 计算区域 [x0, x1) x [y0, y1) 内的逐像素特征，返回该区域梯度幅值的 {最小值, 最大值}
+     * 区域及外围一圈像素经 RasterTile 按图片的原生布局读取，灰度图和彩色图分别使用专门的卷积核
+     */
+    private static double[] computeFeatures(BufferedImage img, Features features, int x0, int y0, int x1, int y1) {
+        int rx0 = Math.max(0, x0 - 1), ry0 = Math.max(0, y0 - 1);
+        int rw = Math.min(img.getWidth(), x1 + 1) - rx0;
+        int rh = Math.min(img.getHeight(), y1 + 1) - ry0;
+        RasterTile tile = RasterTile.read(img, rx0, ry0, rw, rh);
+        return tile.channels() == 1
+                ? grayFeatures(tile, img.getWidth(), img.getHeight(), rx0, ry0, features, x0, y0, x1, y1)
+                : colorFeatures(tile, img.getWidth(), img.getHeight(), rx0, ry0, features, x0, y0, x1, y1);
+    }
+
+    /**
+     * 彩色卷积核：三个颜色通道分别对 x、y 方向求 Sobel 梯度，越界像素按 0 处理（与 getCostImage 一致）
+     */
+    private static double[] colorFeatures(RasterTile tile, int width, int height, int rx0, int ry0,
+                                          Features features, int x0, int y0, int x1, int y1) {
+        float[] red = tile.bands[0], green = tile.bands[1], blue = tile.bands[2];
+        int rw = tile.width;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        for (int x = x0; x < x1; x++) {
+            for (int y = y0; y < y1; y++) {
+                double rx = 0, ry = 0, gx = 0, gy = 0, bx = 0, by = 0;
+                for (int k = -1; k <= 1; k++) {
+                    int nx = x + k;
+                    if (nx < 0 || nx >= width) continue;
+                    for (int l = -1; l <= 1; l++) {
+                        int ny = y + l;
+                        if (ny < 0 || ny >= height) continue;
+                        int i = (ny - ry0) * rw + nx - rx0;
+                        int wx = k * (l == 0 ? 2 : 1); // x 方向 Sobel 权重
+                        int wy = l * (k == 0 ? 2 : 1); // y 方向 Sobel 权重
+                        rx += wx * red[i];
+                        ry += wy * red[i];
+                        gx += wx * green[i];
+                        gy += wy * green[i];
+                        bx += wx * blue[i];
+                        by += wy * blue[i];
+                    }
+                }
+                int index = x * height + y;
+                double mag = Math.sqrt(rx * rx + ry * ry + gx * gx + gy * gy + bx * bx + by * by);
+                if (mag < min) min = mag;
+                if (mag > max) max = mag;
+
+                // 灰度拉普拉斯（4邻域）取三个通道的平均值，越界时取边界像素
+                int row = (y - ry0) * rw, col = x - rx0;
+                int left = row + Math.max(x - 1, 0) - rx0, right = row + Math.min(x + 1, width - 1) - rx0;
+                int up = (Math.max(y - 1, 0) - ry0) * rw + col, down = (Math.min(y + 1, height - 1) - ry0) * rw + col;
+                double sum = (red[left] + green[left] + blue[left]) / 3.0 + (red[right] + green[right] + blue[right]) / 3.0
+                        + (red[up] + green[up] + blue[up]) / 3.0 + (red[down] + green[down] + blue[down]) / 3.0;
+                double center = (red[row + col] + green[row + col] + blue[row + col]) / 3.0;
+                storeFeatures(features, index, mag, rx + gx + bx, ry + gy + by, sum - 4 * center);
+            }
+        }
+        return new double[]{min, max};
+    }
+
+    /**
+     * 灰度卷积核：只有一个通道，结果与把灰度复制到三个颜色通道后用彩色卷积核计算相同
+     */
+    private static double[] grayFeatures(RasterTile tile, int width, int height, int rx0, int ry0,
+                                         Features features, int x0, int y0, int x1, int y1) {
+        float[] gray = tile.bands[0];
+        int rw = tile.width;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        for (int x = x0; x < x1; x++) {
+            for (int y = y0; y < y1; y++) {
+                double sx = 0, sy = 0;
+                for (int k = -1; k <= 1; k++) {
+                    int nx = x + k;
+                    if (nx < 0 || nx >= width) continue;
+                    for (int l = -1; l <= 1; l++) {
+                        int ny = y + l;
+                        if (ny < 0 || ny >= height) continue;
+                        float v = gray[(ny - ry0) * rw + nx - rx0];
+                        sx += k * (l == 0 ? 2 : 1) * v;
+                        sy += l * (k == 0 ? 2 : 1) * v;
+                    }
+                }
+                int index = x * height + y;
+                // 三个相同通道的梯度幅值是单通道的 √3 倍
+                double mag = Math.sqrt(3 * (sx * sx + sy * sy));
+                if (mag < min) min = mag;
+                if (mag > max) max = mag;
+
+                int row = (y - ry0) * rw, col = x - rx0;
+                double sum = gray[row + Math.max(x - 1, 0) - rx0] + gray[row + Math.min(x + 1, width - 1) - rx0]
+                        + gray[(Math.max(y - 1, 0) - ry0) * rw + col] + gray[(Math.min(y + 1, height - 1) - ry0) * rw + col];
+                storeFeatures(features, index, mag, sx, sy, sum - 4 * gray[row + col]);
+            }
+        }
+        return new double[]{min, max};
+    }
+
+    /**
+     * 写入一个像素的特征：梯度方向 (sx, sy) 旋转 90 度为边缘方向
+     */
+    private static void storeFeatures(Features features, int index, double mag, double sx, double sy, double laplacian) {
+        features.magnitude[index] = mag;
+        double len = Math.sqrt(sx * sx + sy * sy);
+        if (len > 0) {
+            features.edgeX[index] = (float) (sy / len);
+            features.edgeY[index] = (float) (-sx / len);
+        }
+        features.laplacian[index] = (float) laplacian;
+    }
+
+    /**
+     * 逐块计算的进度回调
+     */
+    public interface ProgressListener {
+        void progress(int doneTiles, int totalTiles);
+    }
+
+    /**
+     * 阶段一的逐像素特征
+     */
+    private static class Features {
+        final double[] magnitude;
+        final float[] laplacian;
+        final float[] edgeX; // 边缘方向单位向量（与梯度垂直）
+        final float[] edgeY;
+
+        Features(int size) {
+            magnitude = new double[size];
+            laplacian = new float[size];
+            edgeX = new float[size];
+            edgeY = new float[size];
+        }
+    }
+
+    /**
+     * 块队列：没有焦点时按顺序出队，有焦点时每次取离焦点当前位置最近的未处理块
+     */
+    private static class TileQueue {
+        final int tilesX, tilesY, count;
+        private final Supplier<Point> focus;
+        private final boolean[] taken;
+        private int next = 0; // 无焦点时的下一个块
+        private int remaining;
+
+        TileQueue(int width, int height, Supplier<Point> focus) {
+            tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+            tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+            count = tilesX * tilesY;
+            this.focus = focus;
+            taken = new boolean[count];
+            remaining = count;
+        }
+
+        synchronized int next() {
+            if (remaining <= 0) return -1;
+            Point p = focus != null ? focus.get() : null;
+            int best = -1;
+            if (p == null) {
+                while (taken[next]) next++;
+                best = next;
+            } else {
+                long bestDistance = Long.MAX_VALUE;
+                for (int t = 0; t < count; t++) {
+                    if (taken[t]) continue;
+                    long dx = (t / tilesY) * TILE_SIZE + TILE_SIZE / 2 - p.x;
+                    long dy = (t % tilesY) * TILE_SIZE + TILE_SIZE / 2 - p.y;
+                    long distance = dx * dx + dy * dy;
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        best = t;
+                    }
+                }
+            }
+            taken[best] = true;
+            remaining--;
+            return best;
+        }
+
+        synchronized void abort() {
+            remaining = 0;
+        }
+    }
+
+    /**
+     * 判断 (x, y) 是否为拉普拉斯过零点：与某个4邻域像素严格异号、自身更接近 0，且两侧差值足够大；
+     * 恰好为 0 时，只有两侧同时存在明显的正值和负值邻居才算（平坦区域的 0 不是过零点）
+     */
+    private static boolean isZeroCrossing(float[] laplacian, int width, int height, int x, int y) {
+        float value = laplacian[x * height + y];
+        boolean hasPositive = false, hasNegative = false;
+        for (int dir = 0; dir < 8; dir++) {
+            if (GridGraph.DX[dir] != 0 && GridGraph.DY[dir] != 0) continue;
+            int nx = x + GridGraph.DX[dir];
+            int ny = y + GridGraph.DY[dir];
+            if (nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+            float other = laplacian[nx * height + ny];
+            if (other >= ZERO_CROSSING_MIN_SLOPE / 2) hasPositive = true;
+            if (other <= -ZERO_CROSSING_MIN_SLOPE / 2) hasNegative = true;
+            if (value * other < 0 && Math.abs(value) <= Math.abs(other)
+                    && Math.abs(value - other) >= ZERO_CROSSING_MIN_SLOPE) return true;
+        }
+        return value == 0 && hasPositive && hasNegative;
+    }
+
+    /**
+     * 梯度方向代价 fD，取 p→q 与 q→p 两个方向的平均值以保证边代价对称，范围 [0, 1]
+     */
+    private static double directionCost(float[] edgeX, float[] edgeY, int p, int q, int dx, int dy) {
+        return (directedCost(edgeX[p], edgeY[p], edgeX[q], edgeY[q], dx, dy)
+                + directedCost(edgeX[q], edgeY[q], edgeX[p], edgeY[p], -dx, -dy)) / 2;
+    }
+
+    /**
+     * Mortensen–Barrett 的 fD(p,q) = 2/(3π) * (acos(dp) + acos(dq))
+     */
+    private static double directedCost(double px, double py, double qx, double qy, int dx, int dy) {
+        double len = Math.sqrt(dx * dx + dy * dy);
+        double lx = dx / len, ly = dy / len;
+        // 链接方向与 p 的边缘方向保持同侧
+        if (px * lx + py * ly < 0) {
+            lx = -lx;
+            ly = -ly;
+        }
+        double dp = clamp(px * lx + py * ly);
+        double dq = clamp(lx * qx + ly * qy);
+        return 2 / (3 * Math.PI) * (Math.acos(dp) + Math.acos(dq));
+    }
+
+    private static double clamp(double value) {
+        return Math.max(-1, Math.min(1, value));
+    }
+
+    private static int bandStart(int band, int bands, int width) {
+        return (int) ((long) width * band / bands);
+    }
+}
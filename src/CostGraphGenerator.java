@@ -1,6 +1,7 @@
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.Arrays;
 import java.util.Map;
 
 
@@ -15,7 +16,12 @@ public class CostGraphGenerator {
 
     // 构造函数，初始化图片信息
     public CostGraphGenerator(String imgPath) throws Exception {
-        this.img = ImageIO.read(new File(imgPath)); // 读取图片
+        this(ImageIO.read(new File(imgPath))); // 读取图片
+    }
+
+    // 构造函数，直接使用已解码的图片（例如视频帧）
+    public CostGraphGenerator(BufferedImage img) {
+        this.img = img;
         this.width = img.getWidth(); // 获取图片宽度
         this.height = img.getHeight(); // 获取图片高度
     }
@@ -32,67 +38,101 @@ public class CostGraphGenerator {
     // 获取代价矩阵
     public double[][] getCostImage() {
         double[][] costImage = new double[this.width][this.height]; // 创建一个二维数组来存储代价值
+        computeGradient(costImage, 0, 0, this.width, this.height);
+        // 归一化代价矩阵到 [0, 1]
+        double max = Double.NEGATIVE_INFINITY;
+        double min = Double.POSITIVE_INFINITY;
         for (int i = 0; i < this.width; i++) {
             for (int j = 0; j < this.height; j++) {
-                // 初始化三个颜色通道的x,y分量梯度
-                double r_gx = 0, r_gy = 0;
-                double g_gx = 0, g_gy = 0;
-                double b_gx = 0, b_gy = 0;
+                double val = costImage[i][j];
+                if (val > max) max = val;
+                if (val < min) min = val;
+            }
+        }
+
+        // 边缘部分代价小，使用1-costGraph[i][j]来表示
+        normalizeToCost(costImage, costImage, min, max, 0, 0, this.width, this.height);
+        return costImage; // 返回代价矩阵
+    }
+
+    // 计算区域 [x0, x1) x [y0, y1) 内每个像素的梯度幅值（未归一化），结果写入 gradient
+    // 区域及外围一圈像素一次性按图片的原生布局读取（RasterTile），灰度图只卷积一个通道，结果乘以 √3 与三个相同通道一致
+    public void computeGradient(double[][] gradient, int x0, int y0, int x1, int y1) {
+        int rx0 = Math.max(0, x0 - 1), ry0 = Math.max(0, y0 - 1);
+        int rw = Math.min(this.width, x1 + 1) - rx0;
+        int rh = Math.min(this.height, y1 + 1) - ry0;
+        RasterTile tile = RasterTile.read(this.img, rx0, ry0, rw, rh);
+        int channels = tile.channels();
+        double[] gx = new double[channels];
+        double[] gy = new double[channels];
+        double channelScale = 3.0 / channels; // 灰度图按三个相同通道计算
+        for (int i = x0; i < x1; i++) {
+            for (int j = y0; j < y1; j++) {
+                // 初始化各颜色通道的x,y分量梯度
+                Arrays.fill(gx, 0);
+                Arrays.fill(gy, 0);
                 // 遍历3x3的邻域进行卷积
                 for (int k = -1; k <= 1; k++) {
                     for (int l = -1; l <= 1; l++) {
                         // 确保不越界
                         if (i + k >= 0 && i + k < this.width && j + l >= 0 && j + l < this.height) {
-                            int rgb = this.img.getRGB(i + k, j + l); // 获取像素的RGB值
-                            int r = (rgb >> 16) & 0xff; // 提取红色分量
-                            int g = (rgb >> 8) & 0xff; // 提取绿色分量
-                            int b = rgb & 0xff; // 提取蓝色分量
-
-                            r_gx += s_x[k + 1][l + 1] * r; // 红色分量的梯度
-                            r_gy += s_y[k + 1][l + 1] * r; // 红色分量的梯度
-                            g_gx += s_x[k + 1][l + 1] * g; // 绿色分量的梯度
-                            g_gy += s_y[k + 1][l + 1] * g; // 绿色分量的梯度
-                            b_gx += s_x[k + 1][l + 1] * b; // 蓝色分量的梯度
-                            b_gy += s_y[k + 1][l + 1] * b; // 蓝色分量的梯度
+                            int p = (j + l - ry0) * rw + i + k - rx0;
+                            for (int c = 0; c < channels; c++) {
+                                float v = tile.bands[c][p];
+                                gx[c] += s_x[k + 1][l + 1] * v; // 该通道的x方向梯度
+                                gy[c] += s_y[k + 1][l + 1] * v; // 该通道的y方向梯度
+                            }
                         }
                     }
                 }
-                double G_r = Math.sqrt(r_gx * r_gx + r_gy * r_gy); // 计算红色分量的梯度幅值
-                double G_g = Math.sqrt(g_gx * g_gx + g_gy * g_gy); // 计算绿色分量的梯度幅值
-                double G_b = Math.sqrt(b_gx * b_gx + b_gy * b_gy); // 计算蓝色分量的梯度幅值
-
-                costImage[i][j] = Math.sqrt(G_r * G_r + G_g * G_g + G_b * G_b); // 计算总的代价值
+                double sum = 0;
+                for (int c = 0; c < channels; c++) {
+                    sum += gx[c] * gx[c] + gy[c] * gy[c]; // 各通道梯度幅值的平方
+                }
+                gradient[i][j] = Math.sqrt(sum * channelScale); // 计算总的代价值
             }
         }
-        // 归一化代价矩阵到 [0, 1]
-        double max = Double.NEGATIVE_INFINITY;
-        double min = Double.POSITIVE_INFINITY;
-        for (int i = 0; i < this.width; i++) {
-            for (int j = 0; j < this.height; j++) {
-                double val = costImage[i][j];
-                if (val > max) max = val;
-                if (val < min) min = val;
+    }
+
+    // 按给定的梯度范围把区域内的梯度幅值归一化为代价，超出范围的值截断到 [0, 1]
+    public static void normalizeToCost(double[][] gradient, double[][] cost, double min, double max,
+                                       int x0, int y0, int x1, int y1) {
+        for (int i = x0; i < x1; i++) {
+            for (int j = y0; j < y1; j++) {
+                double normalized = (gradient[i][j] - min) / (max - min + 1e-8); // 归一化
+                cost[i][j] = 1 - Math.max(0, Math.min(1, normalized));
             }
         }
+    }
 
-        // 边缘部分代价小，使用1-costGraph[i][j]来表示
+    // 使用多特征代价引擎（拉普拉斯过零点、梯度幅值、梯度方向）计算方向边代价平面
+    public LinkCostPlanes getLinkCostPlanes() {
+        return new CostFeatureEngine().compute(this.img);
+    }
+
+    // 由边代价平面构造图，每条边的 link_cost 直接取自预计算的平面
+    public Map<String, PixelNode> costImageToGraph (LinkCostPlanes planes){
+        Map<String, PixelNode> graph = createNodes();
         for (int i = 0; i < this.width; i++) {
             for (int j = 0; j < this.height; j++) {
-                costImage[i][j] = 1-(costImage[i][j] - min) / (max - min + 1e-8); // 归一化
+                PixelNode node = graph.get(i + "," + j);
+                int index = i * this.height + j;
+                for (int dir = 0; dir < 8; dir++) {
+                    int ni = i + GridGraph.DX[dir];
+                    int nj = j + GridGraph.DY[dir];
+                    if (ni >= 0 && ni < this.width && nj >= 0 && nj < this.height) {
+                        PixelNode neighbor = graph.get(ni + "," + nj);
+                        node.neighbors.add(new PixelNode.Neighbor(neighbor, planes.linkCost(index, dir))); // 添加邻居
+                    }
+                }
             }
         }
-        return costImage; // 返回代价矩阵
+        return graph;
     }
 
     //将代价矩阵转换为图，每条边的值 link_cost = costGraph(x) + costGraph，使用HashMap存储<坐标，节点>
     public Map<String, PixelNode> costImageToGraph (double[][] costGraph){
-        Map<String, PixelNode> graph = new java.util.HashMap<>();
-        for (int i = 0; i < this.width; i++) {
-            for (int j = 0; j < this.height; j++) {
-                PixelNode node = new PixelNode(i, j);
-                graph.put(i + "," + j, node); // 将节点添加到图中
-            }
-        }
+        Map<String, PixelNode> graph = createNodes();
         for (int i = 0; i < this.width; i++) {
             for (int j = 0; j < this.height; j++) {
                 PixelNode node = graph.get(i + "," + j);
@@ -114,6 +154,18 @@ public class CostGraphGenerator {
         return graph;
     }
 
+    // 为每个像素创建节点，使用HashMap存储<坐标，节点>
+    private Map<String, PixelNode> createNodes() {
+        Map<String, PixelNode> graph = new java.util.HashMap<>();
+        for (int i = 0; i < this.width; i++) {
+            for (int j = 0; j < this.height; j++) {
+                PixelNode node = new PixelNode(i, j);
+                graph.put(i + "," + j, node); // 将节点添加到图中
+            }
+        }
+        return graph;
+    }
+
 }
 
 
@@ -0,0 +1,52 @@
+/**
+ * 代价图访问接口：按坐标或节点编号读取像素代价
+ * 节点编号 index = x * height + y，与 GridGraph 一致
+ * 实现可以把数据放在 Java 堆上（ArrayCostMap、QuantizedCostMap）、堆外（OffHeapCostMap），或只缓存部分块（TiledCostMap），读取都是只读的，可被多个规划线程共享
+ */
+public interface CostMap {
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * 按节点编号读取代价
+     */
+    double get(int index);
+
+    /**
+     * 按坐标读取代价
+     */
+    default double get(int x, int y) {
+        return get(x * getHeight() + y);
+    }
+
+    /**
+     * 把已有的 double[][] 代价矩阵包装为 CostMap，不复制数据
+     */
+    static CostMap wrap(double[][] costImage) {
+        int width = costImage.length;
+        int height = costImage[0].length;
+        return new CostMap() {
+            @Override
+            public int getWidth() {
+                return width;
+            }
+
+            @Override
+            public int getHeight() {
+                return height;
+            }
+
+            @Override
+            public double get(int index) {
+                return costImage[index / height][index % height];
+            }
+
+            @Override
+            public double get(int x, int y) {
+                return costImage[x][y];
+            }
+        };
+    }
+}
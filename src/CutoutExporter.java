@@ -0,0 +1,341 @@
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.event.IIOWriteProgressListener;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 抠图导出队列：在单个后台写入线程上依次把抠图写成 PNG，不占用事件线程
+ * 1. 不预先生成整张 ARGB 输出图：MaskedImage 把原图和掩码包装成按条带生成像素的 RenderedImage，
+ *    PNG 写入器逐行读取时才生成所在的条带，内存只与条带大小成正比；
+ * 2. 压缩级别 0–9 即 deflate 级别，级别越低写得越快、文件越大；
+ * 3. 多个导出依次排队执行，进度通过 Listener 在写入线程上回调，界面需要自行切回事件线程；
+ *    写入失败时删除不完整的文件，返回的 CompletableFuture 以异常结束
+ */
+public class CutoutExporter implements Closeable {
+    public static final int DEFAULT_COMPRESSION_LEVEL = 4; // 与 PNG 写入器的默认级别相同
+    private static final int BAND_ROWS = 64; // 每个条带的行数
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "cutout-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger pending = new AtomicInteger(); // 排队中和正在写入的导出数
+
+    /**
+     * 导出进度回调
+     */
+    public interface Listener {
+        void progress(File file, float percent);
+    }
+
+    /**
+     * 把 source 在 mask 内的部分（其余透明）排队写入 file，返回写入完成时结束的 CompletableFuture
+     */
+    public CompletableFuture<File> submit(BufferedImage source, BitMask mask, File file, int compressionLevel, Listener listener) {
+        return submit(source, mask, null, file, compressionLevel, listener);
+    }
+
+    /**
+     * 同上，alpha 不为 null 时掩码内的像素再乘以 alpha[y * width + x] / 255（羽化边缘）
+     */
+    public CompletableFuture<File> submit(BufferedImage source, BitMask mask, byte[] alpha, File file,
+                                          int compressionLevel, Listener listener) {
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException("压缩级别应在 0 到 9 之间: " + compressionLevel);
+        }
+        pending.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                write(new MaskedImage(source, mask, alpha), file, compressionLevel, listener);
+                return file;
+            } catch (IOException ex) {
+                file.delete();
+                throw new IllegalStateException("写入失败: " + ex.getMessage(), ex);
+            } finally {
+                pending.decrementAndGet();
+            }
+        }, writer);
+    }
+
+    /**
+     * 排队中和正在写入的导出数
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * 不再接受新的导出，已排队的导出继续写完
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+    }
+
+    /**
+     * 用 PNG 写入器按指定压缩级别写出 image
+     */
+    static void write(RenderedImage image, File file, int compressionLevel, Listener listener) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("png");
+        if (!writers.hasNext()) throw new IOException("没有可用的 PNG 写入器");
+        ImageWriter pngWriter = writers.next();
+        ImageWriteParam param = pngWriter.getDefaultWriteParam();
+        if (param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            // 写入器按 (int) (9 * (1 - quality)) 取 deflate 级别，取区间中点避免舍入误差
+            param.setCompressionQuality(Math.max(0f, 1f - (compressionLevel + 0.5f) / 9f));
+        }
+        if (listener != null) {
+            pngWriter.addIIOWriteProgressListener(new ProgressAdapter(file, listener));
+        }
+        file.delete(); // 覆盖已有文件时先删除，避免残留比新文件更长的旧内容
+        try (ImageOutputStream out = new FileImageOutputStream(file)) {
+            pngWriter.setOutput(out);
+            pngWriter.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            pngWriter.dispose();
+        }
+    }
+
+    /**
+     * 把 pixels[offset + x] 在 [x0, x1) 内的 ARGB 像素的 alpha 乘以 alpha[alphaOffset + x] / 255
+     */
+    static void applyAlpha(int[] pixels, int offset, byte[] alpha, int alphaOffset, int x0, int x1) {
+        for (int x = x0; x < x1; x++) {
+            int p = pixels[offset + x];
+            int a = ((p >>> 24) * (alpha[alphaOffset + x] & 0xff) + 127) / 255;
+            pixels[offset + x] = (a << 24) | (p & 0xffffff);
+        }
+    }
+
+    /**
+     * 把写入器的进度事件转给 Listener
+     */
+    private static class ProgressAdapter implements IIOWriteProgressListener {
+        private final File file;
+        private final Listener listener;
+
+        ProgressAdapter(File file, Listener listener) {
+            this.file = file;
+            this.listener = listener;
+        }
+
+        @Override
+        public void imageProgress(ImageWriter source, float percentageDone) {
+            listener.progress(file, percentageDone);
+        }
+
+        @Override
+        public void imageComplete(ImageWriter source) {
+            listener.progress(file, 100f);
+        }
+
+        @Override
+        public void imageStarted(ImageWriter source, int imageIndex) {
+        }
+
+        @Override
+        public void thumbnailStarted(ImageWriter source, int imageIndex, int thumbnailIndex) {
+        }
+
+        @Override
+        public void thumbnailProgress(ImageWriter source, float percentageDone) {
+        }
+
+        @Override
+        public void thumbnailComplete(ImageWriter source) {
+        }
+
+        @Override
+        public void writeAborted(ImageWriter source) {
+        }
+    }
+
+    /**
+     * 原图在掩码内的部分，其余像素透明，给出 alpha 时再乘以羽化的 alpha；按 BAND_ROWS 行一个条带（图块）按需生成，只缓存最近一个条带
+     */
+    static class MaskedImage implements RenderedImage {
+        private final BufferedImage source;
+        private final BitMask mask;
+        private final byte[] alpha; // 羽化的 alpha，硬边时为 null
+        private final ColorModel colorModel = ColorModel.getRGBdefault();
+        private final SampleModel sampleModel;
+        private WritableRaster band; // 最近生成的条带
+        private int bandIndex = -1;
+
+        MaskedImage(BufferedImage source, BitMask mask, byte[] alpha) {
+            if (source.getWidth() != mask.getWidth() || source.getHeight() != mask.getHeight()) {
+                throw new IllegalArgumentException("掩码与图片尺寸不一致");
+            }
+            this.source = source;
+            this.mask = mask;
+            this.alpha = alpha;
+            this.sampleModel = colorModel.createCompatibleSampleModel(source.getWidth(), BAND_ROWS);
+        }
+
+        @Override
+        public synchronized Raster getTile(int tileX, int tileY) {
+            if (tileY != bandIndex) {
+                band = createBand(tileY);
+                bandIndex = tileY;
+            }
+            return band;
+        }
+
+        /**
+         * 生成第 index 个条带：只复制掩码内的各段，其余保持为 0（透明）
+         */
+        private WritableRaster createBand(int index) {
+            int y0 = index * BAND_ROWS;
+            WritableRaster raster = Raster.createWritableRaster(sampleModel, new Point(0, y0));
+            int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+            int width = source.getWidth();
+            for (int y = y0; y < Math.min(y0 + BAND_ROWS, source.getHeight()); y++) {
+                for (int x = mask.nextSetBit(0, y); x < width; x = mask.nextSetBit(x, y)) {
+                    int end = mask.nextClearBit(x, y);
+                    int offset = (y - y0) * width;
+                    source.getRGB(x, y, end - x, 1, pixels, offset + x, width);
+                    if (alpha != null) applyAlpha(pixels, offset, alpha, y * width, x, end);
+                    x = end;
+                }
+            }
+            return raster;
+        }
+
+        @Override
+        public Raster getData(Rectangle rect) {
+            int firstBand = rect.y / BAND_ROWS, lastBand = (rect.y + rect.height - 1) / BAND_ROWS;
+            if (firstBand == lastBand) {
+                Raster tile = getTile(0, firstBand);
+                return tile.createChild(rect.x, rect.y, rect.width, rect.height, rect.x, rect.y, null);
+            }
+            WritableRaster raster = colorModel.createCompatibleWritableRaster(rect.width, rect.height)
+                    .createWritableTranslatedChild(rect.x, rect.y);
+            return copyData(raster);
+        }
+
+        @Override
+        public Raster getData() {
+            return getData(new Rectangle(0, 0, getWidth(), getHeight()));
+        }
+
+        @Override
+        public WritableRaster copyData(WritableRaster raster) {
+            if (raster == null) {
+                raster = colorModel.createCompatibleWritableRaster(getWidth(), getHeight());
+            }
+            Rectangle bounds = raster.getBounds().intersection(new Rectangle(0, 0, getWidth(), getHeight()));
+            for (int b = bounds.y / BAND_ROWS; b * BAND_ROWS < bounds.y + bounds.height; b++) {
+                Rectangle part = bounds.intersection(new Rectangle(0, b * BAND_ROWS, getWidth(), BAND_ROWS));
+                raster.setRect(getTile(0, b).createChild(part.x, part.y, part.width, part.height, part.x, part.y, null));
+            }
+            return raster;
+        }
+
+        @Override
+        public Vector<RenderedImage> getSources() {
+            return null;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return Image.UndefinedProperty;
+        }
+
+        @Override
+        public String[] getPropertyNames() {
+            return null;
+        }
+
+        @Override
+        public ColorModel getColorModel() {
+            return colorModel;
+        }
+
+        @Override
+        public SampleModel getSampleModel() {
+            return sampleModel;
+        }
+
+        @Override
+        public int getWidth() {
+            return source.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return source.getHeight();
+        }
+
+        @Override
+        public int getMinX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinY() {
+            return 0;
+        }
+
+        @Override
+        public int getNumXTiles() {
+            return 1;
+        }
+
+        @Override
+        public int getNumYTiles() {
+            return (getHeight() + BAND_ROWS - 1) / BAND_ROWS;
+        }
+
+        @Override
+        public int getMinTileX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinTileY() {
+            return 0;
+        }
+
+        @Override
+        public int getTileWidth() {
+            return getWidth();
+        }
+
+        @Override
+        public int getTileHeight() {
+            return BAND_ROWS;
+        }
+
+        @Override
+        public int getTileGridXOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getTileGridYOffset() {
+            return 0;
+        }
+    }
+}
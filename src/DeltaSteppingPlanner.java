@@ -0,0 +1,201 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * 并行 delta-stepping 最短路径树求解器
+ * 按距离把节点分入宽度为 delta 的桶，逐桶处理；同一桶内的 frontier 并行松弛。
+ * 每轮松弛分两个阶段：
+ * 1. 各分块只读当前标签，生成松弛请求，并按目标节点所在的列条带分给对应的“所有者”；
+ * 2. 每个所有者只更新自己条带内的节点，因此无需加锁或 CAS。
+ * 标签按 (dist, hops) 字典序比较、前驱取编号最小者，最终结果与 PathPlanner.computeShortestPathTree 逐项相同
+ * 网格图的边权都很小（不超过 2*sqrt(2)），因此不区分轻边和重边，桶内所有边统一迭代到收敛
+ */
+public class DeltaSteppingPlanner {
+    private static final int SEQUENTIAL_THRESHOLD = 4096; // frontier 小于该值时串行松弛，避免任务调度开销
+    private static final int CHUNKS_PER_WORKER = 4; // 每个工作线程分到的分块数，用于负载均衡
+
+    private final ForkJoinPool pool;
+    private final double delta;
+
+    /**
+     * 构造函数
+     * @param pool 执行并行松弛的线程池
+     * @param delta 桶宽度
+     */
+    public DeltaSteppingPlanner(ForkJoinPool pool, double delta) {
+        if (delta <= 0) throw new IllegalArgumentException("delta 必须为正数: " + delta);
+        this.pool = pool;
+        this.delta = delta;
+    }
+
+    /**
+     * 计算以 root 为根的完整最短路径树
+     */
+    public ShortestPathTree computeShortestPathTree(GridGraph graph, int root) {
+        ShortestPathTree tree = new ShortestPathTree(root, graph.size());
+        int owners = pool.getParallelism();
+        int chunks = owners * CHUNKS_PER_WORKER;
+
+        RequestBuffer[][] requests = new RequestBuffer[chunks][owners];
+        for (RequestBuffer[] row : requests) {
+            for (int o = 0; o < owners; o++) row[o] = new RequestBuffer();
+        }
+        IntList[] changed = new IntList[owners];
+        for (int o = 0; o < owners; o++) changed[o] = new IntList();
+
+        List<IntList> buckets = new ArrayList<>();
+        bucketAt(buckets, 0).add(root);
+        int[] stamp = new int[graph.size()]; // 用于 frontier 去重
+        int round = 0;
+        IntList frontier = new IntList();
+
+        for (int b = 0; b < buckets.size(); b++) {
+            IntList bucket = buckets.get(b);
+            while (!bucket.isEmpty()) {
+                // 取出桶中仍然属于该桶的节点作为 frontier
+                round++;
+                frontier.clear();
+                for (int i = 0; i < bucket.size(); i++) {
+                    int v = bucket.get(i);
+                    if (stamp[v] != round && bucketOf(tree.dist[v]) == b) {
+                        stamp[v] = round;
+                        frontier.add(v);
+                    }
+                }
+                bucket.clear();
+                if (frontier.isEmpty()) break;
+
+                if (frontier.size() < SEQUENTIAL_THRESHOLD || owners == 1) {
+                    relaxSequential(graph, tree, frontier, changed[0]);
+                } else {
+                    relaxParallel(graph, tree, frontier, requests, changed);
+                }
+
+                // 被改进的节点放入对应的桶
+                for (IntList list : changed) {
+                    for (int i = 0; i < list.size(); i++) {
+                        int v = list.get(i);
+                        bucketAt(buckets, bucketOf(tree.dist[v])).add(v);
+                    }
+                    list.clear();
+                }
+            }
+            buckets.set(b, null); // 已处理完的桶不再需要
+        }
+        return tree;
+    }
+
+    /**
+     * 串行松弛 frontier 中所有节点的出边
+     */
+    private void relaxSequential(GridGraph graph, ShortestPathTree tree, IntList frontier, IntList changed) {
+        for (int i = 0; i < frontier.size(); i++) {
+            int u = frontier.get(i);
+            double du = tree.dist[u];
+            int hu = tree.hops[u];
+            for (int dir = 0; dir < 8; dir++) {
+                int v = graph.neighbor(u, dir);
+                if (v < 0) continue;
+                apply(tree, v, du + graph.moveCost(u, dir), hu + 1, u, changed);
+            }
+        }
+    }
+
+    /**
+     * 两阶段并行松弛
+     */
+    private void relaxParallel(GridGraph graph, ShortestPathTree tree, IntList frontier,
+                               RequestBuffer[][] requests, IntList[] changed) {
+        int chunks = requests.length;
+        int owners = changed.length;
+        int size = frontier.size();
+
+        // 阶段一：只读标签，生成请求
+        pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(c -> {
+            RequestBuffer[] out = requests[c];
+            int from = (int) ((long) size * c / chunks);
+            int to = (int) ((long) size * (c + 1) / chunks);
+            for (int i = from; i < to; i++) {
+                int u = frontier.get(i);
+                double du = tree.dist[u];
+                int hu = tree.hops[u];
+                for (int dir = 0; dir < 8; dir++) {
+                    int v = graph.neighbor(u, dir);
+                    if (v < 0) continue;
+                    double d = du + graph.moveCost(u, dir);
+                    if (tree.isBetter(v, d, hu + 1, u)) {
+                        out[ownerOf(graph, v, owners)].add(v, d, hu + 1, u);
+                    }
+                }
+            }
+        })).join();
+
+        // 阶段二：每个所有者只写自己条带内的节点
+        pool.submit(() -> IntStream.range(0, owners).parallel().forEach(o -> {
+            for (RequestBuffer[] row : requests) {
+                RequestBuffer in = row[o];
+                for (int i = 0; i < in.size; i++) {
+                    apply(tree, in.target[i], in.dist[i], in.hops[i], in.from[i], changed[o]);
+                }
+                in.size = 0;
+            }
+        })).join();
+    }
+
+    /**
+     * 应用一次松弛；标签 (dist, hops) 变小时记录到 changed，仅前驱变化时不需要再次松弛
+     */
+    private static void apply(ShortestPathTree tree, int v, double d, int h, int from, IntList changed) {
+        if (!tree.isBetter(v, d, h, from)) return;
+        boolean labelImproved = d != tree.dist[v] || h != tree.hops[v];
+        tree.dist[v] = d;
+        tree.hops[v] = h;
+        tree.pred[v] = from;
+        if (labelImproved) changed.add(v);
+    }
+
+    private int bucketOf(double d) {
+        return (int) (d / delta);
+    }
+
+    private static IntList bucketAt(List<IntList> buckets, int b) {
+        while (buckets.size() <= b) buckets.add(new IntList());
+        return buckets.get(b);
+    }
+
+    /**
+     * 节点按所在列划分到不同的所有者
+     */
+    private static int ownerOf(GridGraph graph, int v, int owners) {
+        return (int) ((long) graph.x(v) * owners / graph.getWidth());
+    }
+
+    /**
+     * 单个分块发往单个所有者的松弛请求
+     */
+    private static class RequestBuffer {
+        int[] target = new int[64];
+        double[] dist = new double[64];
+        int[] hops = new int[64];
+        int[] from = new int[64];
+        int size = 0;
+
+        void add(int v, double d, int h, int u) {
+            if (size == target.length) {
+                int capacity = size * 2;
+                target = Arrays.copyOf(target, capacity);
+                dist = Arrays.copyOf(dist, capacity);
+                hops = Arrays.copyOf(hops, capacity);
+                from = Arrays.copyOf(from, capacity);
+            }
+            target[size] = v;
+            dist[size] = d;
+            hops[size] = h;
+            from[size] = u;
+            size++;
+        }
+    }
+}
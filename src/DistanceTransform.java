@@ -0,0 +1,167 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * 二值掩码的精确欧氏距离变换（Felzenszwalb–Huttenlocher / Meijster 的可分离算法）
+ * 1. 按列：每个像素到同一列最近目标像素的距离 g，逐行上下各扫一遍，直接读取掩码的字；
+ * 2. 按行：对每行的 g(x')² + (x - x')² 求抛物线下包络，得到二维的平方距离。
+ * 两个阶段都是 O(宽 x 高)，与形状和距离大小无关；都按行连续访问内存（掩码和距离都是行优先），
+ * 阶段内各列条带、各行互不依赖，在公共线程池中并行
+ * 平方距离用 int 存储，长宽在 32768 以内时不会溢出，结果是精确的整数
+ */
+public class DistanceTransform {
+    public static final int INFINITY = Integer.MAX_VALUE; // 没有目标像素时的距离
+    private static final int BANDS_PER_WORKER = 4; // 每个线程分到的条带数，便于负载均衡
+
+    /**
+     * 每个像素到掩码中值为 target 的最近像素的平方欧氏距离，按行存储在 [y * width + x]
+     * 目标像素自身为 0；整幅图没有目标像素时全部为 INFINITY
+     */
+    public static int[] squaredDistances(BitMask mask, boolean target, boolean parallel) {
+        int width = mask.getWidth(), height = mask.getHeight();
+        int[] dist = new int[Math.multiplyExact(width, height)];
+        int workers = parallel ? Runtime.getRuntime().availableProcessors() : 1;
+
+        // 阶段一：每列内到最近目标像素的距离的平方，按列条带并行，每个条带自上而下、自下而上各扫一遍
+        int columnBands = Math.min(mask.getWordsPerRow(), workers * BANDS_PER_WORKER);
+        range(columnBands, parallel).forEach(b -> {
+            int x0 = Math.min(width, bandStart(b, columnBands, mask.getWordsPerRow()) << 6);
+            int x1 = Math.min(width, bandStart(b + 1, columnBands, mask.getWordsPerRow()) << 6);
+            columnDistances(mask, target, x0, x1, dist);
+        });
+
+        // 阶段二：沿行求下包络，每行连续读写，每个线程复用自己的临时数组
+        int rowBands = Math.min(height, workers * BANDS_PER_WORKER);
+        range(rowBands, parallel).forEach(b -> {
+            int[] d = new int[width];
+            int[] s = new int[width];
+            int[] t = new int[width];
+            for (int y = bandStart(b, rowBands, height); y < bandStart(b + 1, rowBands, height); y++) {
+                lowerEnvelope(dist, y * width, d, width, s, t);
+                System.arraycopy(d, 0, dist, y * width, width);
+            }
+        });
+        return dist;
+    }
+
+    /**
+     * 羽化的 alpha：掩码内的像素按到掩码外最近像素的距离 d 取 min(1, (d - 0.5) / radius)，掩码外为 0
+     * 只向内羽化，边缘之外的背景不会混入抠图；radius 不大于 0 时为硬边
+     * 返回 [y * width + x] 处 0–255 的 alpha
+     */
+    public static byte[] featherAlpha(BitMask mask, double radius, boolean parallel) {
+        int width = mask.getWidth(), height = mask.getHeight();
+        byte[] alpha = new byte[Math.multiplyExact(width, height)];
+        if (radius <= 0) {
+            for (int y = 0; y < height; y++) {
+                for (int x = mask.nextSetBit(0, y); x < width; x = mask.nextSetBit(x, y)) {
+                    int end = mask.nextClearBit(x, y);
+                    Arrays.fill(alpha, y * width + x, y * width + end, (byte) 255);
+                    x = end;
+                }
+            }
+            return alpha;
+        }
+        int[] dist = squaredDistances(mask, false, parallel);
+        // 平方距离不小于 full 时 alpha 为 255，之下按距离查表，避免逐像素开方
+        int full = (int) Math.min(INFINITY, Math.ceil((radius + 0.5) * (radius + 0.5)));
+        byte[] table = new byte[full];
+        for (int d2 = 0; d2 < full; d2++) {
+            double a = (Math.sqrt(d2) - 0.5) / radius;
+            table[d2] = (byte) Math.round(255 * Math.max(0, Math.min(1, a)));
+        }
+        int workers = parallel ? Runtime.getRuntime().availableProcessors() : 1;
+        int bands = Math.min(height, workers * BANDS_PER_WORKER);
+        range(bands, parallel).forEach(b -> {
+            for (int i = bandStart(b, bands, height) * width; i < bandStart(b + 1, bands, height) * width; i++) {
+                int d2 = dist[i];
+                alpha[i] = d2 >= full ? (byte) 255 : table[d2];
+            }
+        });
+        return alpha;
+    }
+
+    /**
+     * 列 [x0, x1) 内每个像素到同一列最近目标像素的距离的平方，没有目标像素时为 INFINITY
+     * 自上而下记录到上方最近目标的距离，再自下而上取与下方的较小值；按行处理，每行读一段连续的位和距离
+     */
+    private static void columnDistances(BitMask mask, boolean target, int x0, int x1, int[] dist) {
+        int width = mask.getWidth(), height = mask.getHeight();
+        long flip = target ? 0 : -1L; // 异或后为 1 的位是目标像素
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = x0; x < x1; x++) {
+                if (((mask.getWord(y, x >>> 6) ^ flip) & (1L << x)) != 0) {
+                    dist[row + x] = 0;
+                } else {
+                    int above = y == 0 ? INFINITY : dist[row - width + x];
+                    dist[row + x] = above == INFINITY ? INFINITY : above + 1;
+                }
+            }
+        }
+        int[] below = new int[x1 - x0]; // 每列到下方最近目标像素的距离
+        Arrays.fill(below, INFINITY);
+        for (int y = height - 1; y >= 0; y--) {
+            int row = y * width;
+            for (int x = x0; x < x1; x++) {
+                int b = below[x - x0];
+                int d = Math.min(dist[row + x], b == INFINITY ? INFINITY : b + 1);
+                below[x - x0] = d;
+                dist[row + x] = d == INFINITY ? INFINITY : d * d;
+            }
+        }
+    }
+
+    /**
+     * 一维平方距离变换：d[q] = min over p (f[offset + p] + (q - p)²)，f 中的 INFINITY 表示该处没有抛物线
+     * 采用 Meijster 的整数形式：下包络中第 k 段的抛物线顶点为 s[k]，从 t[k] 开始起作用，
+     * 出栈判断只用乘法，每次入栈做一次整数除法求分界点，结果没有浮点误差
+     */
+    static void lowerEnvelope(int[] f, int offset, int[] d, int n, int[] s, int[] t) {
+        int k = -1;
+        for (int u = 0; u < n; u++) {
+            int fu = f[offset + u];
+            if (fu == INFINITY) continue;
+            while (k >= 0 && parabola(f, offset, s[k], t[k]) > (long) (t[k] - u) * (t[k] - u) + fu) k--;
+            if (k < 0) {
+                k = 0;
+                s[0] = u;
+                t[0] = 0;
+            } else {
+                int p = s[k];
+                long numerator = (long) u * u - (long) p * p + fu - f[offset + p];
+                long w = 1 + Math.floorDiv(numerator, 2L * (u - p)); // u 从 w 开始优于 p
+                if (w < n) {
+                    k++;
+                    s[k] = u;
+                    t[k] = (int) w;
+                }
+            }
+        }
+        if (k < 0) {
+            Arrays.fill(d, 0, n, INFINITY); // 整行没有抛物线
+            return;
+        }
+
+        for (int u = n - 1; u >= 0; u--) {
+            d[u] = (int) parabola(f, offset, s[k], u);
+            if (u == t[k]) k--;
+        }
+    }
+
+    /**
+     * 顶点在 p 的抛物线在 x 处的值
+     */
+    private static long parabola(int[] f, int offset, int p, int x) {
+        return (long) (x - p) * (x - p) + f[offset + p];
+    }
+
+    private static IntStream range(int count, boolean parallel) {
+        IntStream stream = IntStream.range(0, count);
+        return parallel ? stream.parallel() : stream;
+    }
+
+    private static int bandStart(int band, int bands, int length) {
+        return (int) ((long) band * length / bands);
+    }
+}
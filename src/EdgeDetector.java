@@ -13,12 +13,19 @@ public class EdgeDetector {
      * @return 找到的最佳边缘点
      */
     public Point findBestEdgeFromCost(Point center, int radius, double[][] costImage) {
+        return findBestEdgeFromCost(center, radius, costImage == null ? null : CostMap.wrap(costImage));
+    }
+    
+    /**
+     * 寻找最佳边缘点（吸附点），代价从 CostMap 读取，可用于堆外代价图
+     */
+    public Point findBestEdgeFromCost(Point center, int radius, CostMap costImage) {
         if (center == null || costImage == null) {
             return null;
         }
         
-        int width = costImage.length;
-        int height = costImage[0].length;
+        int width = costImage.getWidth();
+        int height = costImage.getHeight();
         
         // 确保中心点在图像范围内
         if (center.x < 0 || center.x >= width || center.y < 0 || center.y >= height) {
@@ -41,7 +48,7 @@ public class EdgeDetector {
                 if (x < 0 || y < 0 || x >= width || y >= height) continue;
 
                 // costImage的值越小表示边缘越显著
-                gradientMagnitude[dx+radius][dy+radius] = 1 - costImage[x][y];
+                gradientMagnitude[dx+radius][dy+radius] = 1 - costImage.get(x, y);
                 maxGradient = Math.max(maxGradient, gradientMagnitude[dx+radius][dy+radius]);
             }
         }
@@ -64,8 +71,8 @@ public class EdgeDetector {
 
                 // 只考虑显著边缘点
                 if (gradientMagnitude[dx+radius][dy+radius] >= threshold) {
-                    if (costImage[x][y] < minCost) {
-                        minCost = costImage[x][y];
+                    if (costImage.get(x, y) < minCost) {
+                        minCost = costImage.get(x, y);
                         bestPoint = new Point(x, y);
                     }
                 }
@@ -81,8 +88,8 @@ public class EdgeDetector {
 
                     if (x < 0 || y < 0 || x >= width || y >= height) continue;
 
-                    if (costImage[x][y] < minCost) {
-                        minCost = costImage[x][y];
+                    if (costImage.get(x, y) < minCost) {
+                        minCost = costImage.get(x, y);
                         bestPoint = new Point(x, y);
                     }
                 }
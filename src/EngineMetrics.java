@@ -0,0 +1,108 @@
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 引擎运行指标：按操作名记录请求耗时，并维护若干计数器，可被多个线程同时更新
+ * 耗时按微秒取以 2 为底的对数分桶，百分位数取所在桶的上界，因此记录是 O(1) 且不分配内存
+ */
+public class EngineMetrics {
+    private static final int BUCKETS = 40; // 第 i 个桶为 [2^(i-1), 2^i) 微秒
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 单个操作的耗时统计
+     */
+    private static class Timer {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            long micros = Math.max(0, nanos / 1000);
+            histogram.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+        }
+
+        /**
+         * 百分位耗时（微秒），q 取 0 到 1
+         */
+        long percentileMicros(double q) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) total += histogram.get(i);
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram.get(i);
+                if (seen >= rank) return 1L << i;
+            }
+            return 1L << (BUCKETS - 1);
+        }
+    }
+
+    /**
+     * 记录一次操作的耗时
+     */
+    public void record(String operation, long nanos) {
+        timers.computeIfAbsent(operation, k -> new Timer()).record(nanos);
+    }
+
+    /**
+     * 计数器加一
+     */
+    public void increment(String counter) {
+        add(counter, 1);
+    }
+
+    public void add(String counter, long delta) {
+        counters.computeIfAbsent(counter, k -> new LongAdder()).add(delta);
+    }
+
+    public long getCount(String operation) {
+        Timer timer = timers.get(operation);
+        return timer == null ? 0 : timer.count.sum();
+    }
+
+    public long getCounter(String counter) {
+        LongAdder adder = counters.get(counter);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * 以 JSON 形式输出全部指标，键按名称排序
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"operations\":{");
+        boolean first = true;
+        for (Map.Entry<String, Timer> entry : new TreeMap<>(timers).entrySet()) {
+            Timer timer = entry.getValue();
+            long count = timer.count.sum();
+            if (!first) json.append(',');
+            first = false;
+            json.append('"').append(entry.getKey()).append("\":{")
+                    .append("\"count\":").append(count)
+                    .append(",\"meanMicros\":").append(count == 0 ? 0 : timer.totalNanos.sum() / count / 1000)
+                    .append(",\"maxMicros\":").append(timer.maxNanos.get() / 1000)
+                    .append(",\"p50Micros\":").append(timer.percentileMicros(0.5))
+                    .append(",\"p99Micros\":").append(timer.percentileMicros(0.99))
+                    .append('}');
+        }
+        json.append("},\"counters\":{");
+        first = true;
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            if (!first) json.append(',');
+            first = false;
+            json.append('"').append(entry.getKey()).append("\":").append(entry.getValue().sum());
+        }
+        return json.append("}}").toString();
+    }
+}
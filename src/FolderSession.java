@@ -0,0 +1,173 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 文件夹会话：按顺序标注一个目录中的图片，并在后台预取后面几张图片的解码结果和代价图
+ * 1. 预取任务运行在虚拟线程上，并用信号量限制同时只有一个预取在计算，且计算本身是串行的，不与前台争抢核心；
+ * 2. 开始预取前先读取图片头估算内存占用，超出预算的图片不预取；
+ * 3. 切换到其它位置时，取消不再位于预取窗口内的任务并释放其结果；
+ * 4. 当前图片的预取任务即使仍在计算也整体交给调用方等待，不会被取消后重新计算。
+ */
+public class FolderSession {
+    // 预取计算期间的每像素峰值：ARGB 像素 4 + CostFeatureEngine 的峰值（特征 20 + 节点代价 8 + 过零点 1 + 边代价平面 16）
+    private static final int BYTES_PER_PIXEL = 4 + MemoryGovernor.Representation.LINK_PLANES.heapBytesPerPixel;
+    private static final int BYTES_PER_COLUMN = 16; // 节点代价 double[][] 每列的数组头
+
+    private final List<File> files;
+    private final int prefetchCount; // 预取当前图片之后的张数
+    private final long memoryBudget; // 预取结果的内存预算（字节）
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("prefetch-", 0).factory());
+    private final Semaphore computeSlot = new Semaphore(1); // 同一时间只允许一个预取任务计算
+
+    private final Map<Integer, Future<PreparedImage>> pending = new HashMap<>();
+    private final Map<Integer, Long> reserved = new HashMap<>(); // 每个预取任务预留的内存
+    private long reservedBytes = 0;
+    private int index = -1;
+
+    /**
+     * 预取结果：解码后的图片和边代价平面
+     */
+    public static class PreparedImage {
+        final File file;
+        final BufferedImage image;
+        final LinkCostPlanes planes;
+
+        PreparedImage(File file, BufferedImage image, LinkCostPlanes planes) {
+            this.file = file;
+            this.image = image;
+            this.planes = planes;
+        }
+    }
+
+    /**
+     * 打开目录，列出其中的图片（按文件名排序）
+     */
+    public FolderSession(File folder, int prefetchCount, long memoryBudget) throws IOException {
+        File[] list = folder.listFiles((dir, name) -> name.toLowerCase().matches(".*\\.(png|jpe?g)"));
+        if (list == null || list.length == 0) {
+            throw new IOException("目录中没有图片: " + folder);
+        }
+        Arrays.sort(list);
+        this.files = List.of(list);
+        this.prefetchCount = prefetchCount;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * 跳转到第 newIndex 张图片，返回其文件；同时调整预取窗口
+     */
+    public synchronized File goTo(int newIndex) {
+        index = Math.max(0, Math.min(files.size() - 1, newIndex));
+        // 取消窗口之外的预取
+        Iterator<Map.Entry<Integer, Future<PreparedImage>>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Future<PreparedImage>> entry = it.next();
+            int i = entry.getKey();
+            if (i < index || i > index + prefetchCount) {
+                entry.getValue().cancel(true);
+                release(i);
+                it.remove();
+            }
+        }
+        // 按距离由近到远安排新的预取
+        for (int i = index + 1; i <= index + prefetchCount && i < files.size(); i++) {
+            if (pending.containsKey(i)) continue;
+            long bytes = estimateBytes(files.get(i));
+            if (reservedBytes + bytes > memoryBudget) break;
+            reserved.put(i, bytes);
+            reservedBytes += bytes;
+            File file = files.get(i);
+            pending.put(i, executor.submit(() -> prepare(file)));
+        }
+        return files.get(index);
+    }
+
+    /**
+     * 取出当前图片的预取任务，任务可能仍在计算；调用方在后台线程上等待其结果，任务失败时再走普通加载流程
+     * 交出的任务不再由会话管理，之后的 goTo 和 close 都不会取消它；未预取时返回 null
+     */
+    public synchronized Future<PreparedImage> takeCurrent() {
+        Future<PreparedImage> future = pending.remove(index);
+        release(index);
+        return future;
+    }
+
+    public File next() {
+        return goTo(index + 1);
+    }
+
+    public File previous() {
+        return goTo(index - 1);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int size() {
+        return files.size();
+    }
+
+    /**
+     * 结束会话，取消仍由会话管理的预取；已通过 takeCurrent 交出的任务继续运行，直到调用方取得结果或自行取消
+     */
+    public synchronized void close() {
+        for (Future<PreparedImage> future : pending.values()) {
+            future.cancel(true);
+        }
+        pending.clear();
+        reserved.clear();
+        reservedBytes = 0;
+        executor.shutdown(); // 不用 shutdownNow：它会中断交出的任务
+    }
+
+    /**
+     * 预取任务：解码并串行计算边代价平面
+     */
+    private PreparedImage prepare(File file) throws Exception {
+        computeSlot.acquire();
+        try {
+            BufferedImage image = ImageIO.read(file);
+            if (image == null) throw new IOException("无法读取图片: " + file);
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedException();
+            LinkCostPlanes planes = new CostFeatureEngine(false).compute(image, null, (done, total) -> {
+                if (Thread.currentThread().isInterrupted()) throw new CancellationException();
+            });
+            return new PreparedImage(file, image, planes);
+        } finally {
+            computeSlot.release();
+        }
+    }
+
+    private void release(int i) {
+        Long bytes = reserved.remove(i);
+        if (bytes != null) reservedBytes -= bytes;
+    }
+
+    /**
+     * 只读取图片头估算预取结果的内存占用，读取失败时视为超出预算
+     */
+    private static long estimateBytes(File file) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) return Long.MAX_VALUE / 2;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long width = reader.getWidth(0);
+                return width * reader.getHeight(0) * BYTES_PER_PIXEL + width * BYTES_PER_COLUMN;
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException ex) {
+            return Long.MAX_VALUE / 2;
+        }
+    }
+}
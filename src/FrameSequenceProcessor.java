@@ -0,0 +1,283 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 视频帧序列处理器：相邻帧变化很小时，只重新计算变化的部分
+ * 1. 把画面划分为 tileSize x tileSize 的块，逐块比较与上一帧的平均像素差，超过阈值的块视为变化块；
+ * 2. 只对变化块（含 1 像素边框，Sobel 需要邻域）重新计算梯度和代价，归一化沿用第一帧的梯度范围；
+ * 3. 位于变化块中的锚点重新通过 EdgeDetector 吸附，其余锚点原样带到下一帧；
+ * 4. 包围盒附近没有变化块的路径段直接复用；其余路径段重新规划，并以上一帧路径在新代价下的代价作为搜索上界。
+ * 因此每帧的处理量随画面运动量变化，而不是随图片大小变化
+ */
+public class FrameSequenceProcessor {
+    private static final int SNAP_RADIUS = 7; // 吸附搜索半径，与 PathManager 一致
+
+    private final int tileSize; // 分块边长
+    private final double changeThreshold; // 每个通道的平均像素差阈值
+    private final EdgeDetector edgeDetector;
+
+    // 当前帧状态
+    private BufferedImage previousFrame;
+    private double[][] gradient; // 未归一化的梯度幅值
+    private double[][] costImage; // 归一化后的代价矩阵
+    private GridGraph graph;
+    private double gradientMin, gradientMax; // 第一帧的梯度范围，用于后续帧的归一化
+    private int width, height;
+
+    // 轮廓状态
+    private final List<Point> anchors = new ArrayList<>();
+    private final List<int[]> segments = new ArrayList<>(); // segments[i] 为 anchors[i] 到下一个锚点的路径
+    private boolean closed = false; // 最后一个锚点是否连回第一个锚点
+
+    /**
+     * 单帧处理结果统计
+     */
+    public static class FrameStats {
+        public final int changedTiles;
+        public final int totalTiles;
+        public final int replannedSegments;
+        public final int totalSegments;
+        public final long nanos;
+
+        FrameStats(int changedTiles, int totalTiles, int replannedSegments, int totalSegments, long nanos) {
+            this.changedTiles = changedTiles;
+            this.totalTiles = totalTiles;
+            this.replannedSegments = replannedSegments;
+            this.totalSegments = totalSegments;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public String toString() {
+            return "变化块: " + changedTiles + "/" + totalTiles +
+                    ", 重新规划路径段: " + replannedSegments + "/" + totalSegments +
+                    ", 耗时: " + nanos / 1_000_000.0 + " ms";
+        }
+    }
+
+    /**
+     * 构造函数
+     */
+    public FrameSequenceProcessor(int tileSize, double changeThreshold, EdgeDetector edgeDetector) {
+        this.tileSize = tileSize;
+        this.changeThreshold = changeThreshold;
+        this.edgeDetector = edgeDetector;
+    }
+
+    /**
+     * 设置当前帧上的锚点（首帧由用户给出），并规划全部路径段
+     */
+    public void setAnchors(List<Point> newAnchors, boolean closed) {
+        if (graph == null) throw new IllegalStateException("请先处理第一帧");
+        anchors.clear();
+        for (Point anchor : newAnchors) {
+            Point snapped = edgeDetector.findBestEdgeFromCost(anchor, SNAP_RADIUS, costImage);
+            anchors.add(snapped != null ? snapped : new Point(anchor));
+        }
+        this.closed = closed;
+        segments.clear();
+        for (int i = 0; i < segmentCount(); i++) {
+            segments.add(planSegment(i, Double.POSITIVE_INFINITY));
+        }
+    }
+
+    /**
+     * 处理下一帧
+     */
+    public FrameStats processFrame(BufferedImage frame) {
+        long start = System.nanoTime();
+        CostGraphGenerator generator = new CostGraphGenerator(frame);
+
+        // 第一帧或尺寸变化：完整计算
+        if (previousFrame == null || frame.getWidth() != width || frame.getHeight() != height) {
+            width = frame.getWidth();
+            height = frame.getHeight();
+            gradient = new double[width][height];
+            costImage = new double[width][height];
+            generator.computeGradient(gradient, 0, 0, width, height);
+            gradientMin = Double.POSITIVE_INFINITY;
+            gradientMax = Double.NEGATIVE_INFINITY;
+            for (double[] column : gradient) {
+                for (double value : column) {
+                    gradientMin = Math.min(gradientMin, value);
+                    gradientMax = Math.max(gradientMax, value);
+                }
+            }
+            CostGraphGenerator.normalizeToCost(gradient, costImage, gradientMin, gradientMax, 0, 0, width, height);
+            graph = new GridGraph(costImage);
+            previousFrame = frame;
+            anchors.clear();
+            segments.clear();
+            int tiles = tilesX() * tilesY();
+            return new FrameStats(tiles, tiles, 0, 0, System.nanoTime() - start);
+        }
+
+        // 找出变化块，只重新计算这些块的代价
+        boolean[][] changed = findChangedTiles(frame);
+        int changedCount = 0;
+        for (int tx = 0; tx < tilesX(); tx++) {
+            for (int ty = 0; ty < tilesY(); ty++) {
+                if (!changed[tx][ty]) continue;
+                changedCount++;
+                int x0 = Math.max(0, tx * tileSize - 1);
+                int y0 = Math.max(0, ty * tileSize - 1);
+                int x1 = Math.min(width, (tx + 1) * tileSize + 1);
+                int y1 = Math.min(height, (ty + 1) * tileSize + 1);
+                generator.computeGradient(gradient, x0, y0, x1, y1);
+                CostGraphGenerator.normalizeToCost(gradient, costImage, gradientMin, gradientMax, x0, y0, x1, y1);
+                graph.updateRegion(costImage, x0, y0, x1, y1);
+            }
+        }
+        previousFrame = frame;
+
+        // 变化块中的锚点重新吸附
+        boolean[] anchorMoved = new boolean[anchors.size()];
+        for (int i = 0; i < anchors.size(); i++) {
+            Point anchor = anchors.get(i);
+            if (!changed[anchor.x / tileSize][anchor.y / tileSize]) continue;
+            Point snapped = edgeDetector.findBestEdgeFromCost(anchor, SNAP_RADIUS, costImage);
+            if (snapped != null && !snapped.equals(anchor)) {
+                anchors.set(i, snapped);
+                anchorMoved[i] = true;
+            }
+        }
+
+        // 重新规划受影响的路径段
+        int replanned = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            int next = (i + 1) % anchors.size();
+            int[] previous = segments.get(i);
+            boolean endpointsMoved = anchorMoved[i] || anchorMoved[next];
+            if (!endpointsMoved && !touchesChangedTile(previous, changed)) continue;
+            // 端点没动时，旧路径在新代价下仍然可行，其代价是新最短路径的上界
+            double bound = endpointsMoved || previous.length == 0
+                    ? Double.POSITIVE_INFINITY : PathPlanner.pathCost(graph, previous);
+            segments.set(i, planSegment(i, bound));
+            replanned++;
+        }
+        return new FrameStats(changedCount, tilesX() * tilesY(), replanned, segments.size(), System.nanoTime() - start);
+    }
+
+    /**
+     * 比较当前帧与上一帧，按块求每个通道的平均绝对差
+     */
+    private boolean[][] findChangedTiles(BufferedImage frame) {
+        boolean[][] changed = new boolean[tilesX()][tilesY()];
+        for (int tx = 0; tx < tilesX(); tx++) {
+            for (int ty = 0; ty < tilesY(); ty++) {
+                int x0 = tx * tileSize, y0 = ty * tileSize;
+                int w = Math.min(tileSize, width - x0), h = Math.min(tileSize, height - y0);
+                int[] current = frame.getRGB(x0, y0, w, h, null, 0, w);
+                int[] previous = previousFrame.getRGB(x0, y0, w, h, null, 0, w);
+                long limit = (long) (changeThreshold * w * h * 3);
+                long diff = 0;
+                for (int i = 0; i < current.length && diff <= limit; i++) {
+                    int a = current[i], b = previous[i];
+                    diff += Math.abs(((a >> 16) & 0xff) - ((b >> 16) & 0xff))
+                            + Math.abs(((a >> 8) & 0xff) - ((b >> 8) & 0xff))
+                            + Math.abs((a & 0xff) - (b & 0xff));
+                }
+                changed[tx][ty] = diff > limit;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 判断路径包围盒（向外扩展一个块）内是否有变化块
+     */
+    private boolean touchesChangedTile(int[] path, boolean[][] changed) {
+        if (path.length == 0) return true;
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = 0, maxY = 0;
+        for (int index : path) {
+            int x = graph.x(index), y = graph.y(index);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        int tx0 = Math.max(0, minX / tileSize - 1), tx1 = Math.min(tilesX() - 1, maxX / tileSize + 1);
+        int ty0 = Math.max(0, minY / tileSize - 1), ty1 = Math.min(tilesY() - 1, maxY / tileSize + 1);
+        for (int tx = tx0; tx <= tx1; tx++) {
+            for (int ty = ty0; ty <= ty1; ty++) {
+                if (changed[tx][ty]) return true;
+            }
+        }
+        return false;
+    }
+
+    private int[] planSegment(int i, double upperBound) {
+        Point from = anchors.get(i);
+        Point to = anchors.get((i + 1) % anchors.size());
+        return PathPlanner.plan(graph, graph.index(from.x, from.y), graph.index(to.x, to.y), upperBound).getNodes();
+    }
+
+    private int segmentCount() {
+        if (anchors.size() < 2) return 0;
+        return closed ? anchors.size() : anchors.size() - 1;
+    }
+
+    private int tilesX() {
+        return (width + tileSize - 1) / tileSize;
+    }
+
+    private int tilesY() {
+        return (height + tileSize - 1) / tileSize;
+    }
+
+    /**
+     * Getter方法
+     */
+    public double[][] getCostImage() {
+        return costImage;
+    }
+
+    public List<Point> getAnchors() {
+        return anchors;
+    }
+
+    /**
+     * 当前帧的轮廓，每段以链码形式返回
+     */
+    public List<ChainCode> getContour() {
+        List<ChainCode> contour = new ArrayList<>();
+        for (int[] segment : segments) {
+            if (segment.length == 0) continue;
+            contour.add(ChainCode.fromPath(graph, segment));
+        }
+        return contour;
+    }
+
+    /**
+     * 序列模式入口
+     * 用法: java FrameSequenceProcessor 帧目录 x1,y1;x2,y2;... [分块大小] [变化阈值]
+     * 按文件名顺序处理目录中的 png/jpg 帧，锚点作用于第一帧并构成闭合轮廓，输出每帧的统计信息
+     */
+    public static void main(String[] args) throws Exception {
+        File[] files = new File(args[0]).listFiles((dir, name) -> name.toLowerCase().matches(".*\\.(png|jpe?g)"));
+        if (files == null || files.length == 0) {
+            System.out.println("目录中没有帧图片: " + args[0]);
+            return;
+        }
+        Arrays.sort(files);
+        List<Point> anchors = new ArrayList<>();
+        for (String pair : args[1].split(";")) {
+            String[] xy = pair.split(",");
+            anchors.add(new Point(Integer.parseInt(xy[0].trim()), Integer.parseInt(xy[1].trim())));
+        }
+        int tileSize = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        double threshold = args.length > 3 ? Double.parseDouble(args[3]) : 2.0;
+
+        FrameSequenceProcessor processor = new FrameSequenceProcessor(tileSize, threshold, new EdgeDetector());
+        for (int f = 0; f < files.length; f++) {
+            FrameStats stats = processor.processFrame(ImageIO.read(files[f]));
+            if (f == 0) processor.setAnchors(anchors, true);
+            System.out.println(files[f].getName() + ": " + stats);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 网格图：用一维数组表示的8邻域像素图，不再为每个像素创建 PixelNode 对象
+ * 节点编号 index = x * height + y，与 costImage[x][y] 的存储顺序一致
+ * 边代价与 CostGraphGenerator.costImageToGraph 完全相同：link_cost = cost(u) + cost(v)，对角线再乘 sqrt(2)；
+ * 由 LinkCostPlanes 构造时直接读取预先计算好的方向边代价
+ * 节点代价通过 CostMap 读取，既可以在堆上，也可以是堆外的 OffHeapCostMap、量化或分块的代价图（由 MemoryGovernor 按内存预算选择）
+ * 画笔编辑保存在单独的逐像素倍数层中：边代价乘以两端倍数的平均值，底层代价图（可能是只读的）保持不变
+ * 引用计数：创建者持有一个引用，其它线程使用前 retain、用完 release；最后一个引用释放时立即关闭堆外代价图，
+ * 不必等 GC 回收直接内存。堆上的代价图不受影响
+ */
+public class GridGraph {
+    // 8个方向，顺序与 costImageToGraph 中遍历邻居的顺序一致 (k 为 x 偏移，l 为 y 偏移)
+    static final int[] DX = {-1, -1, -1, 0, 0, 1, 1, 1};
+    static final int[] DY = {-1, 0, 1, -1, 1, -1, 0, 1};
+    // 每个方向的长度系数，对角线乘 sqrt(2)，与 PathPlanner 中的处理一致
+    static final double[] DIR_SCALE = new double[8];
+
+    static {
+        for (int dir = 0; dir < 8; dir++) {
+            DIR_SCALE[dir] = (DX[dir] != 0 && DY[dir] != 0) ? Math.sqrt(2) : 1.0;
+        }
+    }
+
+    private final int width; // 图宽度
+    private final int height; // 图高度
+    private final CostMap nodeCost; // 每个像素的代价
+    private final LinkCostPlanes planes; // 预计算的边代价，为 null 时由 nodeCost 求和得到
+    // 画笔编辑的逐像素代价倍数，从未编辑时为 null；在界面线程上修改，后台规划线程也会读取。
+    // 写时复制：每一笔在副本上修改，完成后再发布新数组，已发布的数组不再改动，读取方每次只读一次到局部变量，
+    // 看到的是某一笔之前或之后的完整状态，不会读到只应用了一半的画笔
+    private volatile float[] costScale;
+    private volatile int editCount = 0; // 代价被修改的次数，预处理结果（例如地标距离）据此判断是否过期
+    private final AtomicInteger references = new AtomicInteger(1); // 使用者数，创建者持有一个
+
+    static final float MIN_COST_SCALE = 1f / 64; // 倍数的下限，避免代价降为 0
+    static final float MAX_COST_SCALE = 64f; // 倍数的上限
+
+    /**
+     * 由代价矩阵构造网格图
+     */
+    public GridGraph(double[][] costImage) {
+        this(ArrayCostMap.copyOf(costImage), null);
+    }
+
+    /**
+     * 由代价图构造网格图，不复制数据
+     */
+    public GridGraph(CostMap costMap) {
+        this(costMap, null);
+    }
+
+    /**
+     * 由多特征边代价平面构造网格图，节点代价直接包装平面中的矩阵，不复制（边代价取自平面，节点代价只在少数地方读取）
+     */
+    public GridGraph(LinkCostPlanes planes) {
+        this(CostMap.wrap(planes.getNodeCost()), planes);
+    }
+
+    private GridGraph(CostMap costMap, LinkCostPlanes planes) {
+        this.planes = planes;
+        this.width = costMap.getWidth();
+        this.height = costMap.getHeight();
+        this.nodeCost = costMap;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 节点总数
+     */
+    public int size() {
+        return width * height;
+    }
+
+    /**
+     * 坐标转换为节点编号
+     */
+    public int index(int x, int y) {
+        return x * height + y;
+    }
+
+    public int x(int index) {
+        return index / height;
+    }
+
+    public int y(int index) {
+        return index % height;
+    }
+
+    /**
+     * 判断坐标是否在图内
+     */
+    public boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    /**
+     * 获取节点在指定方向上的邻居编号，越界时返回 -1
+     */
+    public int neighbor(int index, int dir) {
+        int nx = index / height + DX[dir];
+        int ny = index % height + DY[dir];
+        if (nx < 0 || nx >= width || ny < 0 || ny >= height) return -1;
+        return nx * height + ny;
+    }
+
+    /**
+     * from 到 to 的直线经过的节点（含两端），相邻节点 8 连通，用于没有规划结果时的占位路径
+     */
+    public int[] straightLine(int from, int to) {
+        int x0 = x(from), y0 = y(from), dx = x(to) - x0, dy = y(to) - y0;
+        int steps = Math.max(Math.abs(dx), Math.abs(dy));
+        int[] line = new int[steps + 1];
+        for (int i = 0; i <= steps; i++) {
+            line[i] = steps == 0 ? from : index(x0 + Math.round((float) dx * i / steps), y0 + Math.round((float) dy * i / steps));
+        }
+        return line;
+    }
+
+    /**
+     * 从 index 沿 dir 方向走一步的代价（已包含对角线系数），调用前需保证邻居存在
+     */
+    public double moveCost(int index, int dir) {
+        int next = index + DX[dir] * height + DY[dir];
+        double cost = planes != null
+                ? planes.linkCost(index, dir) * DIR_SCALE[dir]
+                : (nodeCost.get(index) + nodeCost.get(next)) * DIR_SCALE[dir];
+        float[] scale = costScale;
+        if (scale != null) cost *= (scale[index] + scale[next]) * 0.5f;
+        return cost;
+    }
+
+    /**
+     * 画笔：把以 (cx, cy) 为圆心、radius 为半径的圆内像素的代价乘以 factor（大于 1 屏蔽边缘，小于 1 增强边缘）
+     * 返回倍数确实发生变化的节点编号；与这些节点相连的边代价都已改变
+     * 只应在一个线程（界面线程）上调用：修改在当前倍数层的副本上进行，有节点变化时才发布副本
+     */
+    public int[] scaleCost(int cx, int cy, int radius, double factor) {
+        float[] current = this.costScale;
+        float[] costScale;
+        if (current == null) {
+            costScale = new float[size()];
+            Arrays.fill(costScale, 1f);
+        } else {
+            costScale = current.clone();
+        }
+        IntList changed = new IntList();
+        for (int x = Math.max(0, cx - radius); x <= Math.min(width - 1, cx + radius); x++) {
+            for (int y = Math.max(0, cy - radius); y <= Math.min(height - 1, cy + radius); y++) {
+                if ((x - cx) * (x - cx) + (y - cy) * (y - cy) > radius * radius) continue;
+                int index = index(x, y);
+                float scaled = (float) Math.max(MIN_COST_SCALE, Math.min(MAX_COST_SCALE, costScale[index] * factor));
+                if (scaled != costScale[index]) {
+                    costScale[index] = scaled;
+                    changed.add(index);
+                }
+            }
+        }
+        if (!changed.isEmpty()) {
+            this.costScale = costScale;
+            editCount++;
+        }
+        return changed.toArray();
+    }
+
+    /**
+     * 用代价矩阵中的新值刷新区域 [x0, x1) x [y0, y1) 内的节点代价（仅适用于由堆上代价构造、且没有边代价平面的图）
+     */
+    public void updateRegion(double[][] costImage, int x0, int y0, int x1, int y1) {
+        if (planes != null) throw new IllegalStateException("边代价平面构造的网格图不支持局部更新");
+        if (!(nodeCost instanceof ArrayCostMap)) throw new IllegalStateException("只读代价图不支持局部更新");
+        ((ArrayCostMap) nodeCost).copyRegion(costImage, x0, y0, x1, y1);
+        editCount++;
+    }
+
+    /**
+     * 代价被修改（画笔编辑或局部更新）的次数
+     */
+    public int getEditCount() {
+        return editCount;
+    }
+
+    /**
+     * 获取单个像素的代价（含画笔编辑）
+     */
+    public double nodeCost(int index) {
+        float[] scale = costScale;
+        return scale == null ? nodeCost.get(index) : nodeCost.get(index) * scale[index];
+    }
+
+    /**
+     * 含画笔编辑的节点代价视图，用于边缘吸附；从未编辑时直接返回底层代价图
+     * 视图固定在创建时的倍数层上，之后的画笔不影响它
+     */
+    public CostMap getEditedCostMap() {
+        float[] scale = costScale;
+        if (scale == null) return nodeCost;
+        return new CostMap() {
+            @Override
+            public int getWidth() {
+                return width;
+            }
+
+            @Override
+            public int getHeight() {
+                return height;
+            }
+
+            @Override
+            public double get(int index) {
+                return nodeCost.get(index) * scale[index];
+            }
+        };
+    }
+
+    public CostMap getCostMap() {
+        return nodeCost;
+    }
+
+    /**
+     * 构造时使用的边代价平面，由节点代价构造时为 null
+     */
+    public LinkCostPlanes getLinkCostPlanes() {
+        return planes;
+    }
+
+    /**
+     * 增加一个使用者；图已经释放时返回 false，调用方不能再使用它
+     */
+    public boolean retain() {
+        while (true) {
+            int count = references.get();
+            if (count == 0) return false;
+            if (references.compareAndSet(count, count + 1)) return true;
+        }
+    }
+
+    /**
+     * 减少一个使用者；最后一个使用者离开时关闭堆外代价图
+     */
+    public void release() {
+        int count = references.decrementAndGet();
+        if (count < 0) throw new IllegalStateException("网格图已经释放");
+        if (count == 0 && nodeCost instanceof OffHeapCostMap) {
+            ((OffHeapCostMap) nodeCost).close();
+        }
+    }
+}
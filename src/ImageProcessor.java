@@ -6,6 +6,10 @@ import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * 图像处理器：负责图像加载、处理和渲染
@@ -14,9 +18,20 @@ public class ImageProcessor {
     private final Main mainFrame;
     
     private BufferedImage originalImage;
+    private File imageFile; // 当前图片的文件，预取的图片同样记录
     private BufferedImage displayImage;
     private CostGraphGenerator costGraphGenerator;
     private double[][] costImage;
+    private LinkCostPlanes linkCostPlanes;
+    private GridGraph graph; // 当前图片的网格图，由本类持有其引用，被替换时释放（关闭堆外代价图）
+    private ImageLoader loader; // 当前的后台加载任务
+    private volatile Point focusPoint; // 光标所在的图像坐标，供后台线程读取
+    private final CutoutExporter exporter = new CutoutExporter(); // 抠图保存队列
+    private int compressionLevel = CutoutExporter.DEFAULT_COMPRESSION_LEVEL; // 保存 PNG 的压缩级别
+    private double featherRadius = 0; // 抠图边缘向内羽化的半径（像素），0 为硬边
+    private final EngineMetrics metrics = new EngineMetrics(); // 加载时的内存选择和占用（memory.*）
+    private long heapBudget = 0; // 加载代价图的堆预算（字节），0 表示按当前可用堆自动确定
+    private long offHeapBudget = 0; // 堆外预算（字节），0 表示自动确定
     
     /**
      * 构造函数
@@ -26,104 +41,217 @@ public class ImageProcessor {
     }
     
     /**
-     * 加载图像
+     * 加载图像：在后台线程中解码并计算代价图，不阻塞界面
+     * 图像解码后立即显示，此时已可设置起点；代价图按离光标由近到远的顺序分块计算，完成后再启用路径规划
+     * 计算前由 MemoryGovernor 估算各种代价表示的内存占用，内存预算不足时改用更省内存的表示，而不是在中途内存溢出
      */
     public void loadImage(String imagePath) {
-        try {
-            File imgFile = new File(imagePath);
-            if (!imgFile.exists()) {
-                throw new IOException("找不到图片文件: " + imagePath);
-            }
-            
-            originalImage = ImageIO.read(imgFile);
-            if (originalImage == null) {
-                throw new IOException("无法读取图片");
-            }
-            
-            // 创建显示用的图像副本
-            updateDisplayImage();
-            
-            // 生成代价图和图结构
-            costGraphGenerator = new CostGraphGenerator(imagePath);
-            costImage = costGraphGenerator.getCostImage();
-            
-            // 更新UI和状态
-            mainFrame.getStatusLabel().setText("图片已加载，请点击设置起点");
-            mainFrame.setImageReady(true);
-            
-            // 重置路径管理器
-            mainFrame.getPathManager().init(costGraphGenerator.costImageToGraph(costImage));
-            
-        } catch (Exception ex) {
-            mainFrame.getStatusLabel().setText("图片加载失败: " + ex.getMessage());
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(mainFrame, "无法加载图片: " + ex.getMessage());
+        File imgFile = new File(imagePath);
+        if (!imgFile.exists()) {
+            mainFrame.getStatusLabel().setText("图片加载失败: 找不到图片文件: " + imagePath);
+            JOptionPane.showMessageDialog(mainFrame, "无法加载图片: 找不到图片文件: " + imagePath);
+            return;
+        }
+        
+        // 取消仍在进行的加载
+        if (loader != null) {
+            loader.cancel(true);
         }
+        mainFrame.setImageReady(false);
+        mainFrame.getStatusLabel().setText("正在读取图片...");
+        loader = new ImageLoader(imgFile, null);
+        loader.execute();
     }
     
     /**
-     * 更新显示图像
+     * 加载已预取的图像：在后台等待预取任务完成（不会重新计算），然后跳过解码和代价计算，只构建图结构
+     * 预取失败时按普通流程加载；本次加载被取代时一并取消预取任务
      */
-    public void updateDisplayImage() {
-        if (originalImage == null) return;
-        
-        displayImage = deepCopy(originalImage);
-        mainFrame.getImageLabel().setIcon(new ImageIcon(displayImage));
+    public void loadPrepared(File file, Future<FolderSession.PreparedImage> prefetch) {
+        if (loader != null) {
+            loader.cancel(true);
+        }
+        mainFrame.setImageReady(false);
+        mainFrame.getStatusLabel().setText("正在等待预取结果...");
+        loader = new ImageLoader(file, prefetch);
+        loader.execute();
     }
-
     
     /**
-     * 将点击坐标转换为图像坐标
+     * 记录光标所在的图像坐标，渐进加载时优先计算其附近的代价
      */
-    public Point convertPointToImageCoordinates(Point clickPoint) {
-        if (originalImage == null || mainFrame.getImageLabel().getIcon() == null) return null;
+    public void setFocusPoint(Point imagePoint) {
+        if (imagePoint != null) {
+            focusPoint = imagePoint;
+        }
+    }
+    
+    /**
+     * 后台加载任务：解码 → 显示 → 分块计算代价 → 构建图结构
+     */
+    private class ImageLoader extends SwingWorker<GridGraph, Integer> {
+        private static final int DECODED = -1; // 发布该值表示图像已解码
+        private final File file;
+        private final Future<FolderSession.PreparedImage> prefetch; // 预取任务，没有时为 null
+        private BufferedImage image;
+        private CostGraphGenerator generator;
+        private LinkCostPlanes planes;
+        private MemoryGovernor.Representation representation; // 实际使用的代价表示
         
-        Rectangle imageBounds = getImageBounds();
+        ImageLoader(File file, Future<FolderSession.PreparedImage> prefetch) {
+            this.file = file;
+            this.prefetch = prefetch;
+        }
         
-        if (!imageBounds.contains(clickPoint)) return null;
+        @Override
+        protected GridGraph doInBackground() throws Exception {
+            FolderSession.PreparedImage prepared = awaitPrefetch();
+            if (prepared != null) {
+                image = prepared.image;
+                planes = prepared.planes;
+                generator = new CostGraphGenerator(image);
+                publish(DECODED, 90);
+                return new GridGraph(planes);
+            }
+            
+            image = ImageIO.read(file);
+            if (image == null) {
+                throw new IOException("无法读取图片");
+            }
+            publish(DECODED);
+            
+            // 生成代价图和图结构：内存足够时分块计算多特征边代价平面，否则按预算选择更省内存的代价表示
+            focusPoint = null;
+            generator = new CostGraphGenerator(image);
+            MemoryGovernor governor = new MemoryGovernor(
+                    heapBudget > 0 ? heapBudget : MemoryGovernor.defaultHeapBudget(),
+                    offHeapBudget > 0 ? offHeapBudget : MemoryGovernor.defaultOffHeapBudget(), metrics);
+            GridGraph graph = governor.build(image, () -> focusPoint, (done, total) -> {
+                if (isCancelled()) {
+                    throw new CancellationException();
+                }
+                publish(done * 90 / total);
+            });
+            if (isCancelled()) {
+                graph.release(); // 已被新的加载取代，done 不会再接收这个图
+                throw new CancellationException();
+            }
+            planes = graph.getLinkCostPlanes();
+            representation = governor.getChosen();
+            publish(90);
+            return graph;
+        }
         
-        int imageX = (int) ((clickPoint.x - imageBounds.x) * originalImage.getWidth() / imageBounds.width);
-        int imageY = (int) ((clickPoint.y - imageBounds.y) * originalImage.getHeight() / imageBounds.height);
+        /**
+         * 等待预取任务完成；任务失败或被取消时返回 null，改走普通加载流程
+         */
+        private FolderSession.PreparedImage awaitPrefetch() throws InterruptedException {
+            if (prefetch == null) return null;
+            try {
+                return prefetch.get();
+            } catch (InterruptedException ex) {
+                prefetch.cancel(true); // 本次加载已被取代，预取结果不会再被使用
+                throw ex;
+            } catch (ExecutionException | CancellationException ex) {
+                return null;
+            }
+        }
         
-        // 边界检查
-        imageX = Math.max(0, Math.min(imageX, originalImage.getWidth() - 1));
-        imageY = Math.max(0, Math.min(imageY, originalImage.getHeight() - 1));
+        @Override
+        protected void process(List<Integer> chunks) {
+            if (isCancelled()) return;
+            if (chunks.contains(DECODED)) {
+                showDecodedImage(image, file);
+            }
+            int percent = chunks.get(chunks.size() - 1);
+            if (percent >= 0 && originalImage == image) {
+                String anchor = mainFrame.getPathManager().hasStartPoint() ? "起点已设置" : "可以先点击设置起点";
+                mainFrame.getStatusLabel().setText((percent < 90 ? "正在计算代价图 " : "正在构建图结构 ")
+                        + percent + "%，" + anchor);
+            }
+        }
         
-        return new Point(imageX, imageY);
+        @Override
+        protected void done() {
+            if (isCancelled()) return;
+            try {
+                GridGraph loaded = get();
+                costGraphGenerator = generator;
+                linkCostPlanes = planes;
+                costImage = planes != null ? planes.getNodeCost() : null;
+                mainFrame.getPathManager().attachGraph(loaded);
+                releaseGraph();
+                graph = loaded;
+                if (representation != null && representation != MemoryGovernor.Representation.LINK_PLANES) {
+                    mainFrame.getStatusLabel().setText("内存预算不足，已改用" + representation.getLabel() + "，可以开始规划路径");
+                }
+            } catch (InterruptedException | CancellationException ex) {
+                // 已被新的加载取代
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                mainFrame.setImageReady(false);
+                mainFrame.getStatusLabel().setText("图片加载失败: " + cause.getMessage());
+                cause.printStackTrace();
+                JOptionPane.showMessageDialog(mainFrame, "无法加载图片: " + cause.getMessage());
+            }
+        }
     }
     
     /**
-     * 获取图像显示区域的边界
+     * 图像解码完成：立即显示并允许设置起点
      */
-    private Rectangle getImageBounds() {
-        JLabel imageLabel = mainFrame.getImageLabel();
-        Icon icon = imageLabel.getIcon();
-        int imageWidth = icon.getIconWidth();
-        int imageHeight = icon.getIconHeight();
+    private void showDecodedImage(BufferedImage image, File file) {
+        originalImage = image;
+        imageFile = file;
+        costGraphGenerator = null;
+        linkCostPlanes = null;
+        costImage = null;
         
-        double scale = 1.0;
-        int labelWidth = imageLabel.getWidth();
-        int labelHeight = imageLabel.getHeight();
+        // 显示图像并适应窗口
+        updateDisplayImage();
+        mainFrame.getImageView().fitToView();
         
-        if (imageWidth > labelWidth || imageHeight > labelHeight) {
-            double scaleX = (double) labelWidth / imageWidth;
-            double scaleY = (double) labelHeight / imageHeight;
-            scale = Math.min(scaleX, scaleY);
+        // 重置路径管理器，图结构就绪前只能设置起点
+        mainFrame.getPathManager().init(null);
+        releaseGraph();
+        mainFrame.setImageReady(true);
+    }
+    
+    /**
+     * 释放上一张图片的网格图：编辑器已经换用新图，仍在运行的后台任务各自持有引用，结束后才真正关闭堆外代价图
+     */
+    private void releaseGraph() {
+        if (graph != null) {
+            graph.release();
+            graph = null;
         }
+    }
+    
+    /**
+     * 更新显示图像
+     */
+    public void updateDisplayImage() {
+        if (originalImage == null) return;
         
-        int displayWidth = (int) (imageWidth * scale);
-        int displayHeight = (int) (imageHeight * scale);
-        
-        int x = (labelWidth - displayWidth) / 2;
-        int y = (labelHeight - displayHeight) / 2;
-        
-        return new Rectangle(x, y, displayWidth, displayHeight);
+        // 视口只读取图像，不会在其上绘制，因此无需复制
+        displayImage = originalImage;
+        mainFrame.getImageView().setImage(displayImage);
+        mainFrame.getImageView().setOverlayVisible(true);
+    }
+
+    
+    /**
+     * 将点击坐标转换为图像坐标（经过视口的缩放和平移变换）
+     */
+    public Point convertPointToImageCoordinates(Point clickPoint) {
+        if (originalImage == null) return null;
+        return mainFrame.getImageView().viewToImage(clickPoint);
     }
     
     /**
      * 提取图像
      */
-    public void extractImage(List<List<PixelNode>> confirmedPaths) {
+    public void extractImage(List<ChainCode> confirmedPaths) {
         try {
             BufferedImage extractedImage = new BufferedImage(
                     originalImage.getWidth(),
@@ -131,25 +259,30 @@ public class ImageProcessor {
                     BufferedImage.TYPE_INT_ARGB);
             
             // 创建掩码
-            boolean[][] mask = createPathMask(confirmedPaths);
+            BitMask mask = PathMask.fromPaths(confirmedPaths, originalImage.getWidth(), originalImage.getHeight());
+            // 羽化：由掩码的精确距离变换得到边缘的 alpha 渐变
+            byte[] alpha = featherRadius > 0 ? DistanceTransform.featherAlpha(mask, featherRadius, true) : null;
             
-            // 应用掩码提取图像
-            for (int x = 0; x < originalImage.getWidth(); x++) {
-                for (int y = 0; y < originalImage.getHeight(); y++) {
-                    if (mask[x][y]) {
-                        extractedImage.setRGB(x, y, originalImage.getRGB(x, y));
-                    } else {
-                        extractedImage.setRGB(x, y, 0);
-                    }
+            // 应用掩码提取图像：新图像默认全透明，只需逐行复制掩码内的各段
+            int width = originalImage.getWidth();
+            int[] run = new int[width];
+            for (int y = 0; y < originalImage.getHeight(); y++) {
+                for (int x = mask.nextSetBit(0, y); x < mask.getWidth(); x = mask.nextSetBit(x, y)) {
+                    int end = mask.nextClearBit(x, y);
+                    originalImage.getRGB(x, y, end - x, 1, run, 0, end - x);
+                    if (alpha != null) CutoutExporter.applyAlpha(run, -x, alpha, y * width, x, end);
+                    extractedImage.setRGB(x, y, end - x, 1, run, 0, end - x);
+                    x = end;
                 }
             }
             
             // 显示结果
-            mainFrame.getImageLabel().setIcon(new ImageIcon(extractedImage));
+            mainFrame.getImageView().setImage(extractedImage);
+            mainFrame.getImageView().setOverlayVisible(false);
             mainFrame.getStatusLabel().setText("抠图完成");
             
-            // 询问是否保存
-            askToSaveImage(extractedImage);
+            // 询问是否保存：保存时由原图和掩码按条带写出，不使用显示用的整幅结果图
+            askToSaveImage(originalImage, mask, alpha);
             
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -157,93 +290,10 @@ public class ImageProcessor {
         }
     }
     
-    /**
-     * 创建路径掩码
-     */
-    private boolean[][] createPathMask(List<List<PixelNode>> confirmedPaths) {
-        int width = originalImage.getWidth();
-        int height = originalImage.getHeight();
-        
-        // 创建二值图像表示边界
-        BufferedImage boundaryImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
-        Graphics2D g = boundaryImage.createGraphics();
-        g.setColor(Color.BLACK);
-        g.fillRect(0, 0, width, height);
-        g.setColor(Color.WHITE);
-        
-        // 绘制边界
-        for (List<PixelNode> path : confirmedPaths) {
-            for (PixelNode node : path) {
-                boundaryImage.setRGB(node.x, node.y, Color.WHITE.getRGB());
-            }
-        }
-        g.dispose();
-        
-        // 创建掩码并填充
-        boolean[][] mask = new boolean[width][height];
-        Point seedPoint = findSeedPoint(confirmedPaths);
-        if (seedPoint != null) {
-            floodFill(seedPoint.x, seedPoint.y, boundaryImage, mask);
-        }
-        
-        return mask;
-    }
-    
-    /**
-     * 寻找种子点（使用路径的质心）
-     */
-    private Point findSeedPoint(List<List<PixelNode>> paths) {
-        int sumX = 0, sumY = 0;
-        int count = 0;
-        
-        for (List<PixelNode> path : paths) {
-            for (PixelNode node : path) {
-                sumX += node.x;
-                sumY += node.y;
-                count++;
-            }
-        }
-        
-        if (count > 0) {
-            return new Point(sumX / count, sumY / count);
-        }
-        
-        return null;
-    }
-    
-    /**
-     * 洪水填充算法
-     */
-    private void floodFill(int x, int y, BufferedImage boundary, boolean[][] mask) {
-        int width = boundary.getWidth();
-        int height = boundary.getHeight();
-        
-        Queue<Point> queue = new LinkedList<>();
-        queue.add(new Point(x, y));
-        
-        while (!queue.isEmpty()) {
-            Point p = queue.poll();
-            x = p.x;
-            y = p.y;
-            
-            if (x < 0 || x >= width || y < 0 || y >= height ||
-                    mask[x][y] || boundary.getRGB(x, y) == Color.WHITE.getRGB()) {
-                continue;
-            }
-            
-            mask[x][y] = true;
-            
-            queue.add(new Point(x + 1, y));
-            queue.add(new Point(x - 1, y));
-            queue.add(new Point(x, y + 1));
-            queue.add(new Point(x, y - 1));
-        }
-    }
-    
     /**
      * 询问是否保存图像
      */
-    private void askToSaveImage(BufferedImage extractedImage) {
+    private void askToSaveImage(BufferedImage source, BitMask mask, byte[] alpha) {
         int option = JOptionPane.showConfirmDialog(
                 mainFrame,
                 "是否保存抠图结果？",
@@ -251,16 +301,16 @@ public class ImageProcessor {
                 JOptionPane.YES_NO_OPTION);
         
         if (option == JOptionPane.YES_OPTION) {
-            saveImageToFile(extractedImage);
+            saveImageToFile(source, mask, alpha);
         } else if (option == JOptionPane.NO_OPTION) {
             mainFrame.getPathManager().resetAll();
         }
     }
     
     /**
-     * 保存图像到文件
+     * 保存图像到文件：选择文件后交给后台导出队列，界面不等待写入完成
      */
-    private void saveImageToFile(BufferedImage image) {
+    private void saveImageToFile(BufferedImage source, BitMask mask, byte[] alpha) {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("保存抠图结果");
         fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
@@ -274,25 +324,86 @@ public class ImageProcessor {
                 path += ".png";
             }
             
-            try {
-                ImageIO.write(image, "png", new File(path));
-                mainFrame.getStatusLabel().setText("图像已保存至: " + path);
-            } catch (IOException ex) {
-                ex.printStackTrace();
-                mainFrame.getStatusLabel().setText("保存失败: " + ex.getMessage());
-            }
+            String target = path;
+            exporter.submit(source, mask, alpha, new File(target), compressionLevel,
+                    (f, percent) -> SwingUtilities.invokeLater(() -> showExportProgress(f, percent)))
+                    .whenComplete((f, ex) -> SwingUtilities.invokeLater(() -> {
+                        if (ex == null) {
+                            mainFrame.getStatusLabel().setText("图像已保存至: " + target);
+                        } else {
+                            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                            cause.printStackTrace();
+                            mainFrame.getStatusLabel().setText("保存失败: " + cause.getMessage());
+                        }
+                    }));
+            showExportProgress(new File(target), 0f);
+        }
+    }
+    
+    /**
+     * 在状态栏显示导出进度和排队数
+     */
+    private void showExportProgress(File file, float percent) {
+        int waiting = exporter.getPendingCount() - 1;
+        mainFrame.getStatusLabel().setText("正在保存 " + file.getName() + " " + Math.round(percent) + "%"
+                + (waiting > 0 ? "（另有 " + waiting + " 个等待）" : ""));
+    }
+    
+    /**
+     * 设置保存 PNG 的压缩级别（0–9），级别越低保存越快、文件越大
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException("压缩级别应在 0 到 9 之间: " + compressionLevel);
         }
+        this.compressionLevel = compressionLevel;
+    }
+    
+    public int getCompressionLevel() {
+        return compressionLevel;
     }
     
     /**
-     * 创建图像深拷贝
+     * 设置抠图边缘的羽化半径（像素），0 为硬边
      */
-    private BufferedImage deepCopy(BufferedImage bi) {
-        BufferedImage copy = new BufferedImage(bi.getWidth(), bi.getHeight(), bi.getType());
-        Graphics g = copy.getGraphics();
-        g.drawImage(bi, 0, 0, null);
-        g.dispose();
-        return copy;
+    public void setFeatherRadius(double featherRadius) {
+        if (featherRadius < 0) {
+            throw new IllegalArgumentException("羽化半径不能为负: " + featherRadius);
+        }
+        this.featherRadius = featherRadius;
+    }
+    
+    public double getFeatherRadius() {
+        return featherRadius;
+    }
+    
+    /**
+     * 设置加载代价图的堆预算（字节），0 表示按当前可用堆自动确定，下次加载时生效
+     */
+    public void setHeapBudget(long heapBudget) {
+        this.heapBudget = Math.max(0, heapBudget);
+    }
+    
+    public long getHeapBudget() {
+        return heapBudget;
+    }
+    
+    /**
+     * 设置加载代价图的堆外预算（字节），0 表示自动确定
+     */
+    public void setOffHeapBudget(long offHeapBudget) {
+        this.offHeapBudget = Math.max(0, offHeapBudget);
+    }
+    
+    public long getOffHeapBudget() {
+        return offHeapBudget;
+    }
+    
+    /**
+     * 加载指标：各代价表示被选中的次数、预算、估算值和实际内存占用
+     */
+    public EngineMetrics getMetrics() {
+        return metrics;
     }
     
     /**
@@ -302,6 +413,10 @@ public class ImageProcessor {
         return originalImage;
     }
     
+    public File getImageFile() {
+        return imageFile;
+    }
+    
     public BufferedImage getDisplayImage() {
         return displayImage;
     }
@@ -310,6 +425,10 @@ public class ImageProcessor {
         return costImage;
     }
     
+    public LinkCostPlanes getLinkCostPlanes() {
+        return linkCostPlanes;
+    }
+    
     public CostGraphGenerator getCostGraphGenerator() {
         return costGraphGenerator;
     }
@@ -0,0 +1,217 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 可缩放、平移的图像视口：负责显示图像和坐标变换
+ * 为显示图像预先生成多级 mipmap（每级边长减半），绘制时只取可见区域，并根据缩放比例选用合适的层级，
+ * 因此缩小查看或平移大图时不会反复缩放整张原图
+ * 交互：滚轮以光标为中心缩放，按住中键拖动平移
+ */
+public class ImageViewport extends JComponent {
+    private static final long serialVersionUID = 1L;
+    private static final int MIN_LEVEL_SIZE = 256; // mipmap 最小层的长边
+    private static final double ZOOM_STEP = 1.25; // 每格滚轮的缩放倍数
+    private static final double MAX_SCALE = 32; // 最大放大倍数
+
+    private final List<BufferedImage> levels = new ArrayList<>(); // mipmap，levels.get(0) 为原图
+    private double scale = 1.0; // 视图像素 / 图像像素
+    private double offsetX = 0, offsetY = 0; // 图像原点在视图中的位置
+    private boolean fitPending = false; // 组件尚未布局时，延迟到第一次绘制再适应窗口
+    private Overlay overlay;
+    private boolean overlayVisible = true;
+
+    /**
+     * 叠加层：在图像之上绘制路径、吸附点等内容，Graphics2D 已经变换到图像坐标
+     */
+    public interface Overlay {
+        void paint(Graphics2D g, double scale, Rectangle visibleImageRect);
+    }
+
+    /**
+     * 构造函数
+     */
+    public ImageViewport() {
+        setBackground(Color.DARK_GRAY);
+        setOpaque(true);
+        MouseAdapter navigation = new MouseAdapter() {
+            private Point dragStart;
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (SwingUtilities.isMiddleMouseButton(e)) dragStart = e.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (dragStart == null) return;
+                offsetX += e.getX() - dragStart.x;
+                offsetY += e.getY() - dragStart.y;
+                dragStart = e.getPoint();
+                repaint();
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                if (SwingUtilities.isMiddleMouseButton(e)) dragStart = null;
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                double factor = Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation());
+                zoomAt(e.getPoint(), factor);
+            }
+        };
+        addMouseListener(navigation);
+        addMouseMotionListener(navigation);
+        addMouseWheelListener(navigation);
+    }
+
+    /**
+     * 设置显示的图像并生成 mipmap；与当前图像相同时不做任何事
+     */
+    public void setImage(BufferedImage image) {
+        if (!levels.isEmpty() && levels.get(0) == image) {
+            repaint();
+            return;
+        }
+        boolean firstImage = levels.isEmpty();
+        levels.clear();
+        if (image != null) {
+            levels.add(image);
+            BufferedImage level = image;
+            while (Math.max(level.getWidth(), level.getHeight()) > MIN_LEVEL_SIZE) {
+                level = halve(level);
+                levels.add(level);
+            }
+        }
+        if (firstImage) fitToView();
+        repaint();
+    }
+
+    public BufferedImage getImage() {
+        return levels.isEmpty() ? null : levels.get(0);
+    }
+
+    public void setOverlay(Overlay overlay) {
+        this.overlay = overlay;
+    }
+
+    public void setOverlayVisible(boolean visible) {
+        this.overlayVisible = visible;
+        repaint();
+    }
+
+    /**
+     * 缩放到整张图像都能显示在窗口中（不放大小图）
+     */
+    public void fitToView() {
+        BufferedImage image = getImage();
+        if (image == null) return;
+        if (getWidth() == 0 || getHeight() == 0) {
+            fitPending = true;
+            return;
+        }
+        fitPending = false;
+        scale = Math.min(1.0, Math.min((double) getWidth() / image.getWidth(), (double) getHeight() / image.getHeight()));
+        offsetX = (getWidth() - image.getWidth() * scale) / 2;
+        offsetY = (getHeight() - image.getHeight() * scale) / 2;
+        repaint();
+    }
+
+    /**
+     * 以视图中的某点为中心缩放
+     */
+    public void zoomAt(Point viewPoint, double factor) {
+        BufferedImage image = getImage();
+        if (image == null) return;
+        double minScale = Math.min(1.0, 0.5 * Math.min((double) getWidth() / image.getWidth(), (double) getHeight() / image.getHeight()));
+        double newScale = Math.max(minScale, Math.min(MAX_SCALE, scale * factor));
+        // 保持光标下的图像点不动
+        offsetX = viewPoint.x - (viewPoint.x - offsetX) * newScale / scale;
+        offsetY = viewPoint.y - (viewPoint.y - offsetY) * newScale / scale;
+        scale = newScale;
+        repaint();
+    }
+
+    /**
+     * 视图坐标转换为图像坐标，超出图像范围时返回 null
+     */
+    public Point viewToImage(Point viewPoint) {
+        BufferedImage image = getImage();
+        if (image == null) return null;
+        int x = (int) Math.floor((viewPoint.x - offsetX) / scale);
+        int y = (int) Math.floor((viewPoint.y - offsetY) / scale);
+        if (x < 0 || y < 0 || x >= image.getWidth() || y >= image.getHeight()) return null;
+        return new Point(x, y);
+    }
+
+    /**
+     * 当前可见的图像区域（图像坐标，已与图像边界求交）
+     */
+    public Rectangle getVisibleImageRect() {
+        BufferedImage image = getImage();
+        if (image == null) return new Rectangle();
+        int x0 = (int) Math.floor(-offsetX / scale);
+        int y0 = (int) Math.floor(-offsetY / scale);
+        int x1 = (int) Math.ceil((getWidth() - offsetX) / scale);
+        int y1 = (int) Math.ceil((getHeight() - offsetY) / scale);
+        return new Rectangle(x0, y0, x1 - x0, y1 - y0).intersection(new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        Graphics2D g = (Graphics2D) graphics.create();
+        g.setColor(getBackground());
+        g.fillRect(0, 0, getWidth(), getHeight());
+        if (fitPending) fitToView();
+
+        Rectangle visible = getVisibleImageRect();
+        if (!visible.isEmpty()) {
+            // 选择分辨率不低于屏幕像素的最粗层级
+            int level = 0;
+            while (level + 1 < levels.size() && scale * (1 << (level + 1)) <= 1.0) level++;
+            BufferedImage source = levels.get(level);
+            int sx0 = visible.x >> level, sy0 = visible.y >> level;
+            int sx1 = Math.min(source.getWidth(), (visible.x + visible.width + (1 << level) - 1) >> level);
+            int sy1 = Math.min(source.getHeight(), (visible.y + visible.height + (1 << level) - 1) >> level);
+            double levelScale = scale * (1 << level);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, scale >= 1
+                    ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+                    : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(source,
+                    (int) Math.round(offsetX + sx0 * levelScale), (int) Math.round(offsetY + sy0 * levelScale),
+                    (int) Math.round(offsetX + sx1 * levelScale), (int) Math.round(offsetY + sy1 * levelScale),
+                    sx0, sy0, sx1, sy1, null);
+
+            if (overlay != null && overlayVisible) {
+                Graphics2D og = (Graphics2D) g.create();
+                og.transform(new AffineTransform(scale, 0, 0, scale, offsetX, offsetY));
+                overlay.paint(og, scale, visible);
+                og.dispose();
+            }
+        }
+        g.dispose();
+    }
+
+    /**
+     * 生成边长减半的下一级图像
+     */
+    private static BufferedImage halve(BufferedImage image) {
+        int width = Math.max(1, image.getWidth() / 2);
+        int height = Math.max(1, image.getHeight() / 2);
+        BufferedImage result = new BufferedImage(width, height,
+                image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = result.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return result;
+    }
+}
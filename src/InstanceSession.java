@@ -0,0 +1,130 @@
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * 多实例分割会话：同一张图片上依次勾出多个对象的闭合轮廓，共用一份代价图和规划状态
+ * 每个实例有一个从 1 开始递增的标签，删除实例不会改变其它实例的标签
+ * rasterize 一次得到整幅图的标签图：
+ * 1. 各实例只在自己的外接矩形内填充区域掩码，实例之间互不依赖，并行计算；
+ * 2. 按行条带并行写标签图，每行按实例的添加顺序依次写入，重叠处后添加的实例覆盖先添加的
+ */
+public class InstanceSession {
+    private final int width;
+    private final int height;
+    private final List<Instance> instances = new ArrayList<>();
+    private int nextLabel = 1;
+
+    /**
+     * 一个实例：标签和闭合轮廓
+     */
+    public static class Instance {
+        private final int label;
+        private final List<ChainCode> contour;
+        private final Rectangle bounds; // 轮廓的外接矩形（已裁剪到图像内）
+
+        Instance(int label, List<ChainCode> contour, Rectangle bounds) {
+            this.label = label;
+            this.contour = contour;
+            this.bounds = bounds;
+        }
+
+        public int getLabel() {
+            return label;
+        }
+
+        public List<ChainCode> getContour() {
+            return contour;
+        }
+
+        public Rectangle getBounds() {
+            return new Rectangle(bounds);
+        }
+    }
+
+    public InstanceSession(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * 添加一个闭合轮廓作为新实例，返回它的标签；轮廓为空或完全在图像外时返回 0
+     */
+    public int add(List<ChainCode> contour) {
+        Rectangle bounds = PathMask.bounds(contour);
+        if (bounds == null) return 0;
+        bounds = bounds.intersection(new Rectangle(0, 0, width, height));
+        if (bounds.isEmpty()) return 0;
+        Instance instance = new Instance(nextLabel++, List.copyOf(contour), bounds);
+        instances.add(instance);
+        return instance.label;
+    }
+
+    /**
+     * 删除最后添加的实例，返回它的标签，没有实例时返回 0
+     */
+    public int removeLast() {
+        if (instances.isEmpty()) return 0;
+        return instances.remove(instances.size() - 1).label;
+    }
+
+    public void clear() {
+        instances.clear();
+        nextLabel = 1;
+    }
+
+    public List<Instance> getInstances() {
+        return Collections.unmodifiableList(instances);
+    }
+
+    public int size() {
+        return instances.size();
+    }
+
+    public boolean isEmpty() {
+        return instances.isEmpty();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 把所有实例栅格化为标签图，0 为背景
+     */
+    public LabelMap rasterize() {
+        Instance[] ordered = instances.toArray(new Instance[0]);
+        // 阶段一：各实例在外接矩形内的区域掩码
+        BitMask[] masks = new BitMask[ordered.length];
+        IntStream.range(0, ordered.length).parallel()
+                .forEach(i -> masks[i] = PathMask.fromPaths(ordered[i].contour, ordered[i].bounds));
+
+        // 阶段二：按行条带写标签，行内按添加顺序覆盖
+        int[] labels = new int[Math.multiplyExact(width, height)];
+        int bands = Math.min(height, Runtime.getRuntime().availableProcessors() * 4);
+        IntStream.range(0, bands).parallel().forEach(b -> {
+            int y0 = (int) ((long) b * height / bands), y1 = (int) ((long) (b + 1) * height / bands);
+            for (int i = 0; i < ordered.length; i++) {
+                Rectangle r = ordered[i].bounds;
+                BitMask mask = masks[i];
+                int label = ordered[i].label;
+                for (int y = Math.max(y0, r.y); y < Math.min(y1, r.y + r.height); y++) {
+                    int row = y * width + r.x, my = y - r.y;
+                    for (int x = mask.nextSetBit(0, my); x < mask.getWidth(); x = mask.nextSetBit(x, my)) {
+                        int end = mask.nextClearBit(x, my);
+                        Arrays.fill(labels, row + x, row + end, label);
+                        x = end;
+                    }
+                }
+            }
+        });
+        return new LabelMap(width, height, labels);
+    }
+}
@@ -0,0 +1,49 @@
+import java.util.Arrays;
+
+/**
+ * 可增长的 int 列表，避免 List&lt;Integer&gt; 的装箱开销
+ */
+class IntList {
+    private int[] data;
+    private int size = 0;
+
+    IntList() {
+        this(16);
+    }
+
+    IntList(int capacity) {
+        data = new int[Math.max(capacity, 4)];
+    }
+
+    void add(int value) {
+        if (size == data.length) data = Arrays.copyOf(data, data.length * 2);
+        data[size++] = value;
+    }
+
+    int get(int i) {
+        return data[i];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 移除并返回最后一个元素
+     */
+    int pop() {
+        return data[--size];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+}
@@ -0,0 +1,64 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferUShort;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 实例标签图：每个像素一个 int 标签，0 为背景，按行存储在 [y * width + x]
+ * 导出为 16 位灰度 PNG（像素值即标签），所有实例一个文件，常见的实例分割数据集都直接读取这种格式
+ */
+public class LabelMap {
+    private final int width;
+    private final int height;
+    private final int[] labels;
+
+    LabelMap(int width, int height, int[] labels) {
+        this.width = width;
+        this.height = height;
+        this.labels = labels;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int get(int x, int y) {
+        return labels[y * width + x];
+    }
+
+    /**
+     * 标签为 label 的区域（实例被后添加的实例覆盖的部分不在其中）
+     */
+    public BitMask mask(int label) {
+        BitMask mask = new BitMask(width, height);
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                if (labels[row + x] != label) continue;
+                int end = x + 1;
+                while (end < width && labels[row + end] == label) end++;
+                mask.setRange(y, x, end);
+                x = end;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 写出 16 位灰度 PNG，标签超过 65535 时抛出 IOException
+     */
+    public void writePng(File file) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_USHORT_GRAY);
+        short[] data = ((DataBufferUShort) image.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i] > 0xffff) throw new IOException("标签超出 16 位 PNG 的范围: " + labels[i]);
+            data[i] = (short) labels[i];
+        }
+        if (!ImageIO.write(image, "png", file)) throw new IOException("没有可用的 PNG 写入器");
+    }
+}
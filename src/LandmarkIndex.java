@@ -0,0 +1,141 @@
+import java.util.stream.IntStream;
+
+/**
+ * ALT（A*、地标与三角不等式）预处理：选出少量地标，保存每个地标到所有节点的最短距离
+ * 边代价对称，对任意地标 L 有 d(v, t) >= |d(L, t) - d(L, v)|，取各地标的最大值作为 A* 的启发值，
+ * 它是可采纳且一致的下界，PathPlanner.plan 据此搜索得到的路径代价与 Dijkstra 相同
+ * 1. 选地标：在图像边界上按欧氏距离做最远点采样（离已选地标最远的边界像素），地标在查询的“后方”时下界最紧；
+ *    按几何距离选点，各地标的最短路径树互不依赖，可以并行计算；
+ * 2. 每个地标一棵完整的最短路径树，在公共线程池中并行计算，只保留距离并压缩为 float，每个地标每节点 4 字节；
+ *    float 的舍入误差在取下界时按每个地标的最大舍入量扣除，保证仍然可采纳
+ * 预处理对应构建时的代价；网格图之后再被编辑（画笔或局部更新）时索引失效，PathPlanner 会回退到普通搜索
+ */
+public class LandmarkIndex {
+    public static final int DEFAULT_LANDMARKS = 8; // 默认地标数
+
+    private final GridGraph graph;
+    private final int editCount; // 构建时网格图的编辑次数
+    private final int[] landmarks; // 地标节点编号
+    private final float[][] distances; // distances[l][v]：地标 l 到节点 v 的最短距离，不可达为正无穷
+    private final double[] slack; // 每个地标的 float 舍入误差上限
+
+    private LandmarkIndex(GridGraph graph, int editCount, int[] landmarks, float[][] distances, double[] slack) {
+        this.graph = graph;
+        this.editCount = editCount;
+        this.landmarks = landmarks;
+        this.distances = distances;
+        this.slack = slack;
+    }
+
+    /**
+     * 为网格图选出 count 个地标并计算它们的最短路径树
+     */
+    public static LandmarkIndex build(GridGraph graph, int count) {
+        if (count < 1) throw new IllegalArgumentException("地标数至少为 1: " + count);
+        int editCount = graph.getEditCount();
+        int[] landmarks = selectLandmarks(graph, count);
+        float[][] distances = new float[landmarks.length][];
+        double[] slack = new double[landmarks.length];
+        IntStream.range(0, landmarks.length).parallel().forEach(l -> {
+            ShortestPathTree tree = PathPlanner.computeShortestPathTree(graph, landmarks[l]);
+            float[] row = new float[graph.size()];
+            double max = 0;
+            for (int v = 0; v < row.length; v++) {
+                double d = tree.distanceTo(v);
+                row[v] = (float) d;
+                if (d != Double.POSITIVE_INFINITY) max = Math.max(max, d);
+            }
+            distances[l] = row;
+            // 两个距离各自舍入到最近的 float，误差各不超过半个 ulp
+            slack[l] = Math.ulp((float) max);
+        });
+        return new LandmarkIndex(graph, editCount, landmarks, distances, slack);
+    }
+
+    /**
+     * 在图像边界上做最远点采样：第一个地标是离图像中心最远的边界像素，之后每次取离已选地标最近距离最大的边界像素
+     */
+    static int[] selectLandmarks(GridGraph graph, int count) {
+        int width = graph.getWidth(), height = graph.getHeight();
+        // 按顺时针列出边界像素；宽或高为 1 时整幅图都是边界
+        IntList border = new IntList();
+        if (width == 1 || height == 1) {
+            for (int v = 0; v < graph.size(); v++) border.add(v);
+        } else {
+            for (int x = 0; x < width; x++) border.add(graph.index(x, 0));
+            for (int y = 1; y < height; y++) border.add(graph.index(width - 1, y));
+            for (int x = width - 2; x >= 0; x--) border.add(graph.index(x, height - 1));
+            for (int y = height - 2; y >= 1; y--) border.add(graph.index(0, y));
+        }
+        int perimeter = border.size();
+        int[] xs = new int[perimeter], ys = new int[perimeter];
+        for (int i = 0; i < perimeter; i++) {
+            xs[i] = graph.x(border.get(i));
+            ys[i] = graph.y(border.get(i));
+        }
+
+        count = Math.min(count, perimeter);
+        int[] landmarks = new int[count];
+        double[] nearest = new double[perimeter]; // 到已选地标的最近平方距离
+        double cx = (width - 1) / 2.0, cy = (height - 1) / 2.0;
+        for (int i = 0; i < perimeter; i++) {
+            nearest[i] = (xs[i] - cx) * (xs[i] - cx) + (ys[i] - cy) * (ys[i] - cy);
+        }
+        for (int l = 0; l < count; l++) {
+            int best = 0;
+            for (int i = 1; i < perimeter; i++) {
+                if (nearest[i] > nearest[best]) best = i;
+            }
+            landmarks[l] = graph.index(xs[best], ys[best]);
+            for (int i = 0; i < perimeter; i++) {
+                double dx = xs[i] - xs[best], dy = ys[i] - ys[best];
+                nearest[i] = Math.min(nearest[i], dx * dx + dy * dy);
+            }
+        }
+        return landmarks;
+    }
+
+    /**
+     * 索引是否对应 graph 的当前代价
+     */
+    public boolean isValidFor(GridGraph graph) {
+        return graph == this.graph && graph.getEditCount() == editCount;
+    }
+
+    /**
+     * 各地标到 target 的距离，供 estimate 使用
+     */
+    double[] distancesTo(int target) {
+        double[] result = new double[landmarks.length];
+        for (int l = 0; l < landmarks.length; l++) result[l] = distances[l][target];
+        return result;
+    }
+
+    /**
+     * v 到目标的最短距离下界，toTarget 为 distancesTo(target) 的结果
+     */
+    double estimate(int v, double[] toTarget) {
+        double bound = 0;
+        for (int l = 0; l < toTarget.length; l++) {
+            double dv = distances[l][v], dt = toTarget[l];
+            if (dv == Double.POSITIVE_INFINITY || dt == Double.POSITIVE_INFINITY) continue;
+            bound = Math.max(bound, Math.abs(dt - dv) - slack[l]);
+        }
+        return bound;
+    }
+
+    public int getLandmarkCount() {
+        return landmarks.length;
+    }
+
+    public int[] getLandmarks() {
+        return landmarks.clone();
+    }
+
+    /**
+     * 距离表占用的内存（字节）
+     */
+    public long bytes() {
+        return (long) landmarks.length * graph.size() * Float.BYTES;
+    }
+}
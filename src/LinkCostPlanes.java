@@ -0,0 +1,43 @@
+/**
+ * 按方向存储的边代价平面
+ * 边代价是对称的 (cost(u,v) == cost(v,u))，因此只保存 4 个“正方向”（GridGraph 方向编号 4~7）的平面，
+ * 反方向的代价从邻居节点的对应平面读取，内存为每像素 16 字节
+ * 平面中的代价不含对角线系数，与 PixelNode.Neighbor.link_cost 的约定一致
+ */
+public class LinkCostPlanes {
+    private final int width;
+    private final int height;
+    private final float[][] planes; // planes[dir - 4][index]
+    private final double[][] nodeCost; // 梯度幅值项，归一化方式与 CostGraphGenerator.getCostImage 相同
+
+    LinkCostPlanes(int width, int height, float[][] planes, double[][] nodeCost) {
+        this.width = width;
+        this.height = height;
+        this.planes = planes;
+        this.nodeCost = nodeCost;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 从 index 沿 dir 方向到邻居的边代价，调用前需保证邻居存在
+     */
+    public float linkCost(int index, int dir) {
+        if (dir >= 4) return planes[dir - 4][index];
+        int next = index + GridGraph.DX[dir] * height + GridGraph.DY[dir];
+        return planes[3 - dir][next];
+    }
+
+    /**
+     * 逐像素的代价矩阵，用于边缘吸附等只需要节点代价的场合
+     */
+    public double[][] getNodeCost() {
+        return nodeCost;
+    }
+}
@@ -4,7 +4,7 @@ import java.io.File;
 
 public class Main extends JFrame {
     // UI组件
-    private JLabel imageLabel;
+    private ImageViewport imageView;
     private JLabel statusLabel;
     
     // 核心管理器
@@ -40,12 +40,11 @@ public class Main extends JFrame {
      */
     private void initComponents() {
         // 创建UI组件
-        imageLabel = new JLabel();
-        imageLabel.setHorizontalAlignment(JLabel.CENTER);
+        imageView = new ImageViewport();
         
         statusLabel = new JLabel("请点击图像设置起点");
         add(statusLabel, BorderLayout.NORTH);
-        add(new JScrollPane(imageLabel), BorderLayout.CENTER);
+        add(imageView, BorderLayout.CENTER);
         
         // 创建管理器
         EdgeDetector edgeDetector = new EdgeDetector();
@@ -64,8 +63,8 @@ public class Main extends JFrame {
     
     // --- Getter/Setter 方法 ---
     
-    public JLabel getImageLabel() {
-        return imageLabel;
+    public ImageViewport getImageView() {
+        return imageView;
     }
     
     public JLabel getStatusLabel() {
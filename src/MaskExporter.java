@@ -0,0 +1,176 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 掩码导出：不经过 PNG 编码，直接由 BitMask 的字流式写出
+ * 1. COCO RLE：{"size":[高, 宽],"counts":...}，按列优先（先沿 y 再沿 x）统计游程，第一个游程为 0 的个数；
+ *    counts 可以是 pycocotools 的压缩字符串，也可以是整数列表（未压缩 RLE，iscrowd 标注使用）；
+ * 2. PBM（P4）：未压缩的二值位图，每行按字节补齐，高位在前，1 表示区域内。
+ * 列优先的游程需要转置：每次取 64 列，把 64x64 的位块转置后逐列按字统计游程，临时内存只与图像高度成正比
+ */
+public class MaskExporter {
+
+    /**
+     * 游程的接收者
+     */
+    private interface RunSink {
+        void run(long length) throws IOException;
+    }
+
+    /**
+     * 写出 COCO RLE，compressed 为 true 时 counts 使用 pycocotools 的压缩字符串
+     */
+    public static void writeCocoRle(Writer out, BitMask mask, boolean compressed) throws IOException {
+        out.write("{\"size\":[" + mask.getHeight() + "," + mask.getWidth() + "],\"counts\":");
+        if (compressed) {
+            out.write('"');
+            forEachColumnRun(mask, new CompressedCounts(out));
+            out.write('"');
+        } else {
+            out.write('[');
+            boolean[] first = {true};
+            forEachColumnRun(mask, length -> {
+                if (!first[0]) out.write(',');
+                first[0] = false;
+                out.write(Long.toString(length));
+            });
+            out.write(']');
+        }
+        out.write("}\n");
+    }
+
+    /**
+     * pycocotools rleToString 的压缩格式：从第四个游程起改写为与前前个游程的差值，
+     * 再按 5 位一组、带符号扩展和续位标志编码为可打印字符
+     */
+    private static class CompressedCounts implements RunSink {
+        private final Writer out;
+        private long beforePrevious = 0, previous = 0;
+        private long index = 0;
+
+        CompressedCounts(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void run(long length) throws IOException {
+            long x = index > 2 ? length - beforePrevious : length;
+            beforePrevious = previous;
+            previous = length;
+            index++;
+            boolean more = true;
+            while (more) {
+                long c = x & 0x1f;
+                x >>= 5;
+                more = (c & 0x10) != 0 ? x != -1 : x != 0;
+                if (more) c |= 0x20;
+                // 字符范围为 '0' 到 'o'，其中只有反斜杠需要在 JSON 字符串中转义
+                if (c + 48 == '\\') out.write('\\');
+                out.write((int) (c + 48));
+            }
+        }
+    }
+
+    /**
+     * 按列优先顺序输出游程：交替为 0 和 1 的个数，从 0 开始（第一个像素为 1 时第一个游程长度为 0）
+     */
+    private static void forEachColumnRun(BitMask mask, RunSink sink) throws IOException {
+        int width = mask.getWidth(), height = mask.getHeight();
+        int blocks = (height + 63) >>> 6;
+        long[][] columns = new long[64][blocks]; // 当前 64 列按列存储的位，columns[j][b] 的第 i 位为第 64b+i 行
+        long[] block = new long[64];
+        boolean value = false;
+        long run = 0;
+
+        for (int word = 0; word < mask.getWordsPerRow(); word++) {
+            for (int b = 0; b < blocks; b++) {
+                for (int i = 0; i < 64; i++) {
+                    int y = (b << 6) + i;
+                    block[i] = y < height ? mask.getWord(y, word) : 0;
+                }
+                transpose(block);
+                for (int j = 0; j < 64; j++) columns[j][b] = block[j];
+            }
+            int columnCount = Math.min(64, width - (word << 6));
+            for (int j = 0; j < columnCount; j++) {
+                for (int b = 0; b < blocks; b++) {
+                    int valid = Math.min(64, height - (b << 6));
+                    long bits = columns[j][b];
+                    int pos = 0;
+                    while (pos < valid) {
+                        // 从 pos 开始与当前值相同的位数
+                        long rest = (value ? ~bits : bits) >>> pos;
+                        int same = rest == 0 ? valid - pos : Math.min(valid - pos, Long.numberOfTrailingZeros(rest));
+                        run += same;
+                        pos += same;
+                        if (pos < valid) {
+                            sink.run(run);
+                            run = 0;
+                            value = !value;
+                        }
+                    }
+                }
+            }
+        }
+        sink.run(run);
+    }
+
+    /**
+     * 原地转置 64x64 位块：转置后 block[j] 的第 i 位等于转置前 block[i] 的第 j 位
+     */
+    static void transpose(long[] block) {
+        long m = 0x00000000FFFFFFFFL;
+        for (int j = 32; j != 0; j >>>= 1, m ^= m << j) {
+            for (int k = 0; k < 64; k = ((k | j) + 1) & ~j) {
+                long t = ((block[k] >>> j) ^ block[k | j]) & m;
+                block[k] ^= t << j;
+                block[k | j] ^= t;
+            }
+        }
+    }
+
+    /**
+     * 写出 PBM（P4）二值位图
+     */
+    public static void writePbm(OutputStream out, BitMask mask) throws IOException {
+        int width = mask.getWidth();
+        out.write(("P4\n" + width + " " + mask.getHeight() + "\n").getBytes(StandardCharsets.US_ASCII));
+        int rowBytes = (width + 7) >>> 3;
+        byte[] row = new byte[rowBytes];
+        for (int y = 0; y < mask.getHeight(); y++) {
+            for (int i = 0; i < mask.getWordsPerRow(); i++) {
+                // 位反转后按大端取字节，最左边的像素落在每个字节的最高位
+                long bits = Long.reverse(mask.getWord(y, i));
+                for (int k = 0; k < 8 && (i << 3) + k < rowBytes; k++) {
+                    row[(i << 3) + k] = (byte) (bits >>> (56 - 8 * k));
+                }
+            }
+            out.write(row);
+        }
+    }
+
+    /**
+     * 按扩展名写出到文件：.json 为压缩的 COCO RLE，.pbm 为 PBM 二值位图
+     */
+    public static void export(File file, BitMask mask) throws IOException {
+        String name = file.getName().toLowerCase();
+        if (name.endsWith(".json")) {
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+                writeCocoRle(out, mask, true);
+            }
+        } else if (name.endsWith(".pbm")) {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                writePbm(out, mask);
+            }
+        } else {
+            throw new IOException("不支持的掩码格式: " + file.getName());
+        }
+    }
+}
@@ -0,0 +1,331 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * 内存预算管理：加载图片前估算每种代价表示的内存占用，在堆预算和堆外预算内选出规划最快的表示并构建网格图
+ * 候选按规划速度从快到慢排列，每像素占用见 Representation：
+ * 1. LINK_PLANES：多特征边代价平面（原来的加载方式），质量最好，计算期间的峰值也最高；
+ * 2. NODE_ARRAY：只保存 double 节点代价，边代价为两端节点代价之和（costImageToGraph 的代价模型）；
+ * 3. QUANTIZED：节点代价量化为 16 位；
+ * 4. OFF_HEAP：double 节点代价放在直接内存中，不占用堆；
+ * 5. TILED：只在固定大小的块缓存中保存代价，缺失的块从原图重新计算。
+ * OBJECT_GRAPH（PixelNode 对象图）比网格图既慢又大，只给出估算以便对比，不会被选中
+ * 除 LINK_PLANES 外，代价都按列条带计算：先扫描一遍全图梯度范围，再逐条带归一化写入，不分配整幅的临时矩阵
+ * 估算偏低导致构建时内存不足时，退到下一个放得下的表示；选择结果、估算值和实际占用记入 EngineMetrics（memory.*）
+ */
+public class MemoryGovernor {
+    public static final double DEFAULT_HEAP_FRACTION = 0.8; // 默认堆预算占当前可用堆的比例
+    public static final long DEFAULT_TILE_CACHE_BYTES = 16L << 20; // 分块代价图的缓存大小（2048 块）
+    // 与表示无关的每像素堆开销：画笔倍数层 4；搜索上下文另按 SearchContext.residentBytes 计入（包括池中保留的）
+    static final int ENGINE_BYTES_PER_PIXEL = 4;
+    private static final int STRIP_WIDTH = 64; // 条带宽度（列）
+
+    /**
+     * 代价表示，按规划速度从快到慢排列；字节数为构建期间的每像素峰值
+     */
+    public enum Representation {
+        LINK_PLANES("多特征边代价平面", 45, 0), // 特征 20 + 节点代价 8 + 过零点 1 + 边代价平面 16，完成后常驻 24
+        NODE_ARRAY("节点代价数组", 8, 0),
+        QUANTIZED("16 位量化代价", 2, 0),
+        OFF_HEAP("堆外代价", 0, 8),
+        TILED("分块代价", 0, 0), // 另加固定大小的块缓存
+        OBJECT_GRAPH("PixelNode 对象图", 400, 0); // 节点、邻居列表、8 个 Neighbor 和 HashMap 中的字符串键
+
+        private final String label;
+        final int heapBytesPerPixel;
+        final int offHeapBytesPerPixel;
+
+        Representation(String label, int heapBytesPerPixel, int offHeapBytesPerPixel) {
+            this.label = label;
+            this.heapBytesPerPixel = heapBytesPerPixel;
+            this.offHeapBytesPerPixel = offHeapBytesPerPixel;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * 一种表示的内存估算
+     */
+    public static final class Footprint {
+        private final Representation representation;
+        private final long heapBytes;
+        private final long offHeapBytes;
+
+        Footprint(Representation representation, long heapBytes, long offHeapBytes) {
+            this.representation = representation;
+            this.heapBytes = heapBytes;
+            this.offHeapBytes = offHeapBytes;
+        }
+
+        public Representation getRepresentation() {
+            return representation;
+        }
+
+        public long getHeapBytes() {
+            return heapBytes;
+        }
+
+        public long getOffHeapBytes() {
+            return offHeapBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: 堆 %d MB, 堆外 %d MB", representation.label, heapBytes >> 20, offHeapBytes >> 20);
+        }
+    }
+
+    private final long heapBudget;
+    private final long offHeapBudget;
+    private final EngineMetrics metrics;
+    private volatile Representation chosen; // 最近一次构建使用的表示
+
+    public MemoryGovernor(long heapBudget, long offHeapBudget, EngineMetrics metrics) {
+        this.heapBudget = heapBudget;
+        this.offHeapBudget = offHeapBudget;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 按当前 JVM 的可用内存确定预算
+     */
+    public static MemoryGovernor forRuntime(EngineMetrics metrics) {
+        return new MemoryGovernor(defaultHeapBudget(), defaultOffHeapBudget(), metrics);
+    }
+
+    /**
+     * 当前可用堆（最大堆减去已使用部分）的 DEFAULT_HEAP_FRACTION
+     */
+    public static long defaultHeapBudget() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return (long) ((runtime.maxMemory() - used) * DEFAULT_HEAP_FRACTION);
+    }
+
+    /**
+     * 未设置 -XX:MaxDirectMemorySize 时直接内存的上限与最大堆相同，减去已使用部分
+     */
+    public static long defaultOffHeapBudget() {
+        return Math.max(0, Runtime.getRuntime().maxMemory() - directMemoryUsed());
+    }
+
+    /**
+     * 估算 width x height 的图片使用某种表示时的内存占用
+     */
+    public Footprint estimate(Representation representation, int width, int height) {
+        long pixels = (long) width * height;
+        long heap = pixels * (representation.heapBytesPerPixel + ENGINE_BYTES_PER_PIXEL) + SearchContext.residentBytes(pixels);
+        if (representation == Representation.TILED) {
+            // 缓存不超过整幅图的块数
+            long tiles = (long) ((width + TiledCostMap.TILE_SIZE - 1) >> TiledCostMap.TILE_SHIFT)
+                    * ((height + TiledCostMap.TILE_SIZE - 1) >> TiledCostMap.TILE_SHIFT);
+            heap += Math.min(DEFAULT_TILE_CACHE_BYTES, tiles * TiledCostMap.TILE_BYTES);
+        }
+        return new Footprint(representation, heap, pixels * representation.offHeapBytesPerPixel);
+    }
+
+    public boolean fits(Footprint footprint) {
+        return footprint.heapBytes <= heapBudget && footprint.offHeapBytes <= offHeapBudget;
+    }
+
+    /**
+     * 选出放得进预算的最快表示，都放不下时抛出 IllegalStateException
+     */
+    public Representation choose(int width, int height) {
+        return next(null, width, height);
+    }
+
+    /**
+     * 在 after 之后（after 为 null 时从头）找下一个放得进预算的表示
+     */
+    private Representation next(Representation after, int width, int height) {
+        if ((long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalStateException("图片过大: " + width + "x" + height + " 超出网格图的节点编号范围");
+        }
+        for (Representation representation : Representation.values()) {
+            if (representation == Representation.OBJECT_GRAPH) continue;
+            if (after != null && representation.ordinal() <= after.ordinal()) continue;
+            if (fits(estimate(representation, width, height))) return representation;
+        }
+        Footprint smallest = estimate(Representation.TILED, width, height);
+        throw new IllegalStateException(String.format("内存不足: %dx%d 的图片至少需要 %d MB 堆内存，预算为 %d MB",
+                width, height, smallest.heapBytes >> 20, heapBudget >> 20));
+    }
+
+    /**
+     * 选择表示并构建网格图
+     */
+    public GridGraph build(BufferedImage image) {
+        return build(image, null, null);
+    }
+
+    /**
+     * 选择表示并构建网格图；focus 只用于多特征边代价平面的渐进计算，listener 抛出的异常（例如取消加载）会终止构建
+     */
+    public GridGraph build(BufferedImage image, Supplier<Point> focus, CostFeatureEngine.ProgressListener listener) {
+        int width = image.getWidth(), height = image.getHeight();
+        Representation representation = choose(width, height);
+        while (true) {
+            try {
+                long start = System.nanoTime();
+                GridGraph graph = build(representation, image, focus, listener);
+                metrics.record("memory.build", System.nanoTime() - start);
+                chosen = representation;
+                report(estimate(representation, width, height));
+                return graph;
+            } catch (OutOfMemoryError ex) {
+                // 估算偏低（例如堆中还有尚未释放的上一张图片），释放本次的部分结果后退到更省内存的表示
+                metrics.increment("memory.fallbacks");
+                representation = next(representation, width, height);
+            }
+        }
+    }
+
+    private GridGraph build(Representation representation, BufferedImage image, Supplier<Point> focus,
+                            CostFeatureEngine.ProgressListener listener) {
+        if (representation == Representation.LINK_PLANES) {
+            return new GridGraph(new CostFeatureEngine().compute(image, focus, listener));
+        }
+        int width = image.getWidth(), height = image.getHeight();
+        CostGraphGenerator generator = new CostGraphGenerator(image);
+        int strips = (width + STRIP_WIDTH - 1) / STRIP_WIDTH;
+        int total = representation == Representation.TILED ? strips : 2 * strips;
+        AtomicInteger done = new AtomicInteger();
+
+        // 第一遍：全图梯度范围
+        double[][] ranges = new double[strips][];
+        IntStream.range(0, strips).parallel().forEach(s -> {
+            int x0 = s * STRIP_WIDTH, x1 = Math.min(width, x0 + STRIP_WIDTH);
+            double[][] gradient = strip(x0, x1, height);
+            generator.computeGradient(gradient, x0, 0, x1, height);
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for (int x = x0; x < x1; x++) {
+                for (double value : gradient[x]) {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+            }
+            ranges[s] = new double[]{min, max};
+            if (listener != null) listener.progress(done.incrementAndGet(), total);
+        });
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (double[] range : ranges) {
+            min = Math.min(min, range[0]);
+            max = Math.max(max, range[1]);
+        }
+
+        switch (representation) {
+            case NODE_ARRAY: {
+                ArrayCostMap map = new ArrayCostMap(width, height);
+                fill(generator, min, max, map::copyRegion, done, total, listener);
+                return new GridGraph(map);
+            }
+            case QUANTIZED: {
+                QuantizedCostMap map = new QuantizedCostMap(width, height);
+                fill(generator, min, max, map::copyRegion, done, total, listener);
+                return new GridGraph(map);
+            }
+            case OFF_HEAP: {
+                OffHeapCostMap map = OffHeapCostMap.allocate(width, height);
+                try {
+                    fill(generator, min, max, map::copyRegion, done, total, listener);
+                } catch (RuntimeException | Error ex) {
+                    map.close(); // 填充失败时立即归还直接内存，回退到下一种表示时不必等 GC
+                    throw ex;
+                }
+                return new GridGraph(map);
+            }
+            case TILED:
+                return new GridGraph(new TiledCostMap(image, min, max, DEFAULT_TILE_CACHE_BYTES));
+            default:
+                throw new IllegalArgumentException("不支持的表示: " + representation);
+        }
+    }
+
+    /**
+     * 代价图的区域写入
+     */
+    private interface RegionWriter {
+        void copyRegion(double[][] cost, int x0, int y0, int x1, int y1);
+    }
+
+    /**
+     * 第二遍：逐条带计算梯度、按全图范围归一化并写入代价图
+     */
+    private static void fill(CostGraphGenerator generator, double min, double max, RegionWriter writer,
+                             AtomicInteger done, int total, CostFeatureEngine.ProgressListener listener) {
+        int width = generator.getWidth(), height = generator.getHeight();
+        int strips = (width + STRIP_WIDTH - 1) / STRIP_WIDTH;
+        IntStream.range(0, strips).parallel().forEach(s -> {
+            int x0 = s * STRIP_WIDTH, x1 = Math.min(width, x0 + STRIP_WIDTH);
+            double[][] cost = strip(x0, x1, height);
+            generator.computeGradient(cost, x0, 0, x1, height);
+            CostGraphGenerator.normalizeToCost(cost, cost, min, max, x0, 0, x1, height);
+            writer.copyRegion(cost, x0, 0, x1, height);
+            if (listener != null) listener.progress(done.incrementAndGet(), total);
+        });
+    }
+
+    /**
+     * 只分配 [x0, x1) 这几列的矩阵，按绝对列号访问
+     */
+    private static double[][] strip(int x0, int x1, int height) {
+        double[][] columns = new double[x1][];
+        for (int x = x0; x < x1; x++) columns[x] = new double[height];
+        return columns;
+    }
+
+    /**
+     * 记录选择结果、预算、估算值和 JVM 实际占用
+     */
+    private void report(Footprint footprint) {
+        metrics.increment("memory.representation." + footprint.representation.name());
+        Runtime runtime = Runtime.getRuntime();
+        gauge("memory.heapBudgetBytes", heapBudget);
+        gauge("memory.offHeapBudgetBytes", offHeapBudget);
+        gauge("memory.estimatedHeapBytes", footprint.heapBytes);
+        gauge("memory.estimatedOffHeapBytes", footprint.offHeapBytes);
+        gauge("memory.heapUsedBytes", runtime.totalMemory() - runtime.freeMemory());
+        gauge("memory.offHeapUsedBytes", directMemoryUsed());
+    }
+
+    /**
+     * 计数器当作仪表使用：写入当前值
+     */
+    private void gauge(String name, long value) {
+        metrics.add(name, value - metrics.getCounter(name));
+    }
+
+    /**
+     * 直接内存缓冲池的已用字节数
+     */
+    static long directMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) return pool.getMemoryUsed();
+        }
+        return 0;
+    }
+
+    public long getHeapBudget() {
+        return heapBudget;
+    }
+
+    public long getOffHeapBudget() {
+        return offHeapBudget;
+    }
+
+    /**
+     * 最近一次构建使用的表示，尚未构建时为 null
+     */
+    public Representation getChosen() {
+        return chosen;
+    }
+}
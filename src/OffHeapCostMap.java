@@ -0,0 +1,193 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 堆外代价图：数据放在直接内存或内存映射文件中，GC 不会扫描也不会复制这部分数据，大小也不受堆上限约束
+ * 单个 ByteBuffer 最多 2GB，因此按 CHUNK 个 double 分块存放；读取使用绝对位置，不修改缓冲区状态，可被多个线程同时读取
+ * 节点编号可以超过 2^31：get(long) / set(long) 按 long 编号访问，CostMap 接口的 get(int) 只覆盖前 2^31 个节点
+ * 内存释放：close() 立即释放直接内存、解除文件映射；没有调用 close 时，这部分内存要等缓冲区对象被 GC 回收后才释放，
+ * 因此不再使用的大图应显式关闭。关闭后不能再读写，调用方需保证此时没有规划线程仍在使用它
+ * （FFM 的 Arena / MemorySegment 在当前使用的 JDK 21 中仍是预览 API，所以仍用 ByteBuffer 实现）
+ * 文件格式：按节点编号顺序排列的小端 double，没有文件头，宽高由调用方提供
+ */
+public class OffHeapCostMap implements CostMap, Closeable {
+    private static final int CHUNK_SHIFT = 27; // 每块 2^27 个 double（1GB）
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+    private static final Method INVOKE_CLEANER; // sun.misc.Unsafe.invokeCleaner，不可用时为 null
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // 没有 jdk.unsupported 模块时只能等 GC 释放
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    private final int width;
+    private final int height;
+    private final long size; // 节点数
+    private final ByteBuffer[] buffers; // 各块的底层缓冲区，释放时使用
+    private DoubleBuffer[] chunks; // 关闭后为空数组
+
+    private OffHeapCostMap(int width, int height, ByteBuffer[] buffers) {
+        this.width = width;
+        this.height = height;
+        this.size = (long) width * height;
+        this.buffers = buffers;
+        this.chunks = new DoubleBuffer[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            chunks[i] = buffers[i].order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        }
+    }
+
+    /**
+     * 在直接内存中分配代价图，初始值为 0
+     */
+    public static OffHeapCostMap allocate(int width, int height) {
+        long size = (long) width * height;
+        ByteBuffer[] buffers = new ByteBuffer[chunkCount(size)];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.allocateDirect(chunkLength(size, i) * Double.BYTES);
+        }
+        return new OffHeapCostMap(width, height, buffers);
+    }
+
+    /**
+     * 把 double[][] 代价矩阵复制到直接内存
+     */
+    public static OffHeapCostMap copyOf(double[][] costImage) {
+        OffHeapCostMap map = allocate(costImage.length, costImage[0].length);
+        map.copyRegion(costImage, 0, 0, map.width, map.height);
+        return map;
+    }
+
+    /**
+     * 只读映射代价图文件，数据由操作系统按需换入
+     */
+    public static OffHeapCostMap map(Path file, int width, int height) throws IOException {
+        long size = (long) width * height;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < size * Double.BYTES) {
+                throw new IOException("代价图文件长度不足: " + file);
+            }
+            ByteBuffer[] buffers = new ByteBuffer[chunkCount(size)];
+            for (int i = 0; i < buffers.length; i++) {
+                long offset = ((long) i << CHUNK_SHIFT) * Double.BYTES;
+                buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) chunkLength(size, i) * Double.BYTES);
+            }
+            // 映射在通道关闭后仍然有效
+            return new OffHeapCostMap(width, height, buffers);
+        }
+    }
+
+    /**
+     * 把任意代价图写入文件，之后可用 map 映射
+     */
+    public static void write(CostMap costMap, Path file) throws IOException {
+        long size = (long) costMap.getWidth() * costMap.getHeight();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            OffHeapCostMap source = costMap instanceof OffHeapCostMap ? (OffHeapCostMap) costMap : null;
+            for (long index = 0; index < size; index++) {
+                buffer.putDouble(source != null ? source.get(index) : costMap.get((int) index));
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) channel.write(buffer);
+                    buffer.clear();
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 节点数，可以超过 Integer.MAX_VALUE
+     */
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public double get(int index) {
+        return get((long) index);
+    }
+
+    /**
+     * 按 long 编号读取代价
+     */
+    public double get(long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    /**
+     * 用代价矩阵中的值覆盖区域 [x0, x1) x [y0, y1)；写入使用绝对位置，多个线程可以同时写不相交的区域
+     */
+    public void copyRegion(double[][] costImage, int x0, int y0, int x1, int y1) {
+        for (int x = x0; x < x1; x++) {
+            for (int y = y0; y < y1; y++) {
+                set((long) x * height + y, costImage[x][y]);
+            }
+        }
+    }
+
+    /**
+     * 按 long 编号写入代价（只对直接内存分配的代价图有效，映射的文件是只读的）
+     */
+    public void set(long index, double value) {
+        chunks[(int) (index >>> CHUNK_SHIFT)].put((int) (index & CHUNK_MASK), value);
+    }
+
+    /**
+     * 立即释放直接内存或解除文件映射；重复调用无效果
+     */
+    @Override
+    public synchronized void close() {
+        if (chunks.length == 0) return;
+        chunks = new DoubleBuffer[0];
+        if (INVOKE_CLEANER == null) return;
+        for (ByteBuffer buffer : buffers) {
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } catch (ReflectiveOperationException ex) {
+                return; // 释放失败时留给 GC
+            }
+        }
+    }
+
+    private static int chunkCount(long size) {
+        return (int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT);
+    }
+
+    private static int chunkLength(long size, int chunk) {
+        return (int) Math.min(1L << CHUNK_SHIFT, size - ((long) chunk << CHUNK_SHIFT));
+    }
+}
@@ -8,7 +8,8 @@ import java.util.List;
  */
 public class PathAnalyzer {
     // 配置参数
-    private static final double STABILITY_THRESHOLD = 1.8; // 代价稳定性阈值
+    private static final double STABILITY_THRESHOLD = 1.8; // 代价稳定性阈值（节点代价之和，非边缘区域的平均代价约为 1.9）
+    private static final double PLANES_STABILITY_THRESHOLD = 1.6; // 多特征边代价平面的代价稳定性阈值（非边缘区域约为 1.75）
     private static final double DIRECTION_THRESHOLD = 0.4; // 方向稳定性阈值
     private static final int MIN_PATH_LENGTH = 50; // 最小路径长度要求
     
@@ -19,6 +20,10 @@ public class PathAnalyzer {
         return path != null && path.size() >= MIN_PATH_LENGTH;
     }
     
+    public boolean isPathValid(int[] path) {
+        return path != null && path.length >= MIN_PATH_LENGTH;
+    }
+    
     /**
      * 判断路径是否稳定
      */
@@ -34,6 +39,24 @@ public class PathAnalyzer {
         return isStable;
     }
     
+    /**
+     * 判断网格图上的路径是否稳定
+     */
+    public boolean isPathStable(GridGraph graph, int[] path) {
+        StabilityMetrics metrics = calculatePathMetrics(graph, path);
+        
+        // 每次预览都会调用（包括 TraceReplayer 计时的事件），不输出调试信息
+        return metrics.getAvgCost() < stabilityThreshold(graph) && 
+                metrics.getAvgDirection() < DIRECTION_THRESHOLD;
+    }
+    
+    /**
+     * 代价稳定性阈值：多特征边代价与节点代价之和的尺度不同，按网格图的代价来源选择
+     */
+    static double stabilityThreshold(GridGraph graph) {
+        return graph.getLinkCostPlanes() != null ? PLANES_STABILITY_THRESHOLD : STABILITY_THRESHOLD;
+    }
+    
     /**
      * 计算路径指标
      */
@@ -71,4 +94,35 @@ public class PathAnalyzer {
         
         return new StabilityMetrics(avgCost, avgDirection, path.size());
     }
+    
+    /**
+     * 计算网格图上路径的指标，代价不含对角线系数，与对象图的 link_cost 一致
+     */
+    public StabilityMetrics calculatePathMetrics(GridGraph graph, int[] path) {
+        double totalCost = 0;
+        double totalDirection = 0;
+        
+        for (int i = 1; i < path.length; i++) {
+            int dir = PathPlanner.directionBetween(graph, path[i - 1], path[i]);
+            if (dir >= 0) {
+                totalCost += graph.moveCost(path[i - 1], dir) / GridGraph.DIR_SCALE[dir];
+            }
+            
+            if (i > 1) {
+                int x0 = graph.x(path[i - 2]), y0 = graph.y(path[i - 2]);
+                int x1 = graph.x(path[i - 1]), y1 = graph.y(path[i - 1]);
+                int x2 = graph.x(path[i]), y2 = graph.y(path[i]);
+                double angle1 = Math.atan2(y1 - y0, x1 - x0);
+                double angle2 = Math.atan2(y2 - y1, x2 - x1);
+                double angleDiff = Math.abs(angle2 - angle1);
+                if (angleDiff > Math.PI) angleDiff = 2 * Math.PI - angleDiff;
+                totalDirection += angleDiff;
+            }
+        }
+        
+        double avgCost = totalCost / path.length;
+        double avgDirection = path.length > 2 ? totalDirection / (path.length - 2) : 0;
+        
+        return new StabilityMetrics(avgCost, avgDirection, path.length);
+    }
 }
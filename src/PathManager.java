@@ -1,314 +1,269 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * 路径管理器：负责路径的创建、更新和管理
+ * 路径管理器：把界面事件交给 ContourEditor，并负责重绘、抠图和轨迹录制
+ * 多实例模式下轮廓闭合后不立即抠图，而是加入 InstanceSession 并开始下一个轮廓，代价图和规划状态继续复用
  */
 public class PathManager {
     private final Main mainFrame;
-    private final PathStabilityTracker stabilityTracker;
-    private final EdgeDetector edgeDetector;
-    
-    // 路径数据
-    private Map<String, PixelNode> costGraph;
-    private List<List<PixelNode>> confirmedPaths = new ArrayList<>();
-    private Point lastConfirmedPoint = null;
-    private Point firstPoint = null;
-    private Point currentSnappedPoint = null;
-    private Point suggestedNextPoint = null;
-    
-    // 路径状态
-    private boolean isClosable = false;
-    private static final int CLOSE_PATH_THRESHOLD = 15; // 闭合判定阈值
-    private static final int SNAP_RADIUS = 7; // 吸附搜索半径
+    private final ContourEditor editor;
+    private TraceRecorder recorder = null; // 正在录制的鼠标轨迹，未录制时为 null
+    private long frameBudgetNanos = DEFAULT_FRAME_BUDGET_NANOS; // 鼠标移动时预览的时间预算
+    private InstanceSession instances = new InstanceSession(0, 0); // 当前图片上已完成的实例
+    private boolean multiInstance = false; // 是否为多实例模式
+
+    public static final long DEFAULT_FRAME_BUDGET_NANOS = 8_000_000; // 留一半帧时间给绘制
+
+    // 闭合树和超像素图的后台构建线程
+    private static final ExecutorService BACKGROUND = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "contour-background");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    private static final long STABILITY_MESSAGE_DURATION = 2000; // 0.5秒显示时间
-    private Timer stabilityTimer;
-    private boolean showingStabilityMessage = false;
-    
     /**
      * 构造函数
      */
     public PathManager(Main mainFrame, PathStabilityTracker stabilityTracker, EdgeDetector edgeDetector) {
         this.mainFrame = mainFrame;
-        this.stabilityTracker = stabilityTracker;
-        this.edgeDetector = edgeDetector;
+        this.editor = new ContourEditor(stabilityTracker, edgeDetector, BACKGROUND,
+                text -> mainFrame.getStatusLabel().setText(text));
+        mainFrame.getImageView().setOverlay((g, scale, visible) -> {
+            paintInstances(g, visible);
+            editor.paintOverlay(g, scale, visible);
+        });
+        // 后台算出精确预览后回到事件线程换上
+        editor.setRefreshListener(() -> SwingUtilities.invokeLater(() -> {
+            if (editor.refreshPreview()) updatePreview();
+        }));
     }
-    
+
     /**
      * 初始化路径管理器
      */
-    public void init(Map<String, PixelNode> costGraph) {
-        this.costGraph = costGraph;
-        resetAll();
+    public void init(GridGraph costGraph) {
+        BufferedImage image = mainFrame.getImageProcessor().getOriginalImage();
+        editor.init(image == null ? 0 : image.getWidth(), image == null ? 0 : image.getHeight(), costGraph);
+        instances = new InstanceSession(image == null ? 0 : image.getWidth(), image == null ? 0 : image.getHeight());
+        if (recorder != null) {
+            recorder.image(mainFrame.getImageProcessor().getImageFile());
+        }
+        updateDisplay();
     }
-    
+
+    /**
+     * 图结构在后台构建完成后接入，保留加载期间已经设置的起点
+     */
+    public void attachGraph(GridGraph costGraph) {
+        editor.attachGraph(costGraph);
+        if (recorder != null) {
+            recorder.ready();
+        }
+    }
+
     /**
      * 处理点击事件
      */
     public void handleClickAtPoint(Point targetPoint) {
-        if (!isValidPoint(targetPoint)) return;
-        
-        String key = pointToKey(targetPoint);
-        
-        // 如果是第一个点
-        if (lastConfirmedPoint == null) {
-            lastConfirmedPoint = firstPoint = targetPoint;
-            mainFrame.getStatusLabel().setText("起点已设置 (" + key + ")");
-            return;
-        }
-        
-        try {
-            PixelNode start = getNode(lastConfirmedPoint);
-            PixelNode end = isClosable ? getNode(firstPoint) : getNode(currentSnappedPoint);
-            List<PixelNode> path = PathPlanner.computeShortestPathToTarget(costGraph, start, end);
-            
-            if (path.isEmpty()) {
-                mainFrame.getStatusLabel().setText("路径不可达");
-                return;
-            }
-            
-            confirmedPaths.add(path);
-            lastConfirmedPoint = currentSnappedPoint;
-            
-            if (isClosable) {
-                mainFrame.getStatusLabel().setText("路径已闭合，正在抠图...");
-                mainFrame.getImageProcessor().extractImage(confirmedPaths);
-            } else {
-                updatePreviewWithPath(null, false);
-                mainFrame.getStatusLabel().setText("路径已确认至 (" + key + ")");
-            }
-        } catch (Exception ex) {
-            mainFrame.getStatusLabel().setText((isClosable ? "闭合路径失败: " : "路径确认失败: ") + ex.getMessage());
-            ex.printStackTrace();
+        record(TraceRecorder.Type.CLICK, targetPoint);
+        ContourEditor.ClickResult result = editor.handleClickAtPoint(targetPoint);
+        if (result == ContourEditor.ClickResult.CLOSED && multiInstance) {
+            int label = instances.add(editor.getConfirmedPaths());
+            editor.resetAll();
+            mainFrame.getStatusLabel().setText("实例 " + label + " 已添加（共 " + instances.size() + " 个），请点击设置下一个实例的起点");
+            updatePreview();
+        } else if (result == ContourEditor.ClickResult.CLOSED) {
+            mainFrame.getImageProcessor().extractImage(editor.getConfirmedPaths());
+        } else if (result == ContourEditor.ClickResult.CONFIRMED) {
+            updatePreview();
         }
     }
-    
+
     /**
-     * 处理鼠标移动
+     * 处理鼠标移动，预览按当前的帧预算计算
      */
     public void handleMouseMove(Point imagePoint) {
-        if (costGraph == null || lastConfirmedPoint == null) return;
-
-        // 尝试找到边缘点
-        double[][] costImage = mainFrame.getImageProcessor().getCostImage();
-        Point snapped = edgeDetector.findBestEdgeFromCost(imagePoint, SNAP_RADIUS, costImage);
-
-        if (snapped != null) {
-            currentSnappedPoint = snapped;
-
-            // 根据当前点和上一个确认点计算临时路径
-            PixelNode start = getNode(lastConfirmedPoint);
-            PixelNode end = getNode(currentSnappedPoint);
-            List<PixelNode> tempPath = PathPlanner.computeShortestPathToTarget(costGraph, start, end);
-
-            // 分析路径稳定性
-            boolean isStable = stabilityTracker.analyzePathStability(tempPath);
-            // 如果路径稳定，生成推荐点
-            if (isStable) {
-                confirmedPaths.add(tempPath);
-                lastConfirmedPoint = currentSnappedPoint;
-            }
-            updatePreviewWithPath(tempPath, isStable);
+        handleMouseMove(imagePoint, frameBudgetNanos);
+    }
 
-            // 更新状态栏
-            updateStatusBarForPath(tempPath);
+    /**
+     * 处理鼠标移动：budgetNanos 内算不出精确路径时先显示近似路径，精确路径在后台算好后自动换上；不大于 0 时不限时
+     */
+    public void handleMouseMove(Point imagePoint, long budgetNanos) {
+        record(TraceRecorder.Type.MOVE, imagePoint);
+        if (editor.handleMouseMove(imagePoint, budgetNanos)) {
+            updatePreview();
         }
+    }
 
-//         计算是否可以闭合路径
-        Point target = currentSnappedPoint != null ? currentSnappedPoint : imagePoint;
-        if (isValidPoint(target)) {
-            try {
-                PixelNode start = getNode(lastConfirmedPoint);
-                PixelNode end = getNode(target);
-                List<PixelNode> livePath = PathPlanner.computeShortestPathToTarget(costGraph, start, end);
-
-                if (!livePath.isEmpty()) {
-                    // 检查是否足够接近起点可以闭合
-                    isClosable = firstPoint != null &&
-                            confirmedPaths.size() >= 1 &&
-                            target.distance(firstPoint) <= CLOSE_PATH_THRESHOLD;
-                }
-            } catch (Exception ex) {
-                mainFrame.getStatusLabel().setText("路径预览失败: " + ex.getMessage());
-            }
-        }
+    public void setFrameBudget(long budgetNanos) {
+        frameBudgetNanos = budgetNanos;
     }
 
-    // 右键撤销上一次操作
+    // 右键撤销上一次操作；多实例模式下当前轮廓还没有起点时，撤销上一个实例
     public void handleRightClick(Point imagePoint) {
-        if (isValidPoint(imagePoint)) {
-            undoLastConfirmedPath();
+        record(TraceRecorder.Type.UNDO, imagePoint);
+        if (multiInstance && !editor.hasStartPoint() && !instances.isEmpty()) {
+            int label = instances.removeLast();
+            mainFrame.getStatusLabel().setText("已撤销实例 " + label + "（剩余 " + instances.size() + " 个）");
+            updatePreview();
+            return;
+        }
+        if (editor.handleRightClick(imagePoint)) {
+            updatePreview();
         }
     }
-    
+
     /**
-     * 用临时路径和稳定状态更新预览
+     * 代价画笔：block 为 true 时屏蔽边缘，否则增强边缘
      */
-    private void updatePreviewWithPath(List<PixelNode> tempPath, boolean isStable) {
-        // 创建一个与原图大小相同的BufferedImage
-        BufferedImage tempDisplay = new BufferedImage(
-                mainFrame.getImageProcessor().getOriginalImage().getWidth(),
-                mainFrame.getImageProcessor().getOriginalImage().getHeight(),
-                BufferedImage.TYPE_INT_RGB);
-        
-        // 获取Graphics2D对象
-        Graphics2D g = tempDisplay.createGraphics();
-        // 将原图绘制到tempDisplay上
-        g.drawImage(mainFrame.getImageProcessor().getOriginalImage(), 0, 0, null);
-
-
-        // 首先绘制所有已确认的路径 (添加这部分代码)
-        for (List<PixelNode> path : confirmedPaths) {
-            for (PixelNode node : path) {
-                // 将已确认的路径上的点设置为红色
-                tempDisplay.setRGB(node.x, node.y, Color.RED.getRGB());
-            }
-        }
-
-        // 然后绘制临时路径
-        try {
-            if (tempPath != null) {
-                for (PixelNode node : tempPath) {
-                    // 将临时路径上的点设置为蓝色
-                    tempDisplay.setRGB(node.x, node.y, Color.BLUE.getRGB());
-                }
-            }
-        } catch (Exception e) {
+    public void handleBrush(Point imagePoint, boolean block) {
+        record(block ? TraceRecorder.Type.BLOCK : TraceRecorder.Type.BOOST, imagePoint);
+        if (editor.applyBrush(imagePoint, block)) {
+            updatePreview();
         }
+    }
 
-        // 绘制当前吸附点
-        if (currentSnappedPoint != null) {
-            // 先绘制黄色外圈（更大更明显）
-            g.setColor(new Color(255, 255, 0, 180));
-            g.fillOval(currentSnappedPoint.x - 6, currentSnappedPoint.y - 6, 13, 13);
+    /**
+     * 画笔模式切换：开启时维护锚点树，使画笔修改代价后的预览可以就地修复
+     */
+    public void setBrushActive(boolean active) {
+        editor.setAnchorTreeEnabled(active);
+    }
 
-            // 然后绘制黄色实心
-            g.setColor(Color.YELLOW);
-            g.fillOval(currentSnappedPoint.x - 4, currentSnappedPoint.y - 4, 9, 9);
-            System.out.println("Snapped Point: " + currentSnappedPoint);
-        }
+    /**
+     * 切换多实例模式
+     */
+    public void setMultiInstance(boolean multiInstance) {
+        this.multiInstance = multiInstance;
+    }
 
+    public boolean isMultiInstance() {
+        return multiInstance;
+    }
 
-        // 释放Graphics2D对象
-        g.dispose();
-        // 将tempDisplay设置为ImageIcon，并显示在mainFrame的ImageLabel上
-        mainFrame.getImageLabel().setIcon(new ImageIcon(tempDisplay));
+    public InstanceSession getInstances() {
+        return instances;
     }
-    
+
     /**
-     * 更新状态栏显示路径信息
+     * 绘制已完成实例的轮廓（橙色），只绘制可见区域内的点
      */
-    private void updateStatusBarForPath(List<PixelNode> path) {
-        final int MIN_PATH_LENGTH = 50;
-        StringBuilder status = new StringBuilder();
-        
-        if (path.size() >= MIN_PATH_LENGTH) {
-            if (stabilityTracker.isPathStable()) {
-                status.append("【路径稳定】");
-                if (suggestedNextPoint != null) {
-                    status.append(" ✓ 绿色点为建议点 - 按住Ctrl点击接受");
-                }
-            } else {
-                status.append("沿边缘移动可触发自动建议点");
+    private void paintInstances(Graphics2D g, Rectangle visible) {
+        if (instances.isEmpty()) return;
+        g.setColor(Color.ORANGE);
+        for (InstanceSession.Instance instance : instances.getInstances()) {
+            if (!instance.getBounds().intersects(visible)) continue;
+            for (ChainCode path : instance.getContour()) {
+                path.forEachPoint((x, y) -> {
+                    if (visible.contains(x, y)) g.fillRect(x, y, 1, 1);
+                });
             }
-            status.append(" | 路径长度: ").append(path.size());
-        } else {
-            status.append("继续沿边缘移动...(需要至少").append(MIN_PATH_LENGTH).append("个点)");
         }
-        
-        mainFrame.getStatusLabel().setText(status.toString());
     }
-    
+
     /**
-     * 重置所有路径和状态
+     * 预览变化后重绘：只记录要绘制的内容，由视口在重绘时叠加到原图上
      */
-    public void resetAll() {
-        lastConfirmedPoint = null;
-        confirmedPaths.clear();
-        firstPoint = null;
-        isClosable = false;
-        currentSnappedPoint = null;
-        suggestedNextPoint = null;
-        
-        stabilityTracker.resetStability();
-        
+    private void updatePreview() {
+        ImageViewport view = mainFrame.getImageView();
+        view.setImage(mainFrame.getImageProcessor().getOriginalImage());
+        view.setOverlayVisible(true);
+        view.repaint();
+    }
+
+    /**
+     * 重新显示原图（清除抠图结果）
+     */
+    private void updateDisplay() {
         if (mainFrame.getImageProcessor() != null) {
             mainFrame.getImageProcessor().updateDisplayImage();
         }
-        mainFrame.getStatusLabel().setText("请点击图像设置起点");
     }
 
-    public void undoLastConfirmedPath() {
-        if (!confirmedPaths.isEmpty()) {
-            // 移除最后一段路径
-            confirmedPaths.remove(confirmedPaths.size() - 1);
-
-            // 恢复上一个确认点
-            if (confirmedPaths.isEmpty()) {
-                lastConfirmedPoint = firstPoint = null;
-                mainFrame.getStatusLabel().setText("已撤销所有路径，请重新设置起点");
-            } else {
-                // 获取最新路径的终点作为 lastConfirmedPoint
-                List<PixelNode> lastPath = confirmedPaths.get(confirmedPaths.size() - 1);
-                PixelNode lastNode = lastPath.get(lastPath.size() - 1);
-                lastConfirmedPoint = new Point(lastNode.x, lastNode.y);
-                mainFrame.getStatusLabel().setText("已撤销上一个路径");
-            }
-
-            // 更新预览显示
-            updatePreviewWithPath(null, false);
-        } else {
-            mainFrame.getStatusLabel().setText("无可撤销路径");
+    /**
+     * 重置所有路径和状态
+     */
+    public void resetAll() {
+        if (recorder != null) {
+            recorder.reset();
         }
+        editor.resetAll();
+        updateDisplay();
     }
 
+    public void undoLastConfirmedPath() {
+        editor.undoLastConfirmedPath();
+        updatePreview();
+    }
 
     /**
-     * 将点坐标转换为图中的键
+     * 开始把送入本管理器的鼠标事件录制到轨迹文件，文件开头记录当前图片
      */
-    private String pointToKey(Point p) {
-        return p.x + "," + p.y;
+    public void startRecording(File file) throws IOException {
+        stopRecording();
+        recorder = new TraceRecorder(file);
+        File imageFile = mainFrame.getImageProcessor().getImageFile();
+        if (imageFile != null) {
+            recorder.image(imageFile);
+            if (editor.getGraph() != null) recorder.ready();
+        }
     }
-    
+
     /**
-     * 从图中获取指定点的节点
+     * 停止录制并关闭轨迹文件
      */
-    private PixelNode getNode(Point p) {
-        return costGraph.get(pointToKey(p));
+    public void stopRecording() {
+        if (recorder == null) return;
+        try {
+            recorder.close();
+        } catch (IOException ex) {
+            mainFrame.getStatusLabel().setText("轨迹文件写入失败: " + ex.getMessage());
+        }
+        recorder = null;
     }
-    
-    /**
-     * 判断点是否有效（在图中存在）
-     */
-    private boolean isValidPoint(Point p) {
-        return p != null && costGraph != null && costGraph.containsKey(pointToKey(p));
+
+    public boolean isRecording() {
+        return recorder != null;
     }
-    
+
+    private void record(TraceRecorder.Type type, Point imagePoint) {
+        if (recorder != null && imagePoint != null) {
+            recorder.event(type, imagePoint.x, imagePoint.y);
+        }
+    }
+
     /**
      * Getter方法
      */
+    public List<ChainCode> getConfirmedPaths() {
+        return editor.getConfirmedPaths();
+    }
+
     public boolean hasStartPoint() {
-        return lastConfirmedPoint != null;
+        return editor.hasStartPoint();
     }
-    
+
     public boolean hasSnappedPoint() {
-        return currentSnappedPoint != null;
+        return editor.hasSnappedPoint();
     }
-    
+
     public Point getCurrentSnappedPoint() {
-        return currentSnappedPoint;
+        return editor.getCurrentSnappedPoint();
     }
-    
+
     public boolean hasSuggestedPoint() {
-        return suggestedNextPoint != null;
+        return editor.hasSuggestedPoint();
     }
-    
+
     public Point getSuggestedPoint() {
-        return suggestedNextPoint;
+        return editor.getSuggestedPoint();
     }
 }
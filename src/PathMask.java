@@ -0,0 +1,117 @@
+import java.awt.*;
+import java.util.List;
+
+/**
+ * 路径掩码：把闭合轮廓转换为区域掩码（BitMask）
+ * 先把路径画成边界，再从路径质心开始 4 邻域洪水填充，边界本身不属于掩码
+ * 填充按行进行：每次把种子所在的、两侧以边界为界的整段一次填满，再在上下两行的对应区间里找新的种子，行内查找都按整字进行
+ */
+public class PathMask {
+
+    /**
+     * 由闭合轮廓生成 width x height 的掩码，mask.get(x, y) 为 true 表示在区域内
+     */
+    public static BitMask fromPaths(List<ChainCode> paths, int width, int height) {
+        return fromPaths(paths, new Rectangle(0, 0, width, height));
+    }
+
+    /**
+     * 只在 region 范围内生成掩码，mask.get(x, y) 对应图像像素 (region.x + x, region.y + y)
+     * region 包含整条轮廓、且种子点落在轮廓内部时，填充不会越过轮廓，结果与整幅图的掩码相同；内存只与 region 成正比
+     */
+    public static BitMask fromPaths(List<ChainCode> paths, Rectangle region) {
+        // 绘制边界
+        BitMask boundary = new BitMask(region.width, region.height);
+        for (ChainCode path : paths) {
+            path.forEachPoint((x, y) -> {
+                if (region.contains(x, y)) boundary.set(x - region.x, y - region.y);
+            });
+        }
+
+        // 创建掩码并填充
+        BitMask mask = new BitMask(region.width, region.height);
+        Point seedPoint = findSeedPoint(paths);
+        if (seedPoint != null) {
+            floodFill(seedPoint.x - region.x, seedPoint.y - region.y, boundary, mask);
+        }
+        return mask;
+    }
+
+    /**
+     * 轮廓的外接矩形，没有点时为 null
+     */
+    public static Rectangle bounds(List<ChainCode> paths) {
+        int[] box = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        for (ChainCode path : paths) {
+            path.forEachPoint((x, y) -> {
+                box[0] = Math.min(box[0], x);
+                box[1] = Math.min(box[1], y);
+                box[2] = Math.max(box[2], x);
+                box[3] = Math.max(box[3], y);
+            });
+        }
+        if (box[0] > box[2]) return null;
+        return new Rectangle(box[0], box[1], box[2] - box[0] + 1, box[3] - box[1] + 1);
+    }
+
+    /**
+     * 寻找种子点（使用路径的质心）
+     */
+    private static Point findSeedPoint(List<ChainCode> paths) {
+        long[] sum = new long[3]; // x 之和、y 之和、点数
+
+        for (ChainCode path : paths) {
+            path.forEachPoint((x, y) -> {
+                sum[0] += x;
+                sum[1] += y;
+                sum[2]++;
+            });
+        }
+
+        if (sum[2] > 0) {
+            return new Point((int) (sum[0] / sum[2]), (int) (sum[1] / sum[2]));
+        }
+
+        return null;
+    }
+
+    /**
+     * 按行的洪水填充，栈中依次保存种子的 x、y
+     * 未填充的非边界像素所在的整段（两侧到边界为止）要么全部已填充、要么全部未填充，因此每段只需检查一个像素
+     */
+    private static void floodFill(int x, int y, BitMask boundary, BitMask mask) {
+        int width = boundary.getWidth();
+        int height = boundary.getHeight();
+        if (x < 0 || x >= width || y < 0 || y >= height || boundary.get(x, y)) return;
+
+        IntList stack = new IntList();
+        stack.add(x);
+        stack.add(y);
+        while (!stack.isEmpty()) {
+            int sy = stack.pop();
+            int sx = stack.pop();
+            if (mask.get(sx, sy)) continue;
+            int left = boundary.previousSetBit(sx, sy) + 1;
+            int right = boundary.nextSetBit(sx, sy);
+            mask.setRange(sy, left, right);
+            if (sy > 0) pushSeeds(left, right, sy - 1, boundary, mask, stack);
+            if (sy + 1 < height) pushSeeds(left, right, sy + 1, boundary, mask, stack);
+        }
+    }
+
+    /**
+     * 在第 y 行的 [left, right) 内，为每段未填充的非边界像素压入一个种子
+     */
+    private static void pushSeeds(int left, int right, int y, BitMask boundary, BitMask mask, IntList stack) {
+        int x = left;
+        while (x < right) {
+            x = boundary.nextClearBit(x, y);
+            if (x >= right) return;
+            if (!mask.get(x, y)) {
+                stack.add(x);
+                stack.add(y);
+            }
+            x = boundary.nextSetBit(x, y);
+        }
+    }
+}
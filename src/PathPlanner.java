@@ -1,10 +1,15 @@
 import java.util.*;
 import java.util.List;
+import java.util.function.IntPredicate;
 
 
 public class PathPlanner {
 
 
+    /**
+     * @deprecated 静态可变状态，多线程下结果不可靠；请使用 plan 返回的 PlannedPath.isStable()
+     */
+    @Deprecated
     public static boolean stabled = false; // 是否稳定
     // 路径信息类
     static class PathInfo {
@@ -19,6 +24,11 @@ public class PathPlanner {
     }
 
 
+    /**
+     * 在对象图上计算最短路径（旧接口，仅用于与网格图结果对照）
+     * @deprecated 请使用 plan(GridGraph, int, int)
+     */
+    @Deprecated
     public static List<PixelNode> computeShortestPathToTarget(
             Map<String, PixelNode> graph, PixelNode seed, PixelNode target) {
         stabled=false;
@@ -91,6 +101,270 @@ public class PathPlanner {
     }
 
 
+    /**
+     * 在网格图上计算以 root 为根的完整最短路径树（串行 Dijkstra）
+     * 标签按 (dist, hops) 字典序比较，结果与 DeltaSteppingPlanner 的并行结果逐项一致
+     */
+    public static ShortestPathTree computeShortestPathTree(GridGraph graph, int root) {
+        ShortestPathTree tree = new ShortestPathTree(root, graph.size());
+        boolean[] settled = new boolean[graph.size()];
+        SearchHeap heap = new SearchHeap(1024);
+        heap.push(0.0, 0, root);
+
+        while (!heap.isEmpty()) {
+            int u = heap.peekNode();
+            double du = heap.peekKey();
+            int hu = heap.peekHops();
+            heap.pop();
+            // 跳过过期条目
+            if (settled[u] || du != tree.dist[u] || hu != tree.hops[u]) continue;
+            settled[u] = true;
+
+            for (int dir = 0; dir < 8; dir++) {
+                int v = graph.neighbor(u, dir);
+                if (v < 0 || settled[v]) continue;
+                double d = du + graph.moveCost(u, dir);
+                int h = hu + 1;
+                if (tree.isBetter(v, d, h, u)) {
+                    boolean labelImproved = d != tree.dist[v] || h != tree.hops[v];
+                    tree.dist[v] = d;
+                    tree.hops[v] = h;
+                    tree.pred[v] = u;
+                    // 仅前驱变化时不需要重新入堆
+                    if (labelImproved) heap.push(d, h, v);
+                }
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * 边代价局部变化后就地修复最短路径树（动态单源最短路径），changed 为与变化的边相连的节点
+     * 1. increased 为 true 时，经过 changed 节点的树边可能变贵，这些树边下方的整棵子树标签作废；
+     * 2. 作废的节点和 changed 节点从仍然有效的邻居重新取标签后入堆，再按 Dijkstra 向外传播，
+     *    候选标签更优就更新，因此代价降低带来的改进也会传播出去；
+     * 标签比较规则与 computeShortestPathTree 相同，结果与在新代价上重新建树一致，工作量只与受影响的区域有关；
+     * 作废的节点超过一半时（例如画笔覆盖了根附近的树边）逐点修复不如直接重建，此时就地重新建树
+     * 返回重新出堆的节点数
+     */
+    public static int repairShortestPathTree(GridGraph graph, ShortestPathTree tree, int[] changed, boolean increased) {
+        IntList invalid = new IntList();
+        if (increased) {
+            IntList stack = new IntList();
+            for (int a : changed) {
+                // 以 a 为端点的树边：a 与前驱之间，以及 a 与各子节点之间
+                if (tree.pred[a] >= 0) stack.add(a);
+                for (int dir = 0; dir < 8; dir++) {
+                    int w = graph.neighbor(a, dir);
+                    if (w >= 0 && tree.pred[w] == a) stack.add(w);
+                }
+            }
+            // 子节点一定是邻居，因此沿邻居中前驱为自己的节点向下遍历子树
+            while (!stack.isEmpty()) {
+                int v = stack.pop();
+                if (tree.pred[v] < 0) continue;
+                for (int dir = 0; dir < 8; dir++) {
+                    int w = graph.neighbor(v, dir);
+                    if (w >= 0 && tree.pred[w] == v) stack.add(w);
+                }
+                tree.dist[v] = Double.POSITIVE_INFINITY;
+                tree.hops[v] = Integer.MAX_VALUE;
+                tree.pred[v] = -1;
+                invalid.add(v);
+                if (invalid.size() > graph.size() / 2) {
+                    tree.copyFrom(computeShortestPathTree(graph, tree.root));
+                    return graph.size();
+                }
+            }
+        }
+
+        SearchHeap heap = new SearchHeap(1024);
+        for (int i = 0; i < invalid.size(); i++) {
+            seedFromNeighbors(graph, tree, invalid.get(i), heap);
+        }
+        for (int v : changed) {
+            seedFromNeighbors(graph, tree, v, heap);
+        }
+        return propagate(graph, tree, heap);
+    }
+
+    /**
+     * 从堆中的节点向外传播标签，直到堆为空，返回出堆的有效节点数
+     * 节点的标签变好后会重新入堆，因此堆中初始标签只需是上界
+     */
+    private static int propagate(GridGraph graph, ShortestPathTree tree, SearchHeap heap) {
+        int settledCount = 0;
+        while (!heap.isEmpty()) {
+            int u = heap.peekNode();
+            double du = heap.peekKey();
+            int hu = heap.peekHops();
+            heap.pop();
+            // 跳过过期条目
+            if (du != tree.dist[u] || hu != tree.hops[u]) continue;
+            settledCount++;
+
+            for (int dir = 0; dir < 8; dir++) {
+                int v = graph.neighbor(u, dir);
+                if (v < 0) continue;
+                double d = du + graph.moveCost(u, dir);
+                int h = hu + 1;
+                if (tree.isBetter(v, d, h, u)) {
+                    boolean labelImproved = d != tree.dist[v] || h != tree.hops[v];
+                    tree.dist[v] = d;
+                    tree.hops[v] = h;
+                    tree.pred[v] = u;
+                    if (labelImproved) heap.push(d, h, v);
+                }
+            }
+        }
+        return settledCount;
+    }
+
+    /**
+     * 用邻居的标签更新节点 v 的标签，v 有标签时入堆
+     */
+    private static void seedFromNeighbors(GridGraph graph, ShortestPathTree tree, int v, SearchHeap heap) {
+        for (int dir = 0; dir < 8; dir++) {
+            int u = graph.neighbor(v, dir);
+            if (u < 0 || !tree.isReachable(u)) continue;
+            // 边代价对称，按 u 到 v 的方向计算，与建树时的累加方式一致
+            double d = tree.dist[u] + graph.moveCost(u, 7 - dir);
+            int h = tree.hops[u] + 1;
+            if (tree.isBetter(v, d, h, u)) {
+                tree.dist[v] = d;
+                tree.hops[v] = h;
+                tree.pred[v] = u;
+            }
+        }
+        if (tree.isReachable(v)) heap.push(tree.dist[v], tree.hops[v], v);
+    }
+
+
+    /**
+     * 在网格图上计算 source 到 target 的最短路径，返回路径及其统计信息
+     * 可重入、线程安全：搜索状态借自 SearchContext 池，不读写任何静态可变字段
+     */
+    public static PlannedPath plan(GridGraph graph, int source, int target) {
+        return plan(graph, source, target, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * 同上，upperBound 为已知的路径代价上界（例如上一帧路径在新代价下的代价），距离超过上界的节点不再入堆
+     * 找不到路径时返回空路径，代价为正无穷
+     */
+    public static PlannedPath plan(GridGraph graph, int source, int target, double upperBound) {
+        return plan(graph, source, target, upperBound, null);
+    }
+
+    /**
+     * 同上，只在 allowed 接受的节点上搜索（例如超像素走廊），allowed 为 null 时不限制
+     */
+    public static PlannedPath plan(GridGraph graph, int source, int target, double upperBound, IntPredicate allowed) {
+        long start = System.nanoTime();
+        SearchContext context = SearchContext.acquire(graph.size());
+        try {
+            SearchHeap heap = context.heap;
+            context.start(source);
+            int settledCount = 0;
+
+            while (!heap.isEmpty()) {
+                int u = heap.peekNode();
+                double du = heap.peekKey();
+                int hu = heap.peekHops();
+                heap.pop();
+                // 跳过过期条目
+                if (context.isSettled(u) || du != context.dist[u] || hu != context.hops[u]) continue;
+                context.settle(u);
+                settledCount++;
+                // 到达终点，立即返回
+                if (u == target) {
+                    return new PlannedPath(context.pathTo(target), du, settledCount, System.nanoTime() - start);
+                }
+
+                for (int dir = 0; dir < 8; dir++) {
+                    int v = graph.neighbor(u, dir);
+                    if (v < 0 || context.isSettled(v)) continue;
+                    if (allowed != null && !allowed.test(v)) continue;
+                    double d = du + graph.moveCost(u, dir);
+                    if (d > upperBound) continue;
+                    context.relax(v, d, hu + 1, u);
+                }
+            }
+            return new PlannedPath(new int[0], Double.POSITIVE_INFINITY, settledCount, System.nanoTime() - start);
+        } finally {
+            SearchContext.release(context);
+        }
+    }
+
+    /**
+     * 用地标下界做 A* 搜索（ALT），路径代价与 plan(graph, source, target) 相同，展开的节点通常少得多
+     * landmarks 为 null 或已不对应 graph 的当前代价时退回普通搜索
+     * float 压缩的地标距离使下界只是可采纳、未必严格一致，因此节点的标签变好后允许重新展开，
+     * 过期条目按 (键, 步数) 是否与当前标签一致来识别
+     */
+    public static PlannedPath plan(GridGraph graph, int source, int target, LandmarkIndex landmarks) {
+        if (landmarks == null || !landmarks.isValidFor(graph)) return plan(graph, source, target);
+        long start = System.nanoTime();
+        double[] toTarget = landmarks.distancesTo(target);
+        SearchContext context = SearchContext.acquire(graph.size());
+        try {
+            SearchHeap heap = context.heap;
+            // 启发值在节点首次访问时计算一次，之后入堆和识别过期条目都直接读取
+            double[] estimates = context.estimates();
+            estimates[source] = landmarks.estimate(source, toTarget);
+            context.start(source, estimates[source]);
+            int settledCount = 0;
+
+            while (!heap.isEmpty()) {
+                int u = heap.peekNode();
+                double key = heap.peekKey();
+                int hu = heap.peekHops();
+                heap.pop();
+                double du = context.dist[u];
+                // 跳过过期条目
+                if (hu != context.hops[u] || key != du + estimates[u]) continue;
+                settledCount++;
+                if (u == target) {
+                    return new PlannedPath(context.pathTo(target), du, settledCount, System.nanoTime() - start);
+                }
+
+                for (int dir = 0; dir < 8; dir++) {
+                    int v = graph.neighbor(u, dir);
+                    if (v < 0) continue;
+                    if (!context.isVisited(v)) estimates[v] = landmarks.estimate(v, toTarget);
+                    context.relax(v, du + graph.moveCost(u, dir), hu + 1, u, estimates[v]);
+                }
+            }
+            return new PlannedPath(new int[0], Double.POSITIVE_INFINITY, settledCount, System.nanoTime() - start);
+        } finally {
+            SearchContext.release(context);
+        }
+    }
+
+    /**
+     * 按网格图的边代价累加路径代价
+     */
+    public static double pathCost(GridGraph graph, int[] path) {
+        double cost = 0;
+        for (int i = 1; i < path.length; i++) {
+            int dir = directionBetween(graph, path[i - 1], path[i]);
+            if (dir < 0) return Double.POSITIVE_INFINITY;
+            cost += graph.moveCost(path[i - 1], dir);
+        }
+        return cost;
+    }
+
+    /**
+     * 求 from 到相邻节点 to 的方向编号，不相邻时返回 -1
+     */
+    static int directionBetween(GridGraph graph, int from, int to) {
+        for (int dir = 0; dir < 8; dir++) {
+            if (graph.neighbor(from, dir) == to) return dir;
+        }
+        return -1;
+    }
+
+
     // 判断两个节点是否为对角线关系
     private static boolean isDiagonal(PixelNode a, PixelNode b) {
         return a.x != b.x && a.y != b.y;
@@ -30,8 +30,21 @@ public class PathStabilityTracker {
         }
 
         // 通过PathAnalyzer分析当前路径稳定性
-        boolean currentlyStable = pathAnalyzer.isPathStable(path);
-        
+        return updateStability(pathAnalyzer.isPathStable(path));
+    }
+    
+    /**
+     * 分析网格图上路径的稳定性
+     */
+    public boolean analyzePathStability(GridGraph graph, PlannedPath path) {
+        if (!pathAnalyzer.isPathValid(path.getNodes())) {
+            resetStability();
+            return false;
+        }
+        return updateStability(pathAnalyzer.isPathStable(graph, path.getNodes()));
+    }
+    
+    private boolean updateStability(boolean currentlyStable) {
         // 平滑稳定性判断 - 需要连续几帧都稳定才真正标记为稳定
         if (currentlyStable) {
             stableFrameCount++;
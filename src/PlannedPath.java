@@ -0,0 +1,59 @@
+/**
+ * 一次路径规划的结果：路径本身及其统计信息，不可变，可在线程间传递
+ */
+public class PlannedPath {
+    // 稳定判定参数，与原 PathPlanner.stabled 的判定一致
+    private static final double STABLE_AVG_COST = 1.6;
+    private static final int STABLE_MIN_POINTS = 50;
+
+    private final int[] nodes; // 网格图节点编号，从起点到终点
+    private final double cost; // 路径总代价，不可达时为正无穷
+    private final int settledNodes; // 出堆（确定最短距离）的节点数
+    private final long nanos; // 规划耗时
+
+    PlannedPath(int[] nodes, double cost, int settledNodes, long nanos) {
+        this.nodes = nodes;
+        this.cost = cost;
+        this.settledNodes = settledNodes;
+        this.nanos = nanos;
+    }
+
+    public int[] getNodes() {
+        return nodes;
+    }
+
+    public boolean isEmpty() {
+        return nodes.length == 0;
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    public int getSettledNodes() {
+        return settledNodes;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * 平均代价足够低且足够长的路径视为稳定
+     */
+    public boolean isStable() {
+        return nodes.length > STABLE_MIN_POINTS && cost / nodes.length < STABLE_AVG_COST;
+    }
+
+    @Override
+    public String toString() {
+        return "Path length: " + nodes.length +
+                ", Cost: " + cost +
+                ", Settled: " + settledNodes +
+                ", Time: " + nanos / 1_000_000.0 + " ms";
+    }
+}
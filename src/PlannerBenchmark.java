@@ -0,0 +1,237 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 最短路径规划基准测试
+ * 用法: java PlannerBenchmark [图片路径] [放大倍数] [delta] [最大线程数]
+ * 另外统计多特征代价引擎 CostFeatureEngine 相对原有 getCostImage 的耗时
+ * 1. 串行 Dijkstra 计算完整最短路径树作为基准；
+ * 2. 分别用 1, 2, 4, ... 个线程运行 DeltaSteppingPlanner，校验结果逐项一致并输出耗时与加速比；
+ * 3. 图片较小时，再与原有 PathPlanner.computeShortestPathToTarget 的路径代价进行抽样比对；
+ * 4. 构建超像素图，比较随机长距离查询在全图搜索和超像素粗规划下的耗时、展开节点数和代价；
+ * 5. 代价图分别放在直接内存和内存映射文件中，校验最短路径树与堆上代价图一致并输出耗时；
+ * 6. ALT 地标预处理：输出预处理耗时和内存，比较随机查询在 Dijkstra 和地标 A* 下的耗时、展开节点数，校验代价一致。
+ */
+public class PlannerBenchmark {
+    private static final int REPEAT = 3; // 每种配置重复次数，取最短耗时
+    private static final int LEGACY_MAX_PIXELS = 400_000; // 超过该像素数时跳过对象图比对
+    private static final int LEGACY_SAMPLES = 5; // 与对象图比对的抽样目标数
+    private static final int SUPERPIXEL_CELL = 10; // 超像素种子间距
+    private static final int SUPERPIXEL_SAMPLES = 5; // 超像素比对的抽样查询数
+    private static final int LANDMARK_SAMPLES = 20; // 地标比对的随机查询数
+    private static final double COST_TOLERANCE = 1e-9; // 代价比对的相对误差
+
+    public static void main(String[] args) throws Exception {
+        String imagePath = args.length > 0 ? args[0] : "Images/img1.png";
+        int scale = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        double delta = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+        int maxThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        CostGraphGenerator generator = new CostGraphGenerator(imagePath);
+        long costStart = System.nanoTime();
+        generator.getCostImage();
+        long costTime = System.nanoTime() - costStart;
+        long planesStart = System.nanoTime();
+        generator.getLinkCostPlanes();
+        long planesTime = System.nanoTime() - planesStart;
+        System.out.printf("getCostImage: %.1f ms, 多特征边代价平面: %.1f ms%n", costTime / 1e6, planesTime / 1e6);
+
+        double[][] costImage = upscale(generator.getCostImage(), scale);
+        GridGraph graph = new GridGraph(costImage);
+        int root = graph.index(graph.getWidth() / 2, graph.getHeight() / 2);
+        System.out.printf("图片: %s, 尺寸: %d x %d (%.1f MP), delta = %.2f%n",
+                imagePath, graph.getWidth(), graph.getHeight(), graph.size() / 1e6, delta);
+
+        // 串行基准
+        ShortestPathTree expected = null;
+        long sequentialTime = Long.MAX_VALUE;
+        for (int r = 0; r < REPEAT; r++) {
+            long start = System.nanoTime();
+            expected = PathPlanner.computeShortestPathTree(graph, root);
+            sequentialTime = Math.min(sequentialTime, System.nanoTime() - start);
+        }
+        System.out.printf("串行 Dijkstra: %8.1f ms%n", sequentialTime / 1e6);
+
+        compareOffHeap(costImage, root, expected, sequentialTime);
+
+        // 并行 delta-stepping，线程数按 2 的幂增长
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            DeltaSteppingPlanner planner = new DeltaSteppingPlanner(pool, delta);
+            long best = Long.MAX_VALUE;
+            boolean same = true;
+            for (int r = 0; r < REPEAT; r++) {
+                long start = System.nanoTime();
+                ShortestPathTree tree = planner.computeShortestPathTree(graph, root);
+                best = Math.min(best, System.nanoTime() - start);
+                same &= tree.sameAs(expected);
+            }
+            pool.shutdown();
+            System.out.printf("delta-stepping %2d 线程: %8.1f ms, 加速比 %.2f, 结果%s%n",
+                    threads, best / 1e6, (double) sequentialTime / best, same ? "一致" : "不一致!");
+            if (!same) System.exit(1);
+            if (threads == maxThreads) break;
+        }
+
+        if (graph.size() <= LEGACY_MAX_PIXELS) {
+            compareWithLegacy(generator, costImage, graph, expected);
+        }
+        compareWithSuperpixels(graph);
+        compareWithLandmarks(graph);
+    }
+
+    /**
+     * 比较 Dijkstra 与 ALT：一次预处理后对同一张图做随机点对查询，汇总耗时和展开节点数
+     */
+    private static void compareWithLandmarks(GridGraph graph) {
+        long buildStart = System.nanoTime();
+        LandmarkIndex landmarks = LandmarkIndex.build(graph, LandmarkIndex.DEFAULT_LANDMARKS);
+        long buildTime = System.nanoTime() - buildStart;
+        System.out.printf("ALT 预处理: %d 个地标, %.1f ms, %.1f MB%n", landmarks.getLandmarkCount(),
+                buildTime / 1e6, landmarks.bytes() / 1e6);
+        Random random = new Random(11);
+        int[] sources = new int[LANDMARK_SAMPLES], targets = new int[LANDMARK_SAMPLES];
+        for (int s = 0; s < LANDMARK_SAMPLES; s++) {
+            sources[s] = random.nextInt(graph.size());
+            targets[s] = random.nextInt(graph.size());
+        }
+        long dijkstraNanos = 0, altNanos = 0, dijkstraNodes = 0, altNodes = 0;
+        // 第一轮预热，只统计第二轮
+        for (int round = 0; round < 2; round++) {
+            dijkstraNanos = altNanos = dijkstraNodes = altNodes = 0;
+            for (int s = 0; s < LANDMARK_SAMPLES; s++) {
+                PlannedPath exact = PathPlanner.plan(graph, sources[s], targets[s]);
+                PlannedPath alt = PathPlanner.plan(graph, sources[s], targets[s], landmarks);
+                if (Math.abs(alt.getCost() - exact.getCost()) > COST_TOLERANCE * exact.getCost()) {
+                    System.out.printf("ALT 代价不一致! %d -> %d: Dijkstra = %.9f, ALT = %.9f%n",
+                            sources[s], targets[s], exact.getCost(), alt.getCost());
+                    System.exit(1);
+                }
+                dijkstraNanos += exact.getNanos();
+                altNanos += alt.getNanos();
+                dijkstraNodes += exact.getSettledNodes();
+                altNodes += alt.getSettledNodes();
+            }
+        }
+        System.out.printf("ALT 比对 (%d 个查询): Dijkstra %.1f ms / %d 节点, ALT %.1f ms / %d 节点, 加速比 %.2f, 代价一致%n",
+                LANDMARK_SAMPLES, dijkstraNanos / 1e6 / LANDMARK_SAMPLES, dijkstraNodes / LANDMARK_SAMPLES,
+                altNanos / 1e6 / LANDMARK_SAMPLES, altNodes / LANDMARK_SAMPLES, (double) dijkstraNanos / altNanos);
+        System.out.printf("ALT 预处理在 %.1f 个查询后收回成本%n",
+                buildTime / Math.max(1.0, (double) (dijkstraNanos - altNanos) / LANDMARK_SAMPLES));
+    }
+
+    /**
+     * 在堆外代价图上重新计算最短路径树，与堆上结果比较
+     */
+    private static void compareOffHeap(double[][] costImage, int root, ShortestPathTree expected, long heapTime) throws Exception {
+        OffHeapCostMap direct = OffHeapCostMap.copyOf(costImage);
+        OffHeapCostMap mapped = null;
+        Path file = Files.createTempFile("costmap", ".bin");
+        try {
+            OffHeapCostMap.write(direct, file);
+            mapped = OffHeapCostMap.map(file, direct.getWidth(), direct.getHeight());
+            for (CostMap costMap : List.of(direct, mapped)) {
+                GridGraph graph = new GridGraph(costMap);
+                long best = Long.MAX_VALUE;
+                ShortestPathTree tree = null;
+                for (int r = 0; r < REPEAT; r++) {
+                    long start = System.nanoTime();
+                    tree = PathPlanner.computeShortestPathTree(graph, root);
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                boolean same = tree.sameAs(expected);
+                System.out.printf("%s 代价图: %8.1f ms (堆上的 %.2f 倍), 结果%s%n", costMap == direct ? "直接内存" : "内存映射",
+                        best / 1e6, (double) best / heapTime, same ? "一致" : "不一致!");
+                if (!same) System.exit(1);
+            }
+        } finally {
+            // 先解除映射再删除文件，Windows 上仍被映射的文件不能删除
+            direct.close();
+            if (mapped != null) mapped.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * 比较全图搜索与超像素粗规划：起点和终点分别取自图像左右两侧，保证是长距离查询
+     */
+    private static void compareWithSuperpixels(GridGraph graph) {
+        long buildStart = System.nanoTime();
+        SuperpixelGraph superpixels = SuperpixelGraph.build(graph, SUPERPIXEL_CELL);
+        System.out.printf("超像素图: %d 个区域, %d 条分界线 (区域数为像素数的 1/%.0f), 构建 %.1f ms%n",
+                superpixels.getRegionCount(), superpixels.getBoundaryCount(),
+                (double) graph.size() / superpixels.getRegionCount(), (System.nanoTime() - buildStart) / 1e6);
+        Random random = new Random(7);
+        int quarter = graph.getWidth() / 4;
+        for (int s = 0; s < SUPERPIXEL_SAMPLES; s++) {
+            int source = graph.index(random.nextInt(quarter), random.nextInt(graph.getHeight()));
+            int target = graph.index(graph.getWidth() - 1 - random.nextInt(quarter), random.nextInt(graph.getHeight()));
+            PlannedPath exact = PathPlanner.plan(graph, source, target);
+            PlannedPath coarse = superpixels.route(source, target);
+            System.out.printf("超像素比对: 全图 %.1f ms / %d 节点, 超像素 %.1f ms / %d 节点, 代价比 %.4f%n",
+                    exact.getNanos() / 1e6, exact.getSettledNodes(), coarse.getNanos() / 1e6, coarse.getSettledNodes(),
+                    coarse.getCost() / exact.getCost());
+        }
+    }
+
+    /**
+     * 与原有基于对象图的 PathPlanner 比较若干随机目标的路径代价
+     */
+    @SuppressWarnings("deprecation") // 有意调用已弃用的对象图规划器，作为新实现的正确性基准
+    private static void compareWithLegacy(CostGraphGenerator generator, double[][] costImage,
+                                          GridGraph graph, ShortestPathTree tree) {
+        Map<String, PixelNode> objectGraph = generator.costImageToGraph(costImage);
+        PixelNode seed = objectGraph.get(graph.x(tree.getRoot()) + "," + graph.y(tree.getRoot()));
+        Random random = new Random(42);
+        for (int s = 0; s < LEGACY_SAMPLES; s++) {
+            int tx = random.nextInt(graph.getWidth());
+            int ty = random.nextInt(graph.getHeight());
+            List<PixelNode> path = PathPlanner.computeShortestPathToTarget(objectGraph, seed, objectGraph.get(tx + "," + ty));
+            double legacyCost = pathCost(path);
+            double treeCost = tree.distanceTo(graph.index(tx, ty));
+            System.out.printf("对象图比对 (%d,%d): PathPlanner = %.6f, 最短路径树 = %.6f %s%n",
+                    tx, ty, legacyCost, treeCost, legacyCost == treeCost ? "一致" : "不一致!");
+            if (legacyCost != treeCost) System.exit(1);
+        }
+    }
+
+    /**
+     * 按 PathPlanner 的方式累加路径代价
+     */
+    private static double pathCost(List<PixelNode> path) {
+        double cost = 0;
+        for (int i = 1; i < path.size(); i++) {
+            PixelNode prev = path.get(i - 1);
+            PixelNode curr = path.get(i);
+            for (PixelNode.Neighbor neighbor : prev.neighbors) {
+                if (neighbor.node == curr) {
+                    double moveCost = neighbor.link_cost;
+                    if (prev.x != curr.x && prev.y != curr.y) moveCost *= Math.sqrt(2);
+                    cost += moveCost;
+                    break;
+                }
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * 最近邻放大代价图，用于在小图片上模拟大图
+     */
+    private static double[][] upscale(double[][] costImage, int scale) {
+        if (scale <= 1) return costImage;
+        int width = costImage.length * scale;
+        int height = costImage[0].length * scale;
+        double[][] result = new double[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                result[x][y] = costImage[x / scale][y / scale];
+            }
+        }
+        return result;
+    }
+}
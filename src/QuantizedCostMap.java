@@ -0,0 +1,49 @@
+/**
+ * 量化代价图：代价取值在 [0, 1] 内，按 16 位无符号整数存放在一维 short 数组中，每像素 2 字节，是 ArrayCostMap 的四分之一
+ * 量化步长为 1/65535，单个节点代价的误差不超过半个步长，规划出的路径与 double 代价基本相同
+ */
+public class QuantizedCostMap implements CostMap {
+    private static final int LEVELS = 0xffff; // 最大量化值
+    private static final double STEP = 1.0 / LEVELS;
+
+    private final int width;
+    private final int height;
+    private final short[] data;
+
+    public QuantizedCostMap(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.data = new short[Math.multiplyExact(width, height)];
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public double get(int index) {
+        return (data[index] & 0xffff) * STEP;
+    }
+
+    public void set(int index, double value) {
+        data[index] = (short) Math.round(Math.max(0, Math.min(1, value)) * LEVELS);
+    }
+
+    /**
+     * 用代价矩阵中的值覆盖区域 [x0, x1) x [y0, y1)，超出 [0, 1] 的值截断
+     */
+    public void copyRegion(double[][] costImage, int x0, int y0, int x1, int y1) {
+        for (int x = x0; x < x1; x++) {
+            double[] column = costImage[x];
+            for (int y = y0; y < y1; y++) {
+                set(x * height + y, column[y]);
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.DirectColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * 图片一个矩形区域的像素值，按通道分平面、每个平面按行存储，取值统一换算到 [0, 255]（浮点，不截断精度）
+ * 常见的栅格布局直接读取数据缓冲区，不经过 getRGB 的逐像素颜色模型转换：
+ * 1. 灰度（8 位 TYPE_BYTE_GRAY、16 位 TYPE_USHORT_GRAY 及其它位深）：1 个通道，16 位图保留全部精度；
+ * 2. 分量交错的彩色（TYPE_3BYTE_BGR、TYPE_4BYTE_ABGR、16 位 RGB 等）：3 个通道，按 R、G、B 顺序；
+ * 3. 打包整型（TYPE_INT_RGB、TYPE_INT_ARGB、TYPE_INT_BGR）：3 个通道；
+ * 4. 调色板（TYPE_BYTE_INDEXED、TYPE_BYTE_BINARY）：按调色板查表，调色板全为灰色时为 1 个通道；
+ * 其它布局（预乘 alpha、非 sRGB 色彩空间等）回退到 getRGB，得到 3 个通道
+ * 灰度图读的是存储的亮度值；getRGB 会把线性灰度转换到 sRGB，压缩暗部的层次，因此直接读取的代价更准确
+ */
+final class RasterTile {
+    final int width; // 区域宽度
+    final int height; // 区域高度
+    final float[][] bands; // bands[c][row * width + col]，1 个（灰度）或 3 个（R、G、B）通道
+
+    private RasterTile(int width, int height, int channels) {
+        this.width = width;
+        this.height = height;
+        this.bands = new float[channels][width * height];
+    }
+
+    int channels() {
+        return bands.length;
+    }
+
+    /**
+     * 读取图片区域 [x0, x0 + w) x [y0, y0 + h)
+     */
+    static RasterTile read(BufferedImage img, int x0, int y0, int w, int h) {
+        ColorModel cm = img.getColorModel();
+        Raster raster = img.getRaster();
+        SampleModel sm = raster.getSampleModel();
+        DataBuffer db = raster.getDataBuffer();
+        int type = cm.getColorSpace().getType();
+
+        if (cm instanceof IndexColorModel) {
+            return readIndexed(raster, (IndexColorModel) cm, x0, y0, w, h);
+        }
+        if (cm instanceof ComponentColorModel && sm instanceof ComponentSampleModel && !cm.isAlphaPremultiplied()
+                && (db instanceof DataBufferByte || db instanceof DataBufferUShort)
+                && (type == ColorSpace.TYPE_GRAY || type == ColorSpace.TYPE_RGB && cm.getColorSpace().isCS_sRGB())) {
+            return readComponents(raster, (ComponentSampleModel) sm, cm, x0, y0, w, h);
+        }
+        if (cm instanceof DirectColorModel && sm instanceof SinglePixelPackedSampleModel && db instanceof DataBufferInt
+                && !cm.isAlphaPremultiplied() && cm.getColorSpace().isCS_sRGB() && is8BitPacked((DirectColorModel) cm)) {
+            return readPacked(raster, (SinglePixelPackedSampleModel) sm, (DataBufferInt) db, x0, y0, w, h);
+        }
+
+        // 通用回退
+        RasterTile tile = new RasterTile(w, h, 3);
+        int[] rgb = img.getRGB(x0, y0, w, h, null, 0, w);
+        for (int i = 0; i < rgb.length; i++) {
+            tile.bands[0][i] = (rgb[i] >> 16) & 0xff;
+            tile.bands[1][i] = (rgb[i] >> 8) & 0xff;
+            tile.bands[2][i] = rgb[i] & 0xff;
+        }
+        return tile;
+    }
+
+    /**
+     * 分量交错或分平面存储的 8/16 位样本：灰度取第 0 个分量，彩色取前 3 个分量（alpha 在最后，忽略）
+     */
+    private static RasterTile readComponents(Raster raster, ComponentSampleModel sm, ColorModel cm,
+                                             int x0, int y0, int w, int h) {
+        int channels = cm.getColorSpace().getType() == ColorSpace.TYPE_GRAY ? 1 : 3;
+        RasterTile tile = new RasterTile(w, h, channels);
+        DataBuffer db = raster.getDataBuffer();
+        int pixelStride = sm.getPixelStride();
+        int scanlineStride = sm.getScanlineStride();
+        int tx = raster.getSampleModelTranslateX(), ty = raster.getSampleModelTranslateY();
+        for (int c = 0; c < channels; c++) {
+            int bank = sm.getBankIndices()[c];
+            int base = db.getOffsets()[bank] + sm.getBandOffsets()[c];
+            float scale = 255f / ((1 << cm.getComponentSize(c)) - 1);
+            float[] band = tile.bands[c];
+            if (db instanceof DataBufferByte) {
+                byte[] data = ((DataBufferByte) db).getData(bank);
+                for (int row = 0; row < h; row++) {
+                    int offset = base + (y0 + row - ty) * scanlineStride + (x0 - tx) * pixelStride;
+                    for (int col = 0, i = row * w; col < w; col++, i++, offset += pixelStride) {
+                        band[i] = (data[offset] & 0xff) * scale;
+                    }
+                }
+            } else {
+                short[] data = ((DataBufferUShort) db).getData(bank);
+                for (int row = 0; row < h; row++) {
+                    int offset = base + (y0 + row - ty) * scanlineStride + (x0 - tx) * pixelStride;
+                    for (int col = 0, i = row * w; col < w; col++, i++, offset += pixelStride) {
+                        band[i] = (data[offset] & 0xffff) * scale;
+                    }
+                }
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * 每个像素一个 int 的打包格式，按颜色模型的掩码取出 R、G、B
+     */
+    private static RasterTile readPacked(Raster raster, SinglePixelPackedSampleModel sm, DataBufferInt db,
+                                         int x0, int y0, int w, int h) {
+        RasterTile tile = new RasterTile(w, h, 3);
+        int[] data = db.getData();
+        int[] shifts = sm.getBitOffsets();
+        int scanlineStride = sm.getScanlineStride();
+        int base = db.getOffset() + (y0 - raster.getSampleModelTranslateY()) * scanlineStride
+                + x0 - raster.getSampleModelTranslateX();
+        int rs = shifts[0], gs = shifts[1], bs = shifts[2];
+        float[] r = tile.bands[0], g = tile.bands[1], b = tile.bands[2];
+        for (int row = 0; row < h; row++) {
+            int offset = base + row * scanlineStride;
+            for (int col = 0, i = row * w; col < w; col++, i++) {
+                int p = data[offset + col];
+                r[i] = (p >>> rs) & 0xff;
+                g[i] = (p >>> gs) & 0xff;
+                b[i] = (p >>> bs) & 0xff;
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * 调色板图片：读取索引后查表，调色板全为灰色时只保留一个通道
+     */
+    private static RasterTile readIndexed(Raster raster, IndexColorModel cm, int x0, int y0, int w, int h) {
+        int[] palette = new int[cm.getMapSize()];
+        cm.getRGBs(palette);
+        boolean gray = true;
+        for (int p : palette) {
+            int r = (p >> 16) & 0xff, g = (p >> 8) & 0xff, b = p & 0xff;
+            if (r != g || g != b) {
+                gray = false;
+                break;
+            }
+        }
+        RasterTile tile = new RasterTile(w, h, gray ? 1 : 3);
+        int[] indices = raster.getSamples(x0, y0, w, h, 0, (int[]) null);
+        for (int i = 0; i < indices.length; i++) {
+            int p = palette[indices[i]];
+            if (gray) {
+                tile.bands[0][i] = p & 0xff;
+            } else {
+                tile.bands[0][i] = (p >> 16) & 0xff;
+                tile.bands[1][i] = (p >> 8) & 0xff;
+                tile.bands[2][i] = p & 0xff;
+            }
+        }
+        return tile;
+    }
+
+    private static boolean is8BitPacked(DirectColorModel cm) {
+        return Integer.bitCount(cm.getRedMask()) == 8 && Integer.bitCount(cm.getGreenMask()) == 8
+                && Integer.bitCount(cm.getBlueMask()) == 8;
+    }
+}
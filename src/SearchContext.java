@@ -0,0 +1,175 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 可复用的最短路径搜索状态
+ * dist / hops / pred 数组在多次查询之间复用，每个节点附带一个“纪元”戳：
+ * 戳不等于当前纪元的节点视为未访问，因此开始新查询只需把纪元加一，清空代价为 O(1) 而不是 O(N)
+ * 一个上下文同一时间只能被一个线程使用，通过 acquire / release 从池中借还，
+ * 池而不是 ThreadLocal，是为了让虚拟线程等短生命周期线程也能复用已分配的数组
+ * 池按字节数限制：上下文的数组只增不减，一张大图会让它长期占用 BYTES_PER_NODE x 节点数，
+ * 归还时放不进 MAX_POOLED_BYTES 的上下文直接丢弃，由 GC 回收
+ */
+final class SearchContext {
+    static final int BYTES_PER_NODE = 32; // dist 8 + hops 4 + pred 4 + 两个纪元戳 8 + 启发值 8
+    private static final int MAX_POOLED = Runtime.getRuntime().availableProcessors(); // 池中最多保留的上下文数
+    static final long MAX_POOLED_BYTES = Runtime.getRuntime().maxMemory() / 8; // 池中上下文的总字节数上限
+    private static final ConcurrentLinkedQueue<SearchContext> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicLong pooledBytes = new AtomicLong(); // 池中上下文的总字节数
+
+    double[] dist = new double[0];
+    int[] hops = new int[0];
+    int[] pred = new int[0];
+    private double[] estimates = new double[0]; // A* 启发值，与标签同时有效，只在地标搜索中按需分配
+    private int[] visitEpoch = new int[0]; // 标签在该纪元内有效
+    private int[] settledEpoch = new int[0]; // 在该纪元内已出堆
+    private int epoch = 0;
+    final SearchHeap heap = new SearchHeap(1024);
+
+    /**
+     * 从池中借出一个上下文并开始新的查询
+     */
+    static SearchContext acquire(int size) {
+        SearchContext context = POOL.poll();
+        if (context == null) {
+            context = new SearchContext();
+        } else {
+            pooledBytes.addAndGet(-context.bytes()); // 池中的上下文大小不变，与放入时相同
+        }
+        context.begin(size);
+        return context;
+    }
+
+    /**
+     * 归还上下文；池已满或放不进字节数上限时丢弃
+     */
+    static void release(SearchContext context) {
+        long bytes = context.bytes();
+        while (true) {
+            long pooled = pooledBytes.get();
+            if (POOL.size() >= MAX_POOLED || pooled + bytes > MAX_POOLED_BYTES) return;
+            if (pooledBytes.compareAndSet(pooled, pooled + bytes)) break;
+        }
+        POOL.offer(context);
+    }
+
+    /**
+     * n 个节点的图在搜索状态上最多常驻的字节数：至少一个正在使用的上下文，
+     * 最多 MAX_POOLED 个满尺寸的上下文，但池中保留的部分不超过 MAX_POOLED_BYTES
+     */
+    static long residentBytes(long n) {
+        long context = n * BYTES_PER_NODE;
+        return Math.max(context, Math.min(MAX_POOLED * context, MAX_POOLED_BYTES));
+    }
+
+    /**
+     * 数组占用的字节数
+     */
+    private long bytes() {
+        return (long) dist.length * Double.BYTES + (long) estimates.length * Double.BYTES
+                + ((long) hops.length + pred.length + visitEpoch.length + settledEpoch.length) * Integer.BYTES;
+    }
+
+    /**
+     * 开始新的查询：必要时扩容，否则只推进纪元
+     */
+    void begin(int size) {
+        if (dist.length < size) {
+            dist = new double[size];
+            hops = new int[size];
+            pred = new int[size];
+            visitEpoch = new int[size];
+            settledEpoch = new int[size];
+            epoch = 0;
+        }
+        if (epoch == Integer.MAX_VALUE) {
+            // 纪元溢出时才真正清空一次
+            Arrays.fill(visitEpoch, 0);
+            Arrays.fill(settledEpoch, 0);
+            epoch = 0;
+        }
+        epoch++;
+        heap.clear();
+    }
+
+    boolean isVisited(int v) {
+        return visitEpoch[v] == epoch;
+    }
+
+    boolean isSettled(int v) {
+        return settledEpoch[v] == epoch;
+    }
+
+    void settle(int v) {
+        settledEpoch[v] = epoch;
+    }
+
+    /**
+     * 本次查询中各节点的启发值数组，由调用方在节点首次访问时写入
+     */
+    double[] estimates() {
+        if (estimates.length < dist.length) estimates = new double[dist.length];
+        return estimates;
+    }
+
+    double distance(int v) {
+        return isVisited(v) ? dist[v] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * 设置起点
+     */
+    void start(int source) {
+        start(source, 0);
+    }
+
+    /**
+     * 设置起点，入堆的键为起点的启发值
+     */
+    void start(int source, double estimate) {
+        visitEpoch[source] = epoch;
+        dist[source] = 0;
+        hops[source] = 0;
+        pred[source] = -1;
+        heap.push(estimate, 0, source);
+    }
+
+    /**
+     * 用候选标签 (d, h, from) 松弛节点 v，比较规则与 ShortestPathTree 相同；标签变小时重新入堆
+     */
+    void relax(int v, double d, int h, int from) {
+        relax(v, d, h, from, 0);
+    }
+
+    /**
+     * 同上，入堆的键为 d + estimate（A* 的启发值）
+     */
+    void relax(int v, double d, int h, int from, double estimate) {
+        if (isVisited(v)) {
+            if (d != dist[v] ? d > dist[v] : h != hops[v] ? h > hops[v] : from >= pred[v]) return;
+            boolean labelImproved = d != dist[v] || h != hops[v];
+            dist[v] = d;
+            hops[v] = h;
+            pred[v] = from;
+            if (labelImproved) heap.push(d + estimate, h, v);
+        } else {
+            visitEpoch[v] = epoch;
+            dist[v] = d;
+            hops[v] = h;
+            pred[v] = from;
+            heap.push(d + estimate, h, v);
+        }
+    }
+
+    /**
+     * 回溯得到从起点到 target 的节点编号序列
+     */
+    int[] pathTo(int target) {
+        int[] path = new int[hops[target] + 1];
+        for (int i = path.length - 1, v = target; i >= 0; i--, v = pred[v]) {
+            path[i] = v;
+        }
+        return path;
+    }
+}
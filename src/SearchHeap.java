@@ -0,0 +1,108 @@
+/**
+ * 基于数组的二叉最小堆，元素为 (dist, hops, node)，按 (dist, hops) 字典序出堆
+ * 采用惰性删除：同一节点可重复入堆，出堆时由调用方丢弃过期条目，避免 PriorityQueue 的装箱开销
+ */
+class SearchHeap {
+    private double[] keys;
+    private int[] hops;
+    private int[] nodes;
+    private int size = 0;
+
+    SearchHeap(int capacity) {
+        capacity = Math.max(capacity, 16);
+        keys = new double[capacity];
+        hops = new int[capacity];
+        nodes = new int[capacity];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 已分配的容量（条目数），用于估算内存占用
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * 入堆
+     */
+    void push(double key, int hop, int node) {
+        if (size == keys.length) grow();
+        int i = size++;
+        // 上浮
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(key, hop, keys[parent], hops[parent])) break;
+            keys[i] = keys[parent];
+            hops[i] = hops[parent];
+            nodes[i] = nodes[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        hops[i] = hop;
+        nodes[i] = node;
+    }
+
+    /**
+     * 堆顶元素的键值、步数和节点编号
+     */
+    double peekKey() {
+        return keys[0];
+    }
+
+    int peekHops() {
+        return hops[0];
+    }
+
+    int peekNode() {
+        return nodes[0];
+    }
+
+    /**
+     * 弹出堆顶元素，调用前应先用 peek 系列方法读取
+     */
+    void pop() {
+        size--;
+        if (size == 0) return;
+        double key = keys[size];
+        int hop = hops[size];
+        int node = nodes[size];
+        int i = 0;
+        // 下沉
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && less(keys[child + 1], hops[child + 1], keys[child], hops[child])) child++;
+            if (!less(keys[child], hops[child], key, hop)) break;
+            keys[i] = keys[child];
+            hops[i] = hops[child];
+            nodes[i] = nodes[child];
+            i = child;
+        }
+        keys[i] = key;
+        hops[i] = hop;
+        nodes[i] = node;
+    }
+
+    private static boolean less(double k1, int h1, double k2, int h2) {
+        return k1 < k2 || (k1 == k2 && h1 < h2);
+    }
+
+    private void grow() {
+        int capacity = keys.length * 2;
+        keys = java.util.Arrays.copyOf(keys, capacity);
+        hops = java.util.Arrays.copyOf(hops, capacity);
+        nodes = java.util.Arrays.copyOf(nodes, capacity);
+    }
+}
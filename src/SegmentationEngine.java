@@ -0,0 +1,141 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单张图片的分割引擎：持有该图片的代价图和网格图，对外提供吸附、路径规划和掩码生成
+ * 构造完成后状态不再改变，路径规划使用可重入的 PathPlanner.plan，因此同一个引擎可以被多个会话并发使用
+ * 同一张图片会收到大量查询时，可在共享之前调用 prepareLandmarks 做一次 ALT 预处理，之后的查询用地标下界做 A*
+ */
+public class SegmentationEngine {
+    private static final int SNAP_RADIUS = 7; // 吸附搜索半径，与 PathManager 一致
+
+    private final int width;
+    private final int height;
+    private final CostMap costMap; // 节点代价，用于边缘吸附
+    private final GridGraph graph;
+    private final EdgeDetector edgeDetector = new EdgeDetector();
+    private volatile LandmarkIndex landmarks; // ALT 预处理结果，未预处理时为 null
+
+    /**
+     * 由边代价平面构造引擎
+     */
+    public SegmentationEngine(LinkCostPlanes planes) {
+        this(new GridGraph(planes));
+    }
+
+    /**
+     * 由网格图构造引擎，边缘吸附使用网格图的节点代价
+     */
+    public SegmentationEngine(GridGraph graph) {
+        this.width = graph.getWidth();
+        this.height = graph.getHeight();
+        this.costMap = graph.getCostMap();
+        this.graph = graph;
+    }
+
+    /**
+     * 读取图片并计算代价图，代价表示按当前可用内存选择
+     */
+    public static SegmentationEngine load(File file) throws IOException {
+        return load(file, MemoryGovernor.forRuntime(new EngineMetrics()));
+    }
+
+    /**
+     * 读取图片，由 governor 按内存预算选择代价表示并构建网格图
+     */
+    public static SegmentationEngine load(File file, MemoryGovernor governor) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        if (image == null) {
+            throw new IOException("无法读取图片: " + file);
+        }
+        return new SegmentationEngine(governor.build(image));
+    }
+
+    /**
+     * ALT 预处理：选出 count 个地标并并行计算它们的最短路径树，之后的路径规划使用地标下界
+     * 每个地标占用 4 字节/像素
+     */
+    public LandmarkIndex prepareLandmarks(int count) {
+        landmarks = LandmarkIndex.build(graph, count);
+        return landmarks;
+    }
+
+    /**
+     * 把点吸附到附近的边缘上，点不在图像内时返回 null
+     */
+    public Point snap(Point point) {
+        return edgeDetector.findBestEdgeFromCost(point, SNAP_RADIUS, costMap);
+    }
+
+    /**
+     * 规划两点之间的路径
+     */
+    public PlannedPath path(Point from, Point to) {
+        checkInside(from);
+        checkInside(to);
+        return PathPlanner.plan(graph, graph.index(from.x, from.y), graph.index(to.x, to.y), landmarks);
+    }
+
+    /**
+     * 依次连接锚点得到轮廓，closed 为 true 时最后一个锚点连回第一个锚点
+     */
+    public List<PlannedPath> contour(List<Point> anchors, boolean closed) {
+        List<PlannedPath> segments = new ArrayList<>();
+        int count = anchors.size() < 2 ? 0 : closed ? anchors.size() : anchors.size() - 1;
+        for (int i = 0; i < count; i++) {
+            segments.add(path(anchors.get(i), anchors.get((i + 1) % anchors.size())));
+        }
+        return segments;
+    }
+
+    /**
+     * 由锚点构成的闭合轮廓生成区域掩码
+     */
+    public BitMask mask(List<Point> anchors) {
+        List<ChainCode> paths = new ArrayList<>();
+        for (PlannedPath segment : contour(anchors, true)) {
+            if (!segment.isEmpty()) paths.add(ChainCode.fromPath(graph, segment.getNodes()));
+        }
+        return PathMask.fromPaths(paths, width, height);
+    }
+
+    private void checkInside(Point point) {
+        if (!graph.contains(point.x, point.y)) {
+            throw new IllegalArgumentException("点不在图像范围内: " + point.x + "," + point.y);
+        }
+    }
+
+    /**
+     * Getter方法
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public GridGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * 增加一个使用者（见 GridGraph.retain）；引擎已释放时返回 false
+     */
+    public boolean retain() {
+        return graph.retain();
+    }
+
+    /**
+     * 减少一个使用者，最后一个使用者离开时关闭堆外代价图
+     */
+    public void release() {
+        graph.release();
+    }
+}
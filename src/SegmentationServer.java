@@ -0,0 +1,498 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+/**
+ * 本地分割服务：供同一台机器上的标注前端通过 HTTP 调用智能剪刀
+ * 1. 只监听回环地址，每个请求运行在独立的虚拟线程上；
+ * 2. 图片以图片目录下的相对路径作为 id，每张图片的 SegmentationEngine 保存在按访问顺序淘汰的 LRU 缓存中，
+ *    同一张图片的并发请求只会触发一次代价计算；
+ * 3. 每个响应带有 X-Latency-Micros 头，汇总指标可从 /metrics 获取；
+ * 4. 指定地标数时，图片加载后再做一次 ALT 预处理（计入 engine.landmarks 耗时），之后该图片的路径查询使用 A*；
+ * 5. 加载时按当前可用内存选择代价表示（MemoryGovernor），选择结果和内存占用记入 memory.* 指标。
+ *
+ * 接口（均为 GET，坐标为图像像素坐标，点列表格式为 x1,y1;x2,y2;...）：
+ *   /snap?image=ID&x=X&y=Y               返回吸附点
+ *   /path?image=ID&points=P[&closed=1][&snap=1]  返回依次连接各点的路径
+ *   /mask?image=ID&points=P[&snap=1][&format=png|rle|pbm]  返回闭合轮廓的掩码：PNG（区域内为白色，默认）、
+ *                                        COCO RLE（JSON，压缩的 counts 字符串）或 PBM 二值位图
+ *   /metrics                             返回请求耗时和缓存指标
+ */
+public class SegmentationServer {
+    private final File imageRoot;
+    private final EngineCache engines;
+    private final int landmarkCount; // 每张图片的 ALT 地标数，0 表示不预处理
+    private final EngineMetrics metrics = new EngineMetrics();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * 请求参数错误，返回 400
+     */
+    private static class BadRequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BadRequestException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 响应内容
+     */
+    private static class Response {
+        final int status;
+        final String contentType;
+        final byte[] body;
+
+        Response(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        static Response json(int status, String json) {
+            return new Response(status, "application/json; charset=utf-8", json.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * 接口处理函数
+     */
+    private interface Handler {
+        Response handle(Map<String, String> params) throws Exception;
+    }
+
+    /**
+     * 使用某张图片引擎的处理函数
+     */
+    private interface EngineHandler {
+        Response handle(SegmentationEngine engine, Map<String, String> params) throws Exception;
+    }
+
+    /**
+     * 按访问顺序淘汰的引擎缓存
+     * 键为通过 resolve 检查后的规范路径，a.png、./a.png、sub/../a.png 等别名共用同一个引擎
+     * 缓存中保存的是加载任务，加载在锁外执行，因此慢的加载不会阻塞其它图片的请求
+     * 注意：加载在第一个请求该图片的请求线程上同步执行，没有超时；同一张图片的其它请求在 task.get() 上一直等待，
+     * 加载很慢或失败时它们都被阻塞到加载结束。失败的条目不会在加载结束时立即移除，而是由等待者在重新抛出异常前移除
+     * （remove 只移除同一个任务），在此之前到达的请求会直接得到同一个失败结果，之后的请求才会重新加载
+     * 引用：缓存持有每个引擎的一个引用，请求通过 acquire 取得引擎时再增加一个，用完后 release；
+     * 条目被淘汰时释放缓存的引用，正在处理的请求结束后堆外代价图才关闭
+     */
+    private class EngineCache {
+        private final int capacity;
+        private final LinkedHashMap<String, Entry> entries;
+
+        /**
+         * 缓存条目：加载任务；淘汰时已加载完成的立即释放缓存的引用，仍在加载的在加载完成时释放
+         */
+        private class Entry extends FutureTask<SegmentationEngine> {
+            private boolean evicted; // 以下两个字段由 EngineCache 的锁保护
+            private boolean released;
+
+            Entry(File file) {
+                super(() -> load(file));
+            }
+
+            @Override
+            protected void done() {
+                synchronized (EngineCache.this) {
+                    if (evicted) releaseEngine();
+                }
+            }
+
+            /**
+             * 条目已从缓存中移除，调用时持有 EngineCache 的锁
+             */
+            void evict() {
+                evicted = true;
+                if (isDone()) releaseEngine();
+            }
+
+            private void releaseEngine() {
+                if (released) return;
+                released = true;
+                try {
+                    get().release();
+                } catch (InterruptedException | ExecutionException | CancellationException ex) {
+                    // 加载失败，没有需要释放的引擎
+                }
+            }
+        }
+
+        EngineCache(int capacity) {
+            this.capacity = capacity;
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    boolean evict = size() > EngineCache.this.capacity;
+                    if (evict) {
+                        metrics.increment("engine.evictions");
+                        eldest.getValue().evict();
+                    }
+                    return evict;
+                }
+            };
+        }
+
+        /**
+         * 取得图片的引擎并增加一个引用，调用方用完后需 release
+         */
+        SegmentationEngine acquire(String id) throws Exception {
+            File file = resolve(id); // 文件系统访问在锁外进行
+            while (true) {
+                Entry task = lookup(file);
+                SegmentationEngine engine = task.get();
+                synchronized (this) {
+                    // 条目仍在缓存中时缓存持有引用，引擎不会被关闭；加载期间已被淘汰时重新获取
+                    if (!task.evicted && engine.retain()) return engine;
+                }
+            }
+        }
+
+        /**
+         * 释放全部条目，停止服务时调用
+         */
+        synchronized void clear() {
+            for (Entry entry : entries.values()) {
+                entry.evict();
+            }
+            entries.clear();
+        }
+
+        /**
+         * 按规范路径找到或创建图片的条目，需要时在当前线程上加载；加载失败时移除条目并抛出原因
+         */
+        private Entry lookup(File file) throws Exception {
+            String key = file.getPath();
+            Entry task;
+            boolean owner = false;
+            synchronized (this) {
+                task = entries.get(key);
+                if (task == null) {
+                    task = new Entry(file);
+                    entries.put(key, task);
+                    owner = true;
+                }
+            }
+            metrics.increment(owner ? "engine.misses" : "engine.hits");
+            if (owner) {
+                long start = System.nanoTime();
+                task.run();
+                metrics.record("engine.load", System.nanoTime() - start);
+            }
+            try {
+                task.get();
+                return task;
+            } catch (ExecutionException ex) {
+                // 加载失败的条目不保留，下次请求重新加载
+                synchronized (this) {
+                    if (entries.remove(key, task)) task.evict();
+                }
+                Throwable cause = ex.getCause();
+                throw cause instanceof Exception ? (Exception) cause : ex;
+            }
+        }
+    }
+
+    /**
+     * 构造函数
+     * @param imageRoot 图片目录
+     * @param cacheCapacity 最多缓存的图片数
+     */
+    public SegmentationServer(File imageRoot, int cacheCapacity) {
+        this(imageRoot, cacheCapacity, 0);
+    }
+
+    /**
+     * 构造函数
+     * @param imageRoot 图片目录
+     * @param cacheCapacity 最多缓存的图片数
+     * @param landmarkCount 每张图片加载后做 ALT 预处理的地标数，0 表示不预处理
+     */
+    public SegmentationServer(File imageRoot, int cacheCapacity, int landmarkCount) {
+        this.imageRoot = imageRoot;
+        this.engines = new EngineCache(cacheCapacity);
+        this.landmarkCount = landmarkCount;
+    }
+
+    /**
+     * 加载图片并按可用内存选择代价表示，需要时做 ALT 预处理
+     */
+    private SegmentationEngine load(File file) throws IOException {
+        SegmentationEngine engine = SegmentationEngine.load(file, MemoryGovernor.forRuntime(metrics));
+        if (landmarkCount > 0) {
+            long start = System.nanoTime();
+            engine.prepareLandmarks(landmarkCount);
+            metrics.record("engine.landmarks", System.nanoTime() - start);
+        }
+        return engine;
+    }
+
+    /**
+     * 在回环地址的指定端口上启动服务，port 为 0 时由系统分配
+     */
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/snap", exchange -> serve(exchange, "snap", params -> withEngine(params, this::snap)));
+        server.createContext("/path", exchange -> serve(exchange, "path", params -> withEngine(params, this::path)));
+        server.createContext("/mask", exchange -> serve(exchange, "mask", params -> withEngine(params, this::mask)));
+        server.createContext("/metrics", exchange -> serve(exchange, "metrics",
+                params -> Response.json(200, metrics.toJson())));
+        server.start();
+    }
+
+    /**
+     * 停止服务
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+        engines.clear();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public EngineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 调用处理函数并发送响应，记录耗时；参数错误返回 400，图片不存在返回 404，其它异常返回 500
+     */
+    private void serve(HttpExchange exchange, String operation, Handler handler) throws IOException {
+        long start = System.nanoTime();
+        Response response;
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                response = Response.json(405, "{\"error\":\"只支持 GET\"}");
+            } else {
+                response = handler.handle(parseQuery(exchange.getRequestURI().getRawQuery()));
+            }
+        } catch (BadRequestException | IllegalArgumentException ex) {
+            response = Response.json(400, "{\"error\":" + quote(ex.getMessage()) + "}");
+        } catch (java.io.FileNotFoundException ex) {
+            response = Response.json(404, "{\"error\":" + quote(ex.getMessage()) + "}");
+        } catch (Exception ex) {
+            response = Response.json(500, "{\"error\":" + quote(String.valueOf(ex.getMessage())) + "}");
+        }
+        long nanos = System.nanoTime() - start;
+        metrics.record(operation, nanos);
+        if (response.status != 200) metrics.increment(operation + ".errors");
+
+        exchange.getResponseHeaders().set("Content-Type", response.contentType);
+        exchange.getResponseHeaders().set("X-Latency-Micros", Long.toString(nanos / 1000));
+        exchange.sendResponseHeaders(response.status, response.body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response.body);
+        }
+    }
+
+    /**
+     * 取得 image 参数指定的引擎，在持有其引用期间调用处理函数
+     */
+    private Response withEngine(Map<String, String> params, EngineHandler handler) throws Exception {
+        SegmentationEngine engine = engines.acquire(required(params, "image"));
+        try {
+            return handler.handle(engine, params);
+        } finally {
+            engine.release();
+        }
+    }
+
+    /**
+     * 吸附接口
+     */
+    private Response snap(SegmentationEngine engine, Map<String, String> params) {
+        Point snapped = engine.snap(new Point(parseInt(params, "x"), parseInt(params, "y")));
+        if (snapped == null) throw new BadRequestException("点不在图像范围内");
+        return Response.json(200, "{\"x\":" + snapped.x + ",\"y\":" + snapped.y + "}");
+    }
+
+    /**
+     * 路径接口：返回各段路径的点序列和统计信息
+     */
+    private Response path(SegmentationEngine engine, Map<String, String> params) {
+        List<Point> anchors = anchors(engine, params);
+        List<PlannedPath> segments = engine.contour(anchors, "1".equals(params.get("closed")));
+        GridGraph graph = engine.getGraph();
+
+        StringBuilder json = new StringBuilder("{\"anchors\":[");
+        for (int i = 0; i < anchors.size(); i++) {
+            if (i > 0) json.append(',');
+            json.append('[').append(anchors.get(i).x).append(',').append(anchors.get(i).y).append(']');
+        }
+        json.append("],\"segments\":[");
+        for (int i = 0; i < segments.size(); i++) {
+            PlannedPath segment = segments.get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"cost\":").append(segment.isEmpty() ? "null" : Double.toString(segment.getCost()))
+                    .append(",\"settled\":").append(segment.getSettledNodes())
+                    .append(",\"micros\":").append(segment.getNanos() / 1000)
+                    .append(",\"points\":[");
+            int[] nodes = segment.getNodes();
+            for (int j = 0; j < nodes.length; j++) {
+                if (j > 0) json.append(',');
+                json.append('[').append(graph.x(nodes[j])).append(',').append(graph.y(nodes[j])).append(']');
+            }
+            json.append("]}");
+        }
+        return Response.json(200, json.append("]}").toString());
+    }
+
+    /**
+     * 掩码接口：默认返回灰度 PNG，format=rle 返回 COCO RLE，format=pbm 返回 PBM 二值位图
+     */
+    private Response mask(SegmentationEngine engine, Map<String, String> params) throws Exception {
+        List<Point> anchors = anchors(engine, params);
+        if (anchors.size() < 3) throw new BadRequestException("闭合轮廓至少需要 3 个点");
+        BitMask mask = engine.mask(anchors);
+
+        String format = params.getOrDefault("format", "png");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        switch (format) {
+            case "rle":
+                StringWriter json = new StringWriter();
+                MaskExporter.writeCocoRle(json, mask, true);
+                return Response.json(200, json.toString());
+            case "pbm":
+                MaskExporter.writePbm(out, mask);
+                return new Response(200, "image/x-portable-bitmap", out.toByteArray());
+            case "png":
+                break;
+            default:
+                throw new BadRequestException("不支持的掩码格式: " + format);
+        }
+
+        BufferedImage image = new BufferedImage(engine.getWidth(), engine.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        byte[] pixels = ((java.awt.image.DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        for (int y = 0; y < engine.getHeight(); y++) {
+            for (int x = mask.nextSetBit(0, y); x < mask.getWidth(); x = mask.nextSetBit(x, y)) {
+                int end = mask.nextClearBit(x, y);
+                Arrays.fill(pixels, y * engine.getWidth() + x, y * engine.getWidth() + end, (byte) 0xff);
+                x = end;
+            }
+        }
+        ImageIO.write(image, "png", out);
+        return new Response(200, "image/png", out.toByteArray());
+    }
+
+    /**
+     * 解析点列表，snap=1 时先把每个点吸附到边缘上
+     */
+    private List<Point> anchors(SegmentationEngine engine, Map<String, String> params) {
+        boolean snap = "1".equals(params.get("snap"));
+        List<Point> anchors = new ArrayList<>();
+        for (String pair : required(params, "points").split(";")) {
+            String[] xy = pair.split(",");
+            if (xy.length != 2) throw new BadRequestException("点格式错误: " + pair);
+            Point point;
+            try {
+                point = new Point(Integer.parseInt(xy[0].trim()), Integer.parseInt(xy[1].trim()));
+            } catch (NumberFormatException ex) {
+                throw new BadRequestException("点格式错误: " + pair);
+            }
+            if (point.x < 0 || point.y < 0 || point.x >= engine.getWidth() || point.y >= engine.getHeight()) {
+                throw new BadRequestException("点不在图像范围内: " + pair);
+            }
+            Point snapped = snap ? engine.snap(point) : null;
+            anchors.add(snapped != null ? snapped : point);
+        }
+        return anchors;
+    }
+
+    /**
+     * 把图片 id 解析为图片目录下的文件，拒绝目录之外的路径
+     */
+    private File resolve(String id) throws IOException {
+        File root = imageRoot.getCanonicalFile();
+        File file = new File(root, id).getCanonicalFile();
+        if (!file.toPath().startsWith(root.toPath())) {
+            throw new BadRequestException("非法的图片 id: " + id);
+        }
+        if (!file.isFile()) {
+            throw new java.io.FileNotFoundException("图片不存在: " + id);
+        }
+        return file;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq < 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) throw new BadRequestException("缺少参数: " + name);
+        return value;
+    }
+
+    private static int parseInt(Map<String, String> params, String name) {
+        try {
+            return Integer.parseInt(required(params, name));
+        } catch (NumberFormatException ex) {
+            throw new BadRequestException("参数不是整数: " + name);
+        }
+    }
+
+    /**
+     * 转换为 JSON 字符串字面量
+     */
+    private static String quote(String text) {
+        StringBuilder json = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') json.append('\\').append(c);
+            else if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+            else json.append(c);
+        }
+        return json.append('"').toString();
+    }
+
+    /**
+     * 服务模式入口
+     * 用法: java SegmentationServer 图片目录 [端口] [缓存图片数] [地标数]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("用法: java SegmentationServer 图片目录 [端口] [缓存图片数] [地标数]");
+            return;
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8765;
+        int capacity = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int landmarks = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        SegmentationServer server = new SegmentationServer(new File(args[0]), capacity, landmarks);
+        server.start(port);
+        System.out.println("分割服务已启动: http://127.0.0.1:" + server.getPort());
+    }
+}
@@ -0,0 +1,97 @@
+import java.util.Arrays;
+
+/**
+ * 最短路径树：保存从根节点出发到网格图中所有节点的最短距离和前驱
+ * 标签按 (dist, hops) 字典序比较，等价标签时取编号最小的前驱，因此结果与求解顺序无关，
+ * 串行 Dijkstra 与并行 delta-stepping 得到的树完全相同
+ */
+public class ShortestPathTree {
+    final int root; // 根节点编号
+    final double[] dist; // 根到各节点的最短距离，不可达为正无穷
+    final int[] hops; // 最短路径上的步数
+    final int[] pred; // 前驱节点编号，根和不可达节点为 -1
+
+    ShortestPathTree(int root, int size) {
+        this.root = root;
+        this.dist = new double[size];
+        this.hops = new int[size];
+        this.pred = new int[size];
+        clear();
+    }
+
+    /**
+     * 复制同一根节点的另一棵树的全部标签
+     */
+    void copyFrom(ShortestPathTree other) {
+        System.arraycopy(other.dist, 0, dist, 0, dist.length);
+        System.arraycopy(other.hops, 0, hops, 0, hops.length);
+        System.arraycopy(other.pred, 0, pred, 0, pred.length);
+    }
+
+    /**
+     * 清空所有标签，只保留根
+     */
+    private void clear() {
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(hops, Integer.MAX_VALUE);
+        Arrays.fill(pred, -1);
+        dist[root] = 0.0;
+        hops[root] = 0;
+    }
+
+    /**
+     * 判断候选标签 (d, h, from) 是否优于节点 v 当前的标签
+     */
+    boolean isBetter(int v, double d, int h, int from) {
+        if (d != dist[v]) return d < dist[v];
+        if (h != hops[v]) return h < hops[v];
+        return from < pred[v];
+    }
+
+    public int getRoot() {
+        return root;
+    }
+
+    public double distanceTo(int target) {
+        return dist[target];
+    }
+
+    public boolean isReachable(int target) {
+        return dist[target] != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * 回溯得到从根到目标的节点编号序列，不可达时返回空数组
+     */
+    public int[] pathTo(int target) {
+        if (!isReachable(target)) return new int[0];
+        int[] path = new int[hops[target] + 1];
+        for (int i = path.length - 1, v = target; i >= 0; i--, v = pred[v]) {
+            path[i] = v;
+        }
+        return path;
+    }
+
+    /**
+     * 回溯得到从 source 到根的节点编号序列，不可达时返回空数组
+     * 网格图的边代价是对称的，因此反向的树路径就是 source 到根的最短路径
+     */
+    public int[] pathFrom(int source) {
+        if (!isReachable(source)) return new int[0];
+        int[] path = new int[hops[source] + 1];
+        for (int i = 0, v = source; i < path.length; i++, v = pred[v]) {
+            path[i] = v;
+        }
+        return path;
+    }
+
+    /**
+     * 判断两棵树的距离、步数和前驱是否逐项相同
+     */
+    public boolean sameAs(ShortestPathTree other) {
+        return root == other.root
+                && Arrays.equals(dist, other.dist)
+                && Arrays.equals(hops, other.hops)
+                && Arrays.equals(pred, other.pred);
+    }
+}
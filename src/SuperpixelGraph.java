@@ -0,0 +1,361 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 超像素边界图：用于大图上的粗粒度路径规划
+ * 1. 预处理：把图像划分为 TILE x TILE 的块并行处理，块内每个 cellSize x cellSize 的格子取代价最高（梯度最弱）的像素为种子，
+ *    以梯度为优先级做标记分水岭，得到沿强边缘分界的区域；区域不跨块，因此各块互不依赖；
+ * 2. 建立边界邻接图：每对相邻区域之间的分界线是一个节点，记录其中点和平均边代价；共享同一区域 R 的两条分界线相邻，
+ *    两条分界线在三区域交点处相接时（另一侧的两个区域也相邻），边权 = 中点距离 x 两条分界线平均代价的均值，
+ *    否则要穿过 R 的内部，边权 = 中点距离 x R 内部的平均边代价；因此沿一串强边缘行进很便宜，穿过平坦区域则很贵；
+ *    图像边框也可能是低代价的通路，因此把图像外部当作一个虚拟区域，区域沿边框的一段视为它与外部的分界线，
+ *    两条这样的分界线只在两个区域相邻时才相连（沿边框行进），不会经由外部区域跳跃；
+ * 3. 查询：先在边界图上求最短路径，再把像素搜索限制在路径两侧的区域及其相邻区域（走廊）内，
+ *    走廊内找不到路径时退回全图搜索。
+ * 区域数约为像素数的 1/cellSize²，查询时像素搜索只展开走廊内的节点，因此长距离查询的耗时基本不随分辨率增长
+ */
+public class SuperpixelGraph {
+    private static final int TILE = 128; // 并行分块的边长，取 cellSize 的整数倍，区域不会被块边界截断
+    private static final int CORRIDOR_RINGS = 2; // 走廊在路径两侧区域之外再包含的邻接区域层数
+
+    private final GridGraph graph;
+    private final int regionCount;
+    private final int[] label; // 每个像素所属的区域编号
+    private final float[] interior; // 区域内部的平均边代价
+    // 分界线：regionA[e] < regionB[e]，中点和平均边代价
+    private final int[] regionA, regionB;
+    private final float[] midX, midY, cost;
+    // 区域与分界线的关联（CSR 格式）：区域 r 的分界线为 incident[offsets[r] .. offsets[r + 1])
+    private final int[] offsets;
+    private final int[] incident;
+
+    private SuperpixelGraph(GridGraph graph, int regionCount, int[] label, float[] interior, int[] regionA, int[] regionB,
+                            float[] midX, float[] midY, float[] cost, int[] offsets, int[] incident) {
+        this.graph = graph;
+        this.regionCount = regionCount;
+        this.label = label;
+        this.interior = interior;
+        this.regionA = regionA;
+        this.regionB = regionB;
+        this.midX = midX;
+        this.midY = midY;
+        this.cost = cost;
+        this.offsets = offsets;
+        this.incident = incident;
+    }
+
+    /**
+     * 在网格图上构建超像素边界图
+     * @param cellSize 种子间距，区域平均约 cellSize² 个像素
+     */
+    public static SuperpixelGraph build(GridGraph graph, int cellSize) {
+        int width = graph.getWidth(), height = graph.getHeight();
+        int tile = Math.max(cellSize, TILE / cellSize * cellSize);
+        int cellsX = (width + cellSize - 1) / cellSize, cellsY = (height + cellSize - 1) / cellSize;
+        int tilesX = (width + tile - 1) / tile, tilesY = (height + tile - 1) / tile;
+        int regionCount = cellsX * cellsY;
+        int outside = regionCount; // 图像外部的虚拟区域
+        int[] label = new int[graph.size()];
+
+        // 各块独立做分水岭
+        IntStream.range(0, tilesX * tilesY).parallel().forEach(t -> {
+            int x0 = t / tilesY * tile, y0 = t % tilesY * tile;
+            watershed(graph, label, cellSize, cellsY, x0, y0, Math.min(width, x0 + tile), Math.min(height, y0 + tile));
+        });
+        // 分界线统计需要相邻块的标签，因此在全部分水岭完成后再进行；区域内部代价只由区域所在的块写入
+        double[] interiorSum = new double[regionCount];
+        int[] interiorCount = new int[regionCount];
+        List<Map<Long, double[]>> tileEdges = IntStream.range(0, tilesX * tilesY).parallel().mapToObj(t -> {
+            int x0 = t / tilesY * tile, y0 = t % tilesY * tile;
+            return collectEdges(graph, label, interiorSum, interiorCount,
+                    x0, y0, Math.min(width, x0 + tile), Math.min(height, y0 + tile));
+        }).collect(Collectors.toList()); // 按块编号排列，合并顺序与并行调度无关
+
+        // 合并各块的统计：key 为 (较小区域, 较大区域)，value 为 {边代价之和, 像素对数, x 之和, y 之和}
+        Map<Long, double[]> edges = new HashMap<>();
+        for (Map<Long, double[]> part : tileEdges) {
+            for (Map.Entry<Long, double[]> entry : part.entrySet()) {
+                double[] sum = edges.computeIfAbsent(entry.getKey(), k -> new double[4]);
+                for (int i = 0; i < 4; i++) sum[i] += entry.getValue()[i];
+            }
+        }
+
+        int boundaryCount = edges.size();
+        int[] regionA = new int[boundaryCount], regionB = new int[boundaryCount];
+        float[] midX = new float[boundaryCount], midY = new float[boundaryCount], cost = new float[boundaryCount];
+        int[] offsets = new int[regionCount + 2];
+        int e = 0;
+        for (Map.Entry<Long, double[]> entry : edges.entrySet()) {
+            double[] sum = entry.getValue();
+            regionA[e] = (int) (entry.getKey() >>> 32);
+            regionB[e] = (int) (long) entry.getKey();
+            cost[e] = (float) (sum[0] / sum[1]);
+            midX[e] = (float) (sum[2] / sum[1]);
+            midY[e] = (float) (sum[3] / sum[1]);
+            offsets[regionA[e] + 1]++;
+            offsets[regionB[e] + 1]++;
+            e++;
+        }
+        for (int r = 0; r <= outside; r++) offsets[r + 1] += offsets[r];
+        int[] incident = new int[offsets[outside + 1]];
+        int[] fill = offsets.clone();
+        for (e = 0; e < boundaryCount; e++) {
+            incident[fill[regionA[e]]++] = e;
+            incident[fill[regionB[e]]++] = e;
+        }
+
+        // 区域内部的平均边代价；只有一个像素的区域没有内部边，取其分界线代价的最大值
+        float[] interior = new float[regionCount];
+        for (int r = 0; r < regionCount; r++) {
+            if (interiorCount[r] > 0) {
+                interior[r] = (float) (interiorSum[r] / interiorCount[r]);
+            } else {
+                for (int i = offsets[r]; i < offsets[r + 1]; i++) {
+                    interior[r] = Math.max(interior[r], cost[incident[i]]);
+                }
+            }
+        }
+        return new SuperpixelGraph(graph, regionCount, label, interior, regionA, regionB, midX, midY, cost, offsets, incident);
+    }
+
+    /**
+     * 块内标记分水岭：每个格子一个种子，按梯度（1 - 节点代价）由低到高向 4 邻域扩展
+     */
+    private static void watershed(GridGraph graph, int[] label, int cellSize, int cellsY, int x0, int y0, int x1, int y1) {
+        int height = graph.getHeight();
+        int tileHeight = y1 - y0;
+        boolean[] labeled = new boolean[(x1 - x0) * tileHeight];
+        SearchHeap heap = new SearchHeap(4 * (x1 - x0 + tileHeight));
+
+        // 种子：格子内节点代价最高的像素
+        for (int cx = x0; cx < x1; cx += cellSize) {
+            for (int cy = y0; cy < y1; cy += cellSize) {
+                int seed = -1;
+                for (int x = cx; x < Math.min(x1, cx + cellSize); x++) {
+                    for (int y = cy; y < Math.min(y1, cy + cellSize); y++) {
+                        int index = x * height + y;
+                        if (seed < 0 || graph.nodeCost(index) > graph.nodeCost(seed)) seed = index;
+                    }
+                }
+                label[seed] = cx / cellSize * cellsY + cy / cellSize;
+                labeled[(seed / height - x0) * tileHeight + seed % height - y0] = true;
+                heap.push(1 - graph.nodeCost(seed), 0, seed);
+            }
+        }
+
+        // 按梯度由低到高扩展，先到达的区域占有该像素
+        int order = 0; // 入堆次序，梯度相同时先入堆者优先，保证结果确定
+        while (!heap.isEmpty()) {
+            int u = heap.peekNode();
+            heap.pop();
+            int ux = u / height, uy = u % height;
+            for (int dir = 0; dir < 8; dir++) {
+                if (GridGraph.DX[dir] != 0 && GridGraph.DY[dir] != 0) continue; // 只用 4 邻域
+                int vx = ux + GridGraph.DX[dir], vy = uy + GridGraph.DY[dir];
+                if (vx < x0 || vx >= x1 || vy < y0 || vy >= y1) continue;
+                int local = (vx - x0) * tileHeight + vy - y0;
+                if (labeled[local]) continue;
+                labeled[local] = true;
+                int v = vx * height + vy;
+                label[v] = label[u];
+                heap.push(1 - graph.nodeCost(v), ++order, v);
+            }
+        }
+    }
+
+    /**
+     * 统计块内像素与其下、右上、右、右下邻居之间跨区域的像素边，每条像素边只统计一次；
+     * 沿图像边框的像素边计入该区域与外部区域（编号为区域总数）之间的分界线
+     */
+    private static Map<Long, double[]> collectEdges(GridGraph graph, int[] label, double[] interiorSum, int[] interiorCount,
+                                                    int x0, int y0, int x1, int y1) {
+        Map<Long, double[]> edges = new HashMap<>();
+        int height = graph.getHeight();
+        for (int x = x0; x < x1; x++) {
+            for (int y = y0; y < y1; y++) {
+                int u = x * height + y;
+                for (int dir = 4; dir < 8; dir++) { // (0,1) (1,-1) (1,0) (1,1)
+                    int v = graph.neighbor(u, dir);
+                    if (v < 0) continue;
+                    boolean alongBorder = dir == 4 ? x == 0 || x == graph.getWidth() - 1
+                            : dir == 6 && (y == 0 || y == height - 1);
+                    if (alongBorder) {
+                        double[] sum = edges.computeIfAbsent((long) label[u] << 32 | interiorSum.length, k -> new double[4]);
+                        sum[0] += graph.moveCost(u, dir);
+                        sum[1]++;
+                        sum[2] += x + GridGraph.DX[dir] * 0.5;
+                        sum[3] += y + GridGraph.DY[dir] * 0.5;
+                    }
+                    if (label[v] == label[u]) {
+                        interiorSum[label[u]] += graph.moveCost(u, dir) / GridGraph.DIR_SCALE[dir];
+                        interiorCount[label[u]]++;
+                        continue;
+                    }
+                    int a = Math.min(label[u], label[v]), b = Math.max(label[u], label[v]);
+                    double[] sum = edges.computeIfAbsent((long) a << 32 | b, k -> new double[4]);
+                    sum[0] += graph.moveCost(u, dir) / GridGraph.DIR_SCALE[dir];
+                    sum[1]++;
+                    // 以像素边中点作为分界线上的位置
+                    sum[2] += x + GridGraph.DX[dir] * 0.5;
+                    sum[3] += y + GridGraph.DY[dir] * 0.5;
+                }
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * 先在边界图上规划，再在走廊内细化为像素路径
+     */
+    public PlannedPath route(int source, int target) {
+        long start = System.nanoTime();
+        boolean[] allowed = new boolean[regionCount];
+        IntList corridor = new IntList();
+        allow(label[source], allowed, corridor);
+        allow(label[target], allowed, corridor);
+        for (int e : boundaryPath(source, target)) {
+            allow(regionA[e], allowed, corridor);
+            if (regionB[e] < regionCount) allow(regionB[e], allowed, corridor);
+        }
+        // 向外扩展若干层邻接区域，给像素路径留出偏离粗路径的余地
+        int[] frontier = corridor.toArray();
+        for (int ring = 0; ring < CORRIDOR_RINGS; ring++) {
+            IntList next = new IntList();
+            for (int r : frontier) {
+                for (int i = offsets[r]; i < offsets[r + 1]; i++) {
+                    int e = incident[i];
+                    int neighbor = regionA[e] == r ? regionB[e] : regionA[e];
+                    if (neighbor < regionCount) allow(neighbor, allowed, next);
+                }
+            }
+            frontier = next.toArray();
+        }
+
+        PlannedPath refined = PathPlanner.plan(graph, source, target, Double.POSITIVE_INFINITY, v -> allowed[label[v]]);
+        if (refined.isEmpty()) {
+            refined = PathPlanner.plan(graph, source, target);
+        }
+        return new PlannedPath(refined.getNodes(), refined.getCost(), refined.getSettledNodes(), System.nanoTime() - start);
+    }
+
+    private static void allow(int region, boolean[] allowed, IntList added) {
+        if (allowed[region]) return;
+        allowed[region] = true;
+        added.add(region);
+    }
+
+    /**
+     * 边界图上的 Dijkstra，返回经过的分界线序列
+     * 起点和终点作为两个虚拟节点（编号为分界线数和分界线数 + 1），分别与所在区域的全部分界线相连
+     */
+    private int[] boundaryPath(int source, int target) {
+        int boundaryCount = cost.length;
+        int virtualSource = boundaryCount, virtualTarget = boundaryCount + 1;
+        int sourceRegion = label[source], targetRegion = label[target];
+        if (sourceRegion == targetRegion) return new int[0];
+        float sx = graph.x(source), sy = graph.y(source), tx = graph.x(target), ty = graph.y(target);
+
+        SearchContext context = SearchContext.acquire(boundaryCount + 2);
+        try {
+            SearchHeap heap = context.heap;
+            context.start(virtualSource);
+            while (!heap.isEmpty()) {
+                int u = heap.peekNode();
+                double du = heap.peekKey();
+                int hu = heap.peekHops();
+                heap.pop();
+                if (context.isSettled(u) || du != context.dist[u] || hu != context.hops[u]) continue;
+                context.settle(u);
+                if (u == virtualTarget) {
+                    // 去掉两端的虚拟节点
+                    int[] path = context.pathTo(u);
+                    return Arrays.copyOfRange(path, 1, path.length - 1);
+                }
+                if (u == virtualSource) {
+                    for (int i = offsets[sourceRegion]; i < offsets[sourceRegion + 1]; i++) {
+                        int v = incident[i];
+                        context.relax(v, Math.hypot(midX[v] - sx, midY[v] - sy) * cost[v], 1, u);
+                    }
+                    continue;
+                }
+                if (regionA[u] == targetRegion || regionB[u] == targetRegion) {
+                    context.relax(virtualTarget, du + Math.hypot(tx - midX[u], ty - midY[u]) * cost[u], hu + 1, u);
+                }
+                relaxThrough(context, u, regionA[u], regionB[u], du, hu);
+                relaxThrough(context, u, regionB[u], regionA[u], du, hu);
+            }
+            // 边界图不连通（不应出现），走廊只包含两端区域
+            return new int[0];
+        } finally {
+            SearchContext.release(context);
+        }
+    }
+
+    /**
+     * 松弛与分界线 u 共享区域 region 的其它分界线，other 为 u 另一侧的区域
+     */
+    private void relaxThrough(SearchContext context, int u, int region, int other, double du, int hu) {
+        if (region == regionCount) {
+            // 外部区域：只沿边框走到相邻区域的边框分界线
+            for (int i = offsets[other]; i < offsets[other + 1]; i++) {
+                int e = incident[i];
+                int neighbor = regionA[e] == other ? regionB[e] : regionA[e];
+                if (neighbor == regionCount) continue;
+                int v = borderBoundary(neighbor);
+                if (v < 0 || context.isSettled(v)) continue;
+                context.relax(v, du + Math.hypot(midX[v] - midX[u], midY[v] - midY[u]) * (cost[u] + cost[v]) * 0.5, hu + 1, u);
+            }
+            return;
+        }
+        for (int i = offsets[region]; i < offsets[region + 1]; i++) {
+            int v = incident[i];
+            if (v == u || context.isSettled(v)) continue;
+            int far = regionA[v] == region ? regionB[v] : regionA[v];
+            // 两条分界线在交点处相接时沿分界线走，否则穿过区域内部
+            double unitCost = adjacent(other, far) ? (cost[u] + cost[v]) * 0.5 : interior[region];
+            context.relax(v, du + Math.hypot(midX[v] - midX[u], midY[v] - midY[u]) * unitCost, hu + 1, u);
+        }
+    }
+
+    /**
+     * 区域与外部之间的分界线，区域不接触图像边框时返回 -1
+     */
+    private int borderBoundary(int region) {
+        for (int i = offsets[region]; i < offsets[region + 1]; i++) {
+            int e = incident[i];
+            if (regionB[e] == regionCount) return e;
+        }
+        return -1;
+    }
+
+    /**
+     * 判断两个区域是否相邻
+     */
+    private boolean adjacent(int a, int b) {
+        if (a == regionCount) return borderBoundary(b) >= 0; // 外部区域的分界线很多，改查另一侧
+        for (int i = offsets[a]; i < offsets[a + 1]; i++) {
+            int e = incident[i];
+            if (regionA[e] == b || regionB[e] == b) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Getter方法
+     */
+    public int getRegionCount() {
+        return regionCount;
+    }
+
+    public int getBoundaryCount() {
+        return cost.length;
+    }
+
+    public int regionOf(int index) {
+        return label[index];
+    }
+}
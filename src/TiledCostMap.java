@@ -0,0 +1,109 @@
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 分块代价图：不保存整幅代价，只在固定大小的块缓存中保存最近读到的块，缺失的块从原图重新计算
+ * 块按编号直接映射到缓存槽位；槽位用原子引用保存不可变的块，多个规划线程可以同时读取，
+ * 两个线程同时缺失同一块时最多重复计算一次，不会读到不完整的数据
+ * 每块连同外围一圈像素一起计算（getSubimage 不复制像素），结果与 CostGraphGenerator.getCostImage 在对应位置的值相同，
+ * 归一化所需的全图梯度范围由调用方事先扫描得到
+ */
+public class TiledCostMap implements CostMap {
+    static final int TILE_SHIFT = 5;
+    static final int TILE_SIZE = 1 << TILE_SHIFT; // 块边长 32
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    static final long TILE_BYTES = (long) TILE_SIZE * TILE_SIZE * Double.BYTES; // 每块占用的内存
+
+    private final BufferedImage image;
+    private final int width;
+    private final int height;
+    private final int tilesY; // 每列的块数
+    private final double min; // 全图梯度范围
+    private final double max;
+    private final AtomicReferenceArray<Tile> slots;
+
+    /**
+     * 缓存中的一块：块编号和按 [(x - x0) * TILE_SIZE + (y - y0)] 存放的代价
+     */
+    private static final class Tile {
+        final int id;
+        final double[] cost;
+
+        Tile(int id, double[] cost) {
+            this.id = id;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * @param min        全图梯度幅值的最小值
+     * @param max        全图梯度幅值的最大值
+     * @param cacheBytes 块缓存的大小，至少保留一块
+     */
+    public TiledCostMap(BufferedImage image, double min, double max, long cacheBytes) {
+        this.image = image;
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.tilesY = (height + TILE_MASK) >> TILE_SHIFT;
+        this.min = min;
+        this.max = max;
+        long tiles = (long) ((width + TILE_MASK) >> TILE_SHIFT) * tilesY;
+        this.slots = new AtomicReferenceArray<>((int) Math.max(1, Math.min(tiles, cacheBytes / TILE_BYTES)));
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public double get(int index) {
+        int x = index / height;
+        int y = index - x * height;
+        return tile(x >> TILE_SHIFT, y >> TILE_SHIFT).cost[((x & TILE_MASK) << TILE_SHIFT) | (y & TILE_MASK)];
+    }
+
+    /**
+     * 块缓存最多占用的内存
+     */
+    public long cacheBytes() {
+        return slots.length() * TILE_BYTES;
+    }
+
+    private Tile tile(int tx, int ty) {
+        int id = tx * tilesY + ty;
+        int slot = id % slots.length();
+        Tile tile = slots.get(slot);
+        if (tile == null || tile.id != id) {
+            tile = load(id, tx, ty);
+            slots.set(slot, tile);
+        }
+        return tile;
+    }
+
+    /**
+     * 计算一块的代价：在外扩一圈像素的子图上求梯度，块内像素的 3x3 邻域都在子图内，与在整幅图上计算相同
+     */
+    private Tile load(int id, int tx, int ty) {
+        int x0 = tx << TILE_SHIFT, y0 = ty << TILE_SHIFT;
+        int x1 = Math.min(width, x0 + TILE_SIZE), y1 = Math.min(height, y0 + TILE_SIZE);
+        int sx0 = Math.max(0, x0 - 1), sy0 = Math.max(0, y0 - 1);
+        int sx1 = Math.min(width, x1 + 1), sy1 = Math.min(height, y1 + 1);
+        CostGraphGenerator generator = new CostGraphGenerator(image.getSubimage(sx0, sy0, sx1 - sx0, sy1 - sy0));
+        double[][] region = new double[sx1 - sx0][sy1 - sy0];
+        int rx0 = x0 - sx0, ry0 = y0 - sy0, rx1 = x1 - sx0, ry1 = y1 - sy0;
+        generator.computeGradient(region, rx0, ry0, rx1, ry1);
+        CostGraphGenerator.normalizeToCost(region, region, min, max, rx0, ry0, rx1, ry1);
+
+        double[] cost = new double[TILE_SIZE * TILE_SIZE];
+        for (int x = rx0; x < rx1; x++) {
+            System.arraycopy(region[x], ry0, cost, (x - rx0) << TILE_SHIFT, ry1 - ry0);
+        }
+        return new Tile(id, cost);
+    }
+}
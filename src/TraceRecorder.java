@@ -0,0 +1,142 @@
+import java.awt.*;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 鼠标轨迹录制：把送入 PathManager 的事件连同时间戳写入文本文件，供 TraceReplayer 离线回放
+ * 文件格式：第一行为 HEADER，之后每行一个事件 "微秒 类型 参数"，时间从开始录制起算
+ *   IMAGE 路径    开始标注一张图片（路径为行内剩余部分）
+ *   READY         该图片的图结构已就绪，此前的鼠标移动在界面中不会触发规划
+ *   MOVE x y      鼠标移动（图像坐标）
+ *   CLICK x y     左键点击
+ *   UNDO x y      右键撤销
+ *   BLOCK x y     屏蔽画笔（代价变大）
+ *   BOOST x y     增强画笔（代价变小）
+ *   RESET         重置所有点
+ * 写入失败时不打断标注，第一个异常在 close 时抛出
+ */
+public class TraceRecorder implements Closeable {
+    public static final String HEADER = "# scissors-trace 1";
+
+    /**
+     * 事件类型
+     */
+    public enum Type {
+        IMAGE, READY, MOVE, CLICK, UNDO, RESET, BLOCK, BOOST
+    }
+
+    /**
+     * 轨迹中的一个事件
+     */
+    public static class Event {
+        public final long micros;
+        public final Type type;
+        public final int x;
+        public final int y;
+        public final String image; // 仅 IMAGE 事件使用
+
+        Event(long micros, Type type, int x, int y, String image) {
+            this.micros = micros;
+            this.type = type;
+            this.x = x;
+            this.y = y;
+            this.image = image;
+        }
+
+        public Point getPoint() {
+            return new Point(x, y);
+        }
+    }
+
+    private final Writer out;
+    private final long origin = System.nanoTime();
+    private IOException failure = null;
+
+    /**
+     * 创建轨迹文件并写入文件头
+     */
+    public TraceRecorder(File file) throws IOException {
+        out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        out.write(HEADER + "\n");
+    }
+
+    public void image(File imageFile) {
+        write(Type.IMAGE + " " + imageFile.getAbsolutePath());
+    }
+
+    public void ready() {
+        write(Type.READY.toString());
+    }
+
+    public void reset() {
+        write(Type.RESET.toString());
+    }
+
+    public void event(Type type, int x, int y) {
+        write(type + " " + x + " " + y);
+    }
+
+    private void write(String line) {
+        if (failure != null) return;
+        try {
+            out.write((System.nanoTime() - origin) / 1000 + " " + line + "\n");
+        } catch (IOException ex) {
+            failure = ex;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.close();
+        } catch (IOException ex) {
+            if (failure == null) failure = ex;
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * 读取轨迹文件
+     */
+    public static List<Event> read(File file) throws IOException {
+        List<Event> events = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line = in.readLine();
+            if (!HEADER.equals(line)) {
+                throw new IOException("不是轨迹文件: " + file);
+            }
+            int lineNumber = 1;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+                try {
+                    String[] parts = line.split(" ", 3);
+                    long micros = Long.parseLong(parts[0]);
+                    Type type = Type.valueOf(parts[1]);
+                    if (type == Type.IMAGE) {
+                        events.add(new Event(micros, type, 0, 0, parts[2]));
+                    } else if (type == Type.READY || type == Type.RESET) {
+                        events.add(new Event(micros, type, 0, 0, null));
+                    } else {
+                        String[] xy = parts[2].split(" ");
+                        events.add(new Event(micros, type, Integer.parseInt(xy[0]), Integer.parseInt(xy[1]), null));
+                    }
+                } catch (RuntimeException ex) {
+                    throw new IOException("轨迹文件第 " + lineNumber + " 行格式错误: " + line);
+                }
+            }
+        }
+        return events;
+    }
+}
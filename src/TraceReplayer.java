@@ -0,0 +1,306 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 轨迹回放基准：把 TraceRecorder 录下的标注会话无界面地重新送入 吸附 → 规划 → 稳定性 → 绘制 流程，
+ * 用来在真实的标注操作上比较引擎改动
+ * 1. 默认按录制时的时间间隔送出事件；处理落后时，已经到期的连续 MOVE 只保留最后一个，与界面事件队列合并鼠标移动的行为一致；
+ *    加 --fast 时不等待，事件一个接一个处理，延迟只含处理时间；
+ * 2. 每个事件的延迟从它的到期时刻算到叠加层绘制完成，按事件类型统计百分位数；
+ *    延迟超过一帧（16.7ms）的部分按整帧计为丢帧；
+ * 3. 绘制使用与界面相同的 ImageViewport 和叠加层，画到离屏图像上；
+ * 4. 闭合时与界面一样生成掩码，最后输出每张图片的最终轮廓，可用 --out 导出最后一张图片的轮廓（.svg/.geojson）；
+ * 5. 各图片的编辑器共用一个 EngineMetrics，最后输出锚点缓存命中率和全部指标；
+ * 6. --budget 毫秒 给鼠标移动设置帧预算，与界面一样先显示近似路径；细化请求在等待下一个事件的空闲时间里处理，
+ *    加 --fast 时在每个事件之前处理一次，每次细化连同重绘的耗时计为 REFINE。
+ *
+ * 用法：java TraceReplayer 轨迹文件 [--fast] [--budget 毫秒] [--out 轮廓文件] [--view 宽x高]
+ */
+public class TraceReplayer {
+    private static final long FRAME_NANOS = 16_666_667; // 60Hz 的一帧
+    private static final int DEFAULT_VIEW_WIDTH = 800; // 与主窗口的图像区域大小相当
+    private static final int DEFAULT_VIEW_HEIGHT = 540;
+    private static final double EXPORT_TOLERANCE = 1.0; // 导出轮廓时允许的像素误差，与 UIManager 一致
+
+    private final boolean paced;
+    private long budgetNanos = 0; // 鼠标移动的帧预算，0 表示不限时
+    private final int viewWidth;
+    private final int viewHeight;
+    private final ExecutorService background = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "replay-background");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 统计
+    private final EngineMetrics metrics = new EngineMetrics();
+    private final Map<TraceRecorder.Type, LongList> latencies = new EnumMap<>(TraceRecorder.Type.class);
+    private final LongList renderNanos = new LongList();
+    private long droppedFrames = 0;
+    private long lateEvents = 0;
+    private long coalescedMoves = 0;
+    private final LongList refineNanos = new LongList(); // 近似预览换成精确路径时的绘制耗时
+    private final AtomicBoolean refined = new AtomicBoolean(false);
+
+    // 当前图片
+    private BufferedImage image;
+    private GridGraph graph;
+    private ContourEditor editor;
+    private ImageViewport view;
+    private BufferedImage frame;
+    private List<ChainCode> finalContour = Collections.emptyList();
+    private boolean finalClosed = false;
+
+    public TraceReplayer(boolean paced, int viewWidth, int viewHeight) {
+        this.paced = paced;
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+    }
+
+    /**
+     * 回放整个轨迹，返回最后一张图片的最终轮廓
+     */
+    public List<ChainCode> replay(List<TraceRecorder.Event> events) throws IOException {
+        if (events.isEmpty()) return finalContour;
+        long origin = System.nanoTime() - events.get(0).micros * 1000;
+        for (int i = 0; i < events.size(); i++) {
+            TraceRecorder.Event event = events.get(i);
+            if (event.type == TraceRecorder.Type.IMAGE) {
+                finishImage();
+                openImage(new File(event.image));
+                // 加载图片不计入事件延迟，之后的事件相对当前时刻重新排程
+                origin = System.nanoTime() - nextMicros(events, i) * 1000;
+                continue;
+            }
+            if (editor == null) {
+                throw new IOException("轨迹在 IMAGE 之前出现了 " + event.type + " 事件");
+            }
+
+            long due = paced ? origin + event.micros * 1000 : System.nanoTime();
+            // 与界面事件队列一样，细化排在已到期的事件之后；--fast 时每个事件之前处理一次
+            if (!paced && refined.get()) refine();
+            while (paced && refined.get() && System.nanoTime() < due) refine();
+            long now = System.nanoTime();
+            if (now < due) {
+                LockSupport.parkNanos(due - now);
+            } else if (paced && event.type == TraceRecorder.Type.MOVE && i + 1 < events.size()
+                    && events.get(i + 1).type == TraceRecorder.Type.MOVE
+                    && origin + events.get(i + 1).micros * 1000 <= now) {
+                // 处理落后：下一个移动也已到期，本次移动会被合并掉
+                coalescedMoves++;
+                continue;
+            }
+
+            if (dispatch(event)) render();
+            record(event.type, System.nanoTime() - due);
+        }
+        finishImage();
+        return finalContour;
+    }
+
+    private static long nextMicros(List<TraceRecorder.Event> events, int i) {
+        return i + 1 < events.size() ? events.get(i + 1).micros : 0;
+    }
+
+    /**
+     * 读取图片并计算代价图，图结构在 READY 事件时接入，与录制时的加载过程一致
+     */
+    private void openImage(File file) throws IOException {
+        long start = System.nanoTime();
+        image = ImageIO.read(file);
+        if (image == null) {
+            throw new IOException("无法读取图片: " + file);
+        }
+        graph = new GridGraph(new CostFeatureEngine().compute(image));
+        System.out.printf("图片 %s (%dx%d)，代价图 %.1f ms%n", file.getName(), image.getWidth(), image.getHeight(),
+                (System.nanoTime() - start) / 1e6);
+
+        EdgeDetector edgeDetector = new EdgeDetector();
+        editor = new ContourEditor(new PathStabilityTracker(edgeDetector), edgeDetector, background, text -> { }, metrics);
+        editor.setRefreshListener(() -> refined.set(true));
+        editor.init(image.getWidth(), image.getHeight(), null);
+        view = new ImageViewport();
+        view.setSize(viewWidth, viewHeight);
+        view.setImage(image);
+        view.setOverlay(editor::paintOverlay);
+        frame = new BufferedImage(viewWidth, viewHeight, BufferedImage.TYPE_INT_RGB);
+        finalContour = Collections.emptyList();
+        finalClosed = false;
+    }
+
+    /**
+     * 把事件交给编辑器，返回是否需要重绘
+     */
+    private boolean dispatch(TraceRecorder.Event event) {
+        switch (event.type) {
+            case READY:
+                editor.attachGraph(graph);
+                return false;
+            case MOVE:
+                return editor.handleMouseMove(event.getPoint(), budgetNanos);
+            case CLICK:
+                ContourEditor.ClickResult result = editor.handleClickAtPoint(event.getPoint());
+                if (result == ContourEditor.ClickResult.CLOSED) {
+                    // 界面在闭合后抠图，这里同样生成掩码
+                    PathMask.fromPaths(editor.getConfirmedPaths(), image.getWidth(), image.getHeight());
+                    finalContour = new ArrayList<>(editor.getConfirmedPaths());
+                    finalClosed = true;
+                }
+                return result != ContourEditor.ClickResult.IGNORED;
+            case UNDO:
+                return editor.handleRightClick(event.getPoint());
+            case RESET:
+                editor.resetAll();
+                return true;
+            case BLOCK:
+            case BOOST:
+                return editor.applyBrush(event.getPoint(), event.type == TraceRecorder.Type.BLOCK);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 处理一次细化请求
+     */
+    private void refine() {
+        long start = System.nanoTime();
+        refined.set(false);
+        if (editor.refreshPreview()) render();
+        refineNanos.add(System.nanoTime() - start);
+    }
+
+    /**
+     * 把视口连同叠加层绘制到离屏图像上
+     */
+    private void render() {
+        long start = System.nanoTime();
+        Graphics2D g = frame.createGraphics();
+        view.paint(g);
+        g.dispose();
+        renderNanos.add(System.nanoTime() - start);
+    }
+
+    private void record(TraceRecorder.Type type, long nanos) {
+        latencies.computeIfAbsent(type, k -> new LongList()).add(nanos);
+        if (nanos > FRAME_NANOS) {
+            lateEvents++;
+            droppedFrames += nanos / FRAME_NANOS;
+        }
+    }
+
+    /**
+     * 一张图片回放结束：没有闭合时以当前已确认的路径作为最终轮廓，并输出轮廓概况
+     */
+    private void finishImage() {
+        if (editor == null) return;
+        if (!finalClosed) {
+            finalContour = new ArrayList<>(editor.getConfirmedPaths());
+        }
+        long points = 0;
+        for (ChainCode path : finalContour) points += path.getLength();
+        System.out.printf("最终轮廓：%d 段，%d 个像素点，%s%n", finalContour.size(), points, finalClosed ? "已闭合" : "未闭合");
+    }
+
+    /**
+     * 输出延迟统计
+     */
+    public void printReport() {
+        System.out.println("事件      次数     p50(ms)  p90(ms)  p99(ms)  max(ms)");
+        for (Map.Entry<TraceRecorder.Type, LongList> entry : latencies.entrySet()) {
+            printRow(entry.getKey().toString(), entry.getValue());
+        }
+        printRow("REFINE", refineNanos);
+        printRow("render", renderNanos);
+        System.out.printf("超过一帧的事件: %d，丢帧: %d，合并的移动: %d%n", lateEvents, droppedFrames, coalescedMoves);
+        long hits = metrics.getCounter("anchorCache.hits");
+        long lookups = hits + metrics.getCounter("anchorCache.misses");
+        if (lookups > 0) {
+            System.out.printf("锚点缓存命中: %d/%d (%.1f%%)%n", hits, lookups, 100.0 * hits / lookups);
+        }
+        System.out.println("引擎指标: " + metrics.toJson());
+    }
+
+    private static void printRow(String name, LongList values) {
+        long[] sorted = values.toSortedArray();
+        if (sorted.length == 0) return;
+        System.out.printf("%-8s %6d %9.2f %8.2f %8.2f %8.2f%n", name, sorted.length,
+                percentile(sorted, 0.5) / 1e6, percentile(sorted, 0.9) / 1e6,
+                percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static long percentile(long[] sorted, double q) {
+        int rank = (int) Math.ceil(q * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * 可增长的 long 数组
+     */
+    private static class LongList {
+        private long[] values = new long[256];
+        private int size = 0;
+
+        void add(long value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("用法: java TraceReplayer 轨迹文件 [--fast] [--budget 毫秒] [--out 轮廓文件] [--view 宽x高]");
+            return;
+        }
+        boolean paced = true;
+        File out = null;
+        long budget = 0;
+        int viewWidth = DEFAULT_VIEW_WIDTH, viewHeight = DEFAULT_VIEW_HEIGHT;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--fast":
+                    paced = false;
+                    break;
+                case "--budget":
+                    budget = (long) (Double.parseDouble(args[++i]) * 1_000_000);
+                    break;
+                case "--out":
+                    out = new File(args[++i]);
+                    break;
+                case "--view":
+                    String[] size = args[++i].split("x");
+                    viewWidth = Integer.parseInt(size[0]);
+                    viewHeight = Integer.parseInt(size[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知参数: " + args[i]);
+            }
+        }
+
+        System.setProperty("java.awt.headless", "true");
+        TraceReplayer replayer = new TraceReplayer(paced, viewWidth, viewHeight);
+        replayer.budgetNanos = budget;
+        List<ChainCode> contour = replayer.replay(TraceRecorder.read(new File(args[0])));
+        replayer.printReport();
+        if (out != null && !contour.isEmpty()) {
+            ContourSimplifier.Contour simplified = ContourSimplifier.simplify(contour, EXPORT_TOLERANCE);
+            ContourExporter.export(out, simplified, replayer.image.getWidth(), replayer.image.getHeight());
+            System.out.println("轮廓已导出至: " + out.getAbsolutePath() + "（" + simplified.size() + " 个顶点）");
+        }
+    }
+}
@@ -2,6 +2,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.File;
+import java.util.concurrent.Future;
 
 /**
  * UI管理器：负责界面交互和事件处理
@@ -10,6 +11,24 @@ public class UIManager {
     private final Main mainFrame;
     private final ImageProcessor imageProcessor;
     private final PathManager pathManager;
+    private FolderSession folderSession; // 文件夹会话，未打开文件夹时为 null
+    private BrushMode brushMode = BrushMode.OFF; // 代价画笔模式，开启时左键拖动修改代价而不是设置锚点
+    
+    private static final int PREFETCH_COUNT = 3; // 预取后续图片的张数
+    private static final double EXPORT_TOLERANCE = 1.0; // 导出轮廓时允许的像素误差
+    
+    /**
+     * 代价画笔模式
+     */
+    private enum BrushMode {
+        OFF("关"), BLOCK("屏蔽边缘"), BOOST("增强边缘");
+        
+        final String label;
+        
+        BrushMode(String label) {
+            this.label = label;
+        }
+    }
     
     public UIManager(Main mainFrame, ImageProcessor imageProcessor, PathManager pathManager) {
         this.mainFrame = mainFrame;
@@ -29,9 +48,74 @@ public class UIManager {
         JButton openButton = new JButton("打开文件");
         openButton.addActionListener(e -> openImage());
         
+        JButton fitButton = new JButton("适应窗口");
+        fitButton.addActionListener(e -> mainFrame.getImageView().fitToView());
+        
+        JButton folderButton = new JButton("打开文件夹");
+        folderButton.addActionListener(e -> openFolder());
+        
+        JButton previousButton = new JButton("上一张");
+        previousButton.addActionListener(e -> showFolderImage(-1));
+        
+        JButton nextButton = new JButton("下一张");
+        nextButton.addActionListener(e -> showFolderImage(1));
+        
         buttonPanel.add(resetButton);
         buttonPanel.add(openButton);
+        buttonPanel.add(fitButton);
+        buttonPanel.add(folderButton);
+        buttonPanel.add(previousButton);
+        buttonPanel.add(nextButton);
+        
+        JButton exportButton = new JButton("导出轮廓");
+        exportButton.addActionListener(e -> exportContour());
+        buttonPanel.add(exportButton);
+
+        JButton exportMaskButton = new JButton("导出掩码");
+        exportMaskButton.addActionListener(e -> exportMask());
+        buttonPanel.add(exportMaskButton);
+        
+        JButton recordButton = new JButton("录制轨迹");
+        recordButton.addActionListener(e -> toggleRecording(recordButton));
+        buttonPanel.add(recordButton);
         
+        JButton brushButton = new JButton("画笔: " + brushMode.label);
+        brushButton.addActionListener(e -> {
+            brushMode = BrushMode.values()[(brushMode.ordinal() + 1) % BrushMode.values().length];
+            brushButton.setText("画笔: " + brushMode.label);
+            pathManager.setBrushActive(brushMode != BrushMode.OFF);
+        });
+        buttonPanel.add(brushButton);
+
+        JButton instanceButton = new JButton("多实例: 关");
+        instanceButton.addActionListener(e -> {
+            pathManager.setMultiInstance(!pathManager.isMultiInstance());
+            instanceButton.setText("多实例: " + (pathManager.isMultiInstance() ? "开" : "关"));
+        });
+        buttonPanel.add(instanceButton);
+
+        JButton exportLabelsButton = new JButton("导出标签图");
+        exportLabelsButton.addActionListener(e -> exportLabels());
+        buttonPanel.add(exportLabelsButton);
+
+        // 保存抠图的 PNG 压缩级别：越低保存越快、文件越大
+        JSpinner compressionSpinner = new JSpinner(new SpinnerNumberModel(imageProcessor.getCompressionLevel(), 0, 9, 1));
+        compressionSpinner.addChangeListener(e -> imageProcessor.setCompressionLevel((Integer) compressionSpinner.getValue()));
+        buttonPanel.add(new JLabel("PNG压缩:"));
+        buttonPanel.add(compressionSpinner);
+
+        // 抠图边缘的羽化半径，0 为硬边
+        JSpinner featherSpinner = new JSpinner(new SpinnerNumberModel(imageProcessor.getFeatherRadius(), 0.0, 64.0, 1.0));
+        featherSpinner.addChangeListener(e -> imageProcessor.setFeatherRadius((Double) featherSpinner.getValue()));
+        buttonPanel.add(new JLabel("羽化:"));
+        buttonPanel.add(featherSpinner);
+
+        // 加载代价图的堆预算（MB），0 为按可用堆自动确定；预算不足时改用更省内存的代价表示
+        JSpinner budgetSpinner = new JSpinner(new SpinnerNumberModel((int) (imageProcessor.getHeapBudget() >> 20), 0, 1 << 20, 256));
+        budgetSpinner.addChangeListener(e -> imageProcessor.setHeapBudget((long) (Integer) budgetSpinner.getValue() << 20));
+        buttonPanel.add(new JLabel("内存预算(MB):"));
+        buttonPanel.add(budgetSpinner);
+
         return buttonPanel;
     }
     
@@ -39,13 +123,13 @@ public class UIManager {
      * 绑定鼠标事件监听器
      */
     public void bindMouseListeners() {
-        JLabel imageLabel = mainFrame.getImageLabel();
+        ImageViewport imageLabel = mainFrame.getImageView();
         
         // 鼠标点击监听器
         imageLabel.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
-                if (!isLeftClickValid(e)) return;
+                if (!isLeftClickValid(e) || brushMode != BrushMode.OFF) return;
                 
                 handleMouseClick(e);
             }
@@ -65,17 +149,26 @@ public class UIManager {
         imageLabel.addMouseMotionListener(new MouseMotionAdapter() {
             @Override
             public void mouseMoved(MouseEvent e) {
+                // 记录光标位置，加载中的代价图优先计算光标附近的区域
+                imageProcessor.setFocusPoint(imageProcessor.convertPointToImageCoordinates(e.getPoint()));
                 if (!mainFrame.isImageReady() || !pathManager.hasStartPoint()) return;
                 
                 handleMouseMove(e);
             }
+            
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (SwingUtilities.isLeftMouseButton(e)) handleBrush(e);
+            }
         });
 
         // 鼠标右键点击监听器，撤销上次操作
         imageLabel.addMouseListener(new MouseAdapter() {
             @Override
             public void mousePressed(MouseEvent e) {
-                if (e.getButton() == MouseEvent.BUTTON3) {
+                if (e.getButton() == MouseEvent.BUTTON1) {
+                    handleBrush(e);
+                } else if (e.getButton() == MouseEvent.BUTTON3) {
                     Point imagePoint = imageProcessor.convertPointToImageCoordinates(e.getPoint());
                     pathManager.handleRightClick(imagePoint);
                 }
@@ -104,6 +197,17 @@ public class UIManager {
         pathManager.handleMouseMove(imagePoint);
     }
     
+    /**
+     * 画笔模式下在光标处修改代价
+     */
+    private void handleBrush(MouseEvent e) {
+        if (brushMode == BrushMode.OFF || !mainFrame.isImageReady()) return;
+        Point imagePoint = imageProcessor.convertPointToImageCoordinates(e.getPoint());
+        if (imagePoint == null) return;
+        
+        pathManager.handleBrush(imagePoint, brushMode == BrushMode.BLOCK);
+    }
+    
     /**
      * 打开图像文件
      */
@@ -127,6 +231,170 @@ public class UIManager {
         }
     }
     
+    /**
+     * 打开文件夹，按文件名顺序逐张标注，并在后台预取后续图片
+     */
+    private void openFolder() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("选择图像文件夹");
+        fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        fileChooser.setCurrentDirectory(new File("."));
+        
+        if (fileChooser.showOpenDialog(mainFrame) == JFileChooser.APPROVE_OPTION) {
+            try {
+                if (folderSession != null) {
+                    folderSession.close();
+                }
+                // 预取结果最多占用四分之一的堆内存
+                folderSession = new FolderSession(fileChooser.getSelectedFile(), PREFETCH_COUNT,
+                        Runtime.getRuntime().maxMemory() / 4);
+                showFolderImage(0);
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(mainFrame, "打开文件夹失败: " + ex.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * 在文件夹会话中前后切换图片，已预取的图片直接使用预取结果
+     */
+    private void showFolderImage(int step) {
+        if (folderSession == null) return;
+        File file = folderSession.goTo(folderSession.getIndex() + step);
+        Future<FolderSession.PreparedImage> prefetch = folderSession.takeCurrent();
+        if (prefetch != null) {
+            imageProcessor.loadPrepared(file, prefetch);
+        } else {
+            imageProcessor.loadImage(file.getAbsolutePath());
+        }
+        mainFrame.setTitle("智能剪刀 - " + file.getName() + " (" + (folderSession.getIndex() + 1) + "/" + folderSession.size() + ")");
+    }
+    
+    /**
+     * 把已确认的路径简化后导出为 SVG 或 GeoJSON
+     */
+    private void exportContour() {
+        if (imageProcessor.getOriginalImage() == null || pathManager.getConfirmedPaths().isEmpty()) {
+            mainFrame.getStatusLabel().setText("没有可导出的轮廓");
+            return;
+        }
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("导出轮廓");
+        fileChooser.addChoosableFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("SVG", "svg"));
+        fileChooser.addChoosableFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("GeoJSON", "geojson", "json"));
+        fileChooser.setAcceptAllFileFilterUsed(false);
+        fileChooser.setCurrentDirectory(new File("."));
+        
+        if (fileChooser.showSaveDialog(mainFrame) == JFileChooser.APPROVE_OPTION) {
+            File file = fileChooser.getSelectedFile();
+            String extension = ((javax.swing.filechooser.FileNameExtensionFilter) fileChooser.getFileFilter()).getExtensions()[0];
+            if (!file.getName().toLowerCase().matches(".*\\.(svg|geojson|json)")) {
+                file = new File(file.getPath() + "." + extension);
+            }
+            try {
+                ContourSimplifier.Contour contour = ContourSimplifier.simplify(pathManager.getConfirmedPaths(), EXPORT_TOLERANCE);
+                ContourExporter.export(file, contour,
+                        imageProcessor.getOriginalImage().getWidth(), imageProcessor.getOriginalImage().getHeight());
+                mainFrame.getStatusLabel().setText("轮廓已导出至: " + file.getAbsolutePath() + "（" + contour.size() + " 个顶点）");
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                mainFrame.getStatusLabel().setText("导出失败: " + ex.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * 把已确认的闭合轮廓围成的区域导出为 COCO RLE 或 PBM 二值掩码
+     */
+    private void exportMask() {
+        if (imageProcessor.getOriginalImage() == null || pathManager.getConfirmedPaths().isEmpty()) {
+            mainFrame.getStatusLabel().setText("没有可导出的掩码");
+            return;
+        }
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("导出掩码");
+        fileChooser.addChoosableFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("COCO RLE", "json"));
+        fileChooser.addChoosableFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("PBM 二值掩码", "pbm"));
+        fileChooser.setAcceptAllFileFilterUsed(false);
+        fileChooser.setCurrentDirectory(new File("."));
+
+        if (fileChooser.showSaveDialog(mainFrame) == JFileChooser.APPROVE_OPTION) {
+            File file = fileChooser.getSelectedFile();
+            String extension = ((javax.swing.filechooser.FileNameExtensionFilter) fileChooser.getFileFilter()).getExtensions()[0];
+            if (!file.getName().toLowerCase().matches(".*\\.(json|pbm)")) {
+                file = new File(file.getPath() + "." + extension);
+            }
+            try {
+                BitMask mask = PathMask.fromPaths(pathManager.getConfirmedPaths(),
+                        imageProcessor.getOriginalImage().getWidth(), imageProcessor.getOriginalImage().getHeight());
+                MaskExporter.export(file, mask);
+                mainFrame.getStatusLabel().setText("掩码已导出至: " + file.getAbsolutePath() + "（" + mask.cardinality() + " 个像素）");
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                mainFrame.getStatusLabel().setText("导出失败: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 把多实例会话中的所有实例一次栅格化，导出为 16 位灰度 PNG 标签图（像素值为实例标签，0 为背景）
+     */
+    private void exportLabels() {
+        InstanceSession instances = pathManager.getInstances();
+        if (instances.isEmpty()) {
+            mainFrame.getStatusLabel().setText("没有可导出的实例，请先开启多实例模式并闭合轮廓");
+            return;
+        }
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("导出标签图");
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("16 位 PNG 标签图", "png"));
+        fileChooser.setCurrentDirectory(new File("."));
+
+        if (fileChooser.showSaveDialog(mainFrame) == JFileChooser.APPROVE_OPTION) {
+            File file = fileChooser.getSelectedFile();
+            if (!file.getName().toLowerCase().endsWith(".png")) {
+                file = new File(file.getPath() + ".png");
+            }
+            try {
+                instances.rasterize().writePng(file);
+                mainFrame.getStatusLabel().setText("标签图已导出至: " + file.getAbsolutePath() + "（" + instances.size() + " 个实例）");
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                mainFrame.getStatusLabel().setText("导出失败: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 开始或停止录制鼠标轨迹，录下的轨迹可用 TraceReplayer 回放
+     */
+    private void toggleRecording(JButton recordButton) {
+        if (pathManager.isRecording()) {
+            pathManager.stopRecording();
+            recordButton.setText("录制轨迹");
+            mainFrame.getStatusLabel().setText("轨迹录制已停止");
+            return;
+        }
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("保存鼠标轨迹");
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("轨迹文件", "trace"));
+        fileChooser.setCurrentDirectory(new File("."));
+        
+        if (fileChooser.showSaveDialog(mainFrame) == JFileChooser.APPROVE_OPTION) {
+            File file = fileChooser.getSelectedFile();
+            if (!file.getName().toLowerCase().endsWith(".trace")) {
+                file = new File(file.getPath() + ".trace");
+            }
+            try {
+                pathManager.startRecording(file);
+                recordButton.setText("停止录制");
+                mainFrame.getStatusLabel().setText("正在录制轨迹: " + file.getAbsolutePath());
+            } catch (Exception ex) {
+                mainFrame.getStatusLabel().setText("无法创建轨迹文件: " + ex.getMessage());
+            }
+        }
+    }
+    
     /**
      * 判断左键点击是否有效
      */